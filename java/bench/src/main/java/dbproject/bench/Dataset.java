@@ -0,0 +1,55 @@
+package dbproject.bench;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Fills the schema of sql/create.sql with a synthetic dataset whose size is
+ * proportional to a scale factor.  At scale 1 there are 1,000 patients,
+ * 100 doctors and 10,000 appointments; every appointment belongs to one
+ * doctor and was searched by one patient.  Statuses are spread as
+ * 50% PA, 20% AC, 20% AV and 10% WL over two years of dates.
+ */
+final class Dataset {
+	static final int PATIENTS_PER_SCALE = 1000;
+	static final int DOCTORS_PER_SCALE = 100;
+	static final int APPOINTMENTS_PER_SCALE = 10000;
+	static final int HOSPITALS = 4;
+	static final int DEPARTMENTS_PER_HOSPITAL = 20;
+
+	private Dataset() {
+	}
+
+	static void seed(String url, String user, String password, int scale) throws SQLException {
+		int patients = PATIENTS_PER_SCALE * scale;
+		int doctors = DOCTORS_PER_SCALE * scale;
+		int appointments = APPOINTMENTS_PER_SCALE * scale;
+		int departments = HOSPITALS * DEPARTMENTS_PER_HOSPITAL;
+
+		try (Connection conn = DriverManager.getConnection(url, user, password);
+				Statement stmt = conn.createStatement()) {
+			stmt.execute("TRUNCATE Hospital, Patient, Department, Staff, Doctor, Appointment,"
+				+ " request_maintenance, searches, schedules, has_appointment,"
+				+ " appointment_holder, waitlist, waitlist_vacancy CASCADE");
+			stmt.execute("INSERT INTO Hospital SELECT i, 'Hospital ' || i FROM generate_series(0, "
+				+ (HOSPITALS - 1) + ") i");
+			stmt.execute("INSERT INTO Department SELECT i, 'Department ' || (i / " + HOSPITALS + "), i % "
+				+ HOSPITALS + " FROM generate_series(0, " + (departments - 1) + ") i");
+			stmt.execute("INSERT INTO Doctor SELECT i, 'Doctor ' || i, 'Specialty ' || (i % 24), i % "
+				+ departments + " FROM generate_series(0, " + (doctors - 1) + ") i");
+			stmt.execute("INSERT INTO Patient SELECT i, 'Patient ' || i, CASE WHEN i % 2 = 0 THEN 'F' ELSE 'M' END,"
+				+ " 20 + i % 60, i || ' Main Street', 0 FROM generate_series(0, " + (patients - 1) + ") i");
+			stmt.execute("INSERT INTO Appointment SELECT i, DATE '2020-01-01' + (i % 730),"
+				+ " (8 + 2 * (i % 4)) || ':00-' || (10 + 2 * (i % 4)) || ':00',"
+				+ " CASE WHEN i % 10 < 5 THEN 'PA' WHEN i % 10 < 7 THEN 'AC' WHEN i % 10 < 9 THEN 'AV' ELSE 'WL' END"
+				+ " FROM generate_series(0, " + (appointments - 1) + ") i");
+			stmt.execute("INSERT INTO has_appointment SELECT i, i % " + doctors
+				+ " FROM generate_series(0, " + (appointments - 1) + ") i");
+			stmt.execute("INSERT INTO searches SELECT i % " + HOSPITALS + ", i % " + patients
+				+ ", i FROM generate_series(0, " + (appointments - 1) + ") i");
+			stmt.execute("ANALYZE");
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package dbproject.bench;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of the eight menu operations against a local PostgreSQL database
+ * that already holds the schema of sql/create.sql, the indexes of
+ * sql/create_indexes.sql, the waitlist of sql/create_waitlist.sql and the
+ * summaries of sql/create_summaries.sql.  The benchmarks call the
+ * operations of the application through Ops, and they add rows and book
+ * appointments, so point them at a database of their own.
+ *
+ * Connection settings come from system properties, passed to the forked
+ * benchmark JVMs with -jvmArgs:
+ *   java -jar bench/target/benchmarks.jar -p scale=1,10 \
+ *     -jvmArgs "-Ddb.name=bench_DB -Ddb.port=$PGPORT -Ddb.user=$USER -Ddb.seed=true"
+ * With -Ddb.seed=true each trial first TRUNCATEs every table and loads a
+ * synthetic dataset at the scale given by -p scale.  Seeding is refused
+ * for the database DBproject uses by default ($USER_DB).  Without it the
+ * data already in the database is benchmarked, and it must hold the IDs
+ * the synthetic dataset of that scale would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class MenuBenchmarks {
+	@Param({"1"})
+	public int scale;
+
+	private Ops ops;
+	private int patients;
+	private int doctors;
+	private int appointments;
+	private int departments;
+	//keys of inserted rows start past the seeded ones
+	private final AtomicInteger nextId = new AtomicInteger(1 << 30);
+
+	private String[] departmentNames;
+	private static final String[] STATUSES = {"PA", "AC", "AV", "WL"};
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		String name = System.getProperty("db.name", System.getenv("USER") + "_DB");
+		String port = System.getProperty("db.port", System.getenv().getOrDefault("PGPORT", "5432"));
+		String user = System.getProperty("db.user", System.getenv("USER"));
+		String password = System.getProperty("db.password", "");
+		if (Boolean.parseBoolean(System.getProperty("db.seed", "false"))) {
+			if (name.equals(System.getenv("USER") + "_DB")) {
+				throw new IllegalStateException("Refusing to seed " + name
+					+ ", the application's own database; pass -Ddb.name with a database for the benchmarks");
+			}
+			Dataset.seed("jdbc:postgresql://localhost:" + port + "/" + name, user, password, scale);
+		}
+		patients = Dataset.PATIENTS_PER_SCALE * scale;
+		doctors = Dataset.DOCTORS_PER_SCALE * scale;
+		appointments = Dataset.APPOINTMENTS_PER_SCALE * scale;
+		departments = Dataset.HOSPITALS * Dataset.DEPARTMENTS_PER_HOSPITAL;
+
+		ops = new Ops(name, port, user, password);
+		List<List<String>> rows = ops.query("SELECT DISTINCT name FROM Department");
+		departmentNames = new String[rows.size()];
+		for (int i = 0; i < departmentNames.length; i++) {
+			departmentNames[i] = rows.get(i).get(0);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Throwable {
+		ops.close();
+	}
+
+	private static int random(int bound) {
+		return ThreadLocalRandom.current().nextInt(bound);
+	}
+
+	private static LocalDate randomDate() {
+		return LocalDate.of(2020, 1, 1).plusDays(random(730));
+	}
+
+	@Benchmark
+	public int addDoctor() throws Throwable {
+		int id = nextId.incrementAndGet();
+		ops.addDoctor(id, "Doctor " + id, "Allergist", random(departments));
+		return id;
+	}
+
+	@Benchmark
+	public int addPatient() throws Throwable {
+		int id = nextId.incrementAndGet();
+		ops.addPatient(id, "Patient " + id, "F", 40, id + " Main Street", 0);
+		return id;
+	}
+
+	@Benchmark
+	public boolean addAppointment() throws Throwable {
+		int id = nextId.incrementAndGet();
+		return ops.addAppointment(id, randomDate(), "10:00-12:00", "AV", random(doctors));
+	}
+
+	@Benchmark
+	public Object makeAppointment() throws Throwable {
+		int appt = random(appointments);
+		return ops.book(random(patients), appt % doctors, appt);
+	}
+
+	@Benchmark
+	public long listAppointmentsOfDoctor() throws Throwable {
+		LocalDate from = randomDate();
+		return ops.listAppointmentsOfDoctor(random(doctors), from, from.plusDays(30));
+	}
+
+	@Benchmark
+	public long listAvailableOfDepartment() throws Throwable {
+		return ops.listAvailableOfDepartment(departmentNames[random(departmentNames.length)], randomDate());
+	}
+
+	@Benchmark
+	public long statusCountsPerDoctor() throws Throwable {
+		return ops.listStatusCounts();
+	}
+
+	@Benchmark
+	public long patientsPerDoctorWithStatus() throws Throwable {
+		//all four statuses are counted in one pass and cached by the application
+		return ops.listPatientsPerDoctor(STATUSES[random(STATUSES.length)]);
+	}
+}
@@ -0,0 +1,124 @@
+package dbproject.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Bridge from the benchmarks to DBproject.  DBproject and its helpers live
+ * in the unnamed package, which code in a named package cannot reference,
+ * and JMH refuses benchmarks in the unnamed package; so the benchmarks reach
+ * the application through method handles bound once at setup.  The cost of
+ * an exact method handle call is nanoseconds, far below a database round trip.
+ * The handles are the operations of the menu themselves, with their checks,
+ * caches and pipelines; the listings render into a writer that discards the
+ * output, so rendering is measured but nothing is printed.
+ */
+final class Ops {
+	private final Object _esql;
+	private final Object _booking;
+	private final MethodHandle _query;
+	private final MethodHandle _addDoctor;
+	private final MethodHandle _addPatient;
+	private final MethodHandle _addAppointment;
+	private final MethodHandle _book;
+	private final MethodHandle _listAppointmentsOfDoctor;
+	private final MethodHandle _listAvailableOfDepartment;
+	private final MethodHandle _listStatusCounts;
+	private final MethodHandle _listPatientsPerDoctor;
+	private final MethodHandle _renderer;
+	private final MethodHandle _cleanup;
+
+	Ops(String dbname, String port, String user, String password) throws Throwable {
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		Class<?> dbproject = Class.forName("DBproject");
+		Class<?> engine = Class.forName("BookingEngine");
+		Class<?> renderer = Class.forName("ResultRenderer");
+
+		this._esql = lookup.findConstructor(dbproject,
+			MethodType.methodType(void.class, String.class, String.class, String.class, String.class))
+			.invoke(dbname, port, user, password);
+		this._booking = lookup.findConstructor(engine, MethodType.methodType(void.class, dbproject))
+			.invoke(this._esql);
+		this._query = lookup.findVirtual(dbproject, "executeQueryAndReturnResult",
+			MethodType.methodType(List.class, String.class, Object[].class)).bindTo(this._esql);
+		this._addDoctor = lookup.findStatic(dbproject, "addDoctor",
+			MethodType.methodType(void.class, dbproject, int.class, String.class, String.class, int.class))
+			.bindTo(this._esql);
+		this._addPatient = lookup.findStatic(dbproject, "addPatient",
+			MethodType.methodType(void.class, dbproject, int.class, String.class, String.class, int.class, String.class,
+				int.class)).bindTo(this._esql);
+		this._addAppointment = lookup.findStatic(dbproject, "addAppointment",
+			MethodType.methodType(boolean.class, dbproject, int.class, LocalDate.class, String.class, String.class,
+				Integer.class)).bindTo(this._esql);
+		this._book = lookup.findVirtual(engine, "book",
+			MethodType.methodType(Class.forName("BookingEngine$Result"), int.class, int.class, int.class))
+			.bindTo(this._booking);
+		this._listAppointmentsOfDoctor = lookup.findStatic(dbproject, "listAppointmentsOfDoctor",
+			MethodType.methodType(long.class, dbproject, renderer, int.class, LocalDate.class, LocalDate.class))
+			.bindTo(this._esql);
+		this._listAvailableOfDepartment = lookup.findStatic(dbproject, "listAvailableOfDepartment",
+			MethodType.methodType(long.class, dbproject, renderer, String.class, LocalDate.class)).bindTo(this._esql);
+		this._listStatusCounts = lookup.findStatic(dbproject, "listStatusCounts",
+			MethodType.methodType(long.class, dbproject, renderer)).bindTo(this._esql);
+		this._listPatientsPerDoctor = lookup.findStatic(dbproject, "listPatientsPerDoctor",
+			MethodType.methodType(long.class, dbproject, renderer, String.class)).bindTo(this._esql);
+		this._renderer = lookup.findStatic(renderer, "create", MethodType.methodType(renderer, String.class, Writer.class));
+		this._cleanup = lookup.findVirtual(dbproject, "cleanup", MethodType.methodType(void.class))
+			.bindTo(this._esql);
+	}
+
+	/**
+	 * Runs a query of the benchmark setup itself, not an operation.
+	 */
+	@SuppressWarnings("unchecked")
+	List<List<String>> query(String sql, Object... params) throws Throwable {
+		return (List<List<String>>) this._query.invoke(sql, params);
+	}
+
+	/**
+	 * Returns a renderer of the application that discards what it writes.
+	 */
+	private Object discard() throws Throwable {
+		return this._renderer.invoke("tsv", Writer.nullWriter());
+	}
+
+	void addDoctor(int doctorId, String name, String specialty, int deptId) throws Throwable {
+		this._addDoctor.invoke(doctorId, name, specialty, deptId);
+	}
+
+	void addPatient(int patientId, String name, String gender, int age, String address, int appointments) throws Throwable {
+		this._addPatient.invoke(patientId, name, gender, age, address, appointments);
+	}
+
+	boolean addAppointment(int apptId, LocalDate date, String timeSlot, String status, Integer doctorId) throws Throwable {
+		return (boolean) this._addAppointment.invoke(apptId, date, timeSlot, status, doctorId);
+	}
+
+	Object book(int patientId, int doctorId, int apptId) throws Throwable {
+		return this._book.invoke(patientId, doctorId, apptId);
+	}
+
+	long listAppointmentsOfDoctor(int doctorId, LocalDate from, LocalDate to) throws Throwable {
+		return (long) this._listAppointmentsOfDoctor.invoke(discard(), doctorId, from, to);
+	}
+
+	long listAvailableOfDepartment(String department, LocalDate date) throws Throwable {
+		return (long) this._listAvailableOfDepartment.invoke(discard(), department, date);
+	}
+
+	long listStatusCounts() throws Throwable {
+		return (long) this._listStatusCounts.invoke(discard());
+	}
+
+	long listPatientsPerDoctor(String status) throws Throwable {
+		return (long) this._listPatientsPerDoctor.invoke(discard(), status);
+	}
+
+	void close() throws Throwable {
+		this._cleanup.invoke();
+	}
+}
@@ -0,0 +1,308 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * This class books an appointment for a patient with a doctor, and cancels
+ * bookings.  The status transition AV -> AC -> WL, the has_appointment
+ * link, the holder or waitlist entry and the patient's appointment counter
+ * are applied by one data-modifying statement.  It is sent in a Pipeline
+ * after a statement that locks the appointment, so a booking is a single
+ * round trip, runs as one implicit transaction, locks only the target
+ * appointment and patient rows, and cannot interleave with a concurrent
+ * booking of the same appointment; the booking statement takes its
+ * snapshot once the lock is held, so it sees the holder and queue left by
+ * the booking it waited for.  The first patient to book becomes the
+ * holder of the appointment (sql/create_waitlist.sql); the next ones are
+ * queued in order.  A cancellation by the holder with patients waiting
+ * records a vacancy that a Waitlist worker fills with the head of the queue.
+ *
+ */
+
+public class BookingEngine{
+	/*
+	 * target  locks the appointment row and reads its current status,
+	 *         whether its has_appointment links name the given doctor (null
+	 *         when it has none) and whether the patient already holds it or
+	 *         waits for it
+	 * patient locks the patient row, the booking is skipped when it is missing
+	 * moved   applies the status transition; PA appointments are left alone,
+	 *         and so are appointments of another doctor or already booked by
+	 *         the patient
+	 * linked  records the doctor of an appointment that has none yet
+	 * held    makes the patient the holder of an appointment that was free
+	 * queued  puts the patient at the end of the waitlist of a taken one
+	 * counted bumps the patient's number of appointments, once for the holder
+	 *         or waitlist entry actually recorded
+	 */
+	static final String LOCK_SQL = "SELECT appnt_ID FROM Appointment WHERE appnt_ID = ? FOR UPDATE";
+
+	static final String BOOK_SQL =
+		"WITH target AS ("
+		+ " SELECT a.appnt_ID, a.status, a.adate, a.time_slot,"
+		+ " (SELECT bool_and(h.doctor_id = ?) FROM has_appointment h WHERE h.appt_id = a.appnt_ID) AS same_doctor,"
+		+ " EXISTS (SELECT 1 FROM appointment_holder h WHERE h.appt_id = a.appnt_ID AND h.patient_id = ?)"
+		+ " OR EXISTS (SELECT 1 FROM waitlist w WHERE w.appt_id = a.appnt_ID AND w.patient_id = ?) AS booked_already"
+		+ " FROM Appointment a WHERE a.appnt_ID = ? FOR UPDATE OF a"
+		+ "), patient AS ("
+		+ " SELECT patient_ID FROM Patient WHERE patient_ID = ? FOR UPDATE"
+		+ "), moved AS ("
+		+ " UPDATE Appointment a"
+		+ " SET status = CASE t.status WHEN 'AV' THEN 'AC' WHEN 'AC' THEN 'WL' ELSE t.status END"
+		+ " FROM target t"
+		+ " WHERE a.appnt_ID = t.appnt_ID AND t.status IN ('AV', 'AC', 'WL')"
+		+ " AND t.same_doctor IS NOT FALSE AND NOT t.booked_already AND EXISTS (SELECT 1 FROM patient)"
+		+ " RETURNING a.appnt_ID, a.status"
+		+ "), linked AS ("
+		+ " INSERT INTO has_appointment (appt_id, doctor_id)"
+		+ " SELECT m.appnt_ID, ? FROM moved m JOIN target t ON t.appnt_ID = m.appnt_ID WHERE t.same_doctor IS NULL"
+		+ " ON CONFLICT DO NOTHING"
+		+ "), held AS ("
+		+ " INSERT INTO appointment_holder (appt_id, patient_id, doctor_id)"
+		+ " SELECT appnt_ID, ?, ? FROM moved WHERE status = 'AC'"
+		+ " ON CONFLICT DO NOTHING"
+		+ " RETURNING appt_id"
+		+ "), queued AS ("
+		+ " INSERT INTO waitlist (appt_id, patient_id, doctor_id)"
+		+ " SELECT appnt_ID, ?, ? FROM moved WHERE status = 'WL'"
+		+ " ON CONFLICT DO NOTHING"
+		+ " RETURNING appt_id"
+		+ "), counted AS ("
+		+ " UPDATE Patient p SET number_of_appts = COALESCE(p.number_of_appts, 0) + 1"
+		+ " FROM (SELECT appt_id FROM held UNION ALL SELECT appt_id FROM queued) b WHERE p.patient_ID = ?"
+		+ ")"
+		+ " SELECT (SELECT status FROM target), (SELECT status FROM moved), EXISTS (SELECT 1 FROM patient),"
+		+ " (SELECT adate FROM target), (SELECT time_slot FROM target), (SELECT same_doctor FROM target),"
+		+ " (SELECT booked_already FROM target)";
+
+	/*
+	 * target     locks the appointment row and reads its current status
+	 * left_queue removes the patient from the waitlist
+	 * released   removes the patient as the holder
+	 * freed      the appointment when its holder let it go; an AC or WL
+	 *            appointment booked before holders were recorded, with no
+	 *            vacancy pending, is freed only by a patient it is linked to
+	 *            in searches who is not queued for it
+	 * waiting    whether other patients are still queued
+	 * moved      WL while patients wait, else AC while it is held, else AV
+	 * vacated    asks the workers to promote the head of the queue
+	 * counted    takes the appointment off the patient's count
+	 */
+	static final String CANCEL_SQL =
+		"WITH target AS ("
+		+ " SELECT appnt_ID, status, adate, time_slot FROM Appointment WHERE appnt_ID = ? FOR UPDATE"
+		+ "), left_queue AS ("
+		+ " DELETE FROM waitlist w USING target t"
+		+ " WHERE w.appt_id = t.appnt_ID AND w.patient_id = ?"
+		+ " RETURNING w.appt_id"
+		+ "), released AS ("
+		+ " DELETE FROM appointment_holder h USING target t"
+		+ " WHERE h.appt_id = t.appnt_ID AND h.patient_id = ?"
+		+ " RETURNING h.appt_id, h.doctor_id"
+		+ "), freed AS ("
+		+ " SELECT appt_id FROM released"
+		+ " UNION SELECT t.appnt_ID FROM target t WHERE t.status IN ('AC', 'WL')"
+		+ " AND NOT EXISTS (SELECT 1 FROM appointment_holder h WHERE h.appt_id = t.appnt_ID)"
+		+ " AND NOT EXISTS (SELECT 1 FROM waitlist_vacancy v WHERE v.appt_id = t.appnt_ID)"
+		+ " AND NOT EXISTS (SELECT 1 FROM waitlist w WHERE w.appt_id = t.appnt_ID AND w.patient_id = ?)"
+		+ " AND EXISTS (SELECT 1 FROM searches s WHERE s.aid = t.appnt_ID AND s.pid = ?)"
+		+ "), waiting AS ("
+		+ " SELECT EXISTS (SELECT 1 FROM waitlist w JOIN target t ON w.appt_id = t.appnt_ID WHERE w.patient_id <> ?) AS others"
+		+ "), moved AS ("
+		+ " UPDATE Appointment a"
+		+ " SET status = CASE WHEN (SELECT others FROM waiting) THEN 'WL'"
+		+ " WHEN NOT EXISTS (SELECT 1 FROM freed)"
+		+ " AND EXISTS (SELECT 1 FROM appointment_holder h WHERE h.appt_id = t.appnt_ID) THEN 'AC'"
+		+ " ELSE 'AV' END"
+		+ " FROM target t"
+		+ " WHERE a.appnt_ID = t.appnt_ID AND t.status IN ('AC', 'WL')"
+		+ " AND (EXISTS (SELECT 1 FROM freed) OR EXISTS (SELECT 1 FROM left_queue))"
+		+ " RETURNING a.appnt_ID, a.status"
+		+ "), vacated AS ("
+		+ " INSERT INTO waitlist_vacancy (appt_id)"
+		+ " SELECT appnt_ID FROM moved WHERE status = 'WL' AND EXISTS (SELECT 1 FROM freed)"
+		+ " ON CONFLICT DO NOTHING"
+		+ "), counted AS ("
+		+ " UPDATE Patient p SET number_of_appts = GREATEST(COALESCE(p.number_of_appts, 0) - 1, 0)"
+		+ " FROM moved WHERE p.patient_ID = ?"
+		+ ")"
+		+ " SELECT (SELECT status FROM target), (SELECT status FROM moved),"
+		+ " EXISTS (SELECT 1 FROM freed), EXISTS (SELECT 1 FROM left_queue),"
+		+ " (SELECT adate FROM target), (SELECT time_slot FROM target), (SELECT doctor_id FROM released)";
+
+	/**
+	 * Outcome of a booking request.
+	 */
+	public static class Result{
+		//status before the booking, null when the appointment does not exist
+		public final String previousStatus;
+		//status after the booking, null when nothing was booked
+		public final String newStatus;
+		public final boolean patientFound;
+		//whether the appointment is linked to a different doctor than the one given
+		public final boolean otherDoctor;
+		//whether the patient already holds or waits for the appointment
+		public final boolean bookedAlready;
+
+		Result(String previousStatus, String newStatus, boolean patientFound, boolean otherDoctor, boolean bookedAlready) {
+			this.previousStatus = previousStatus;
+			this.newStatus = newStatus;
+			this.patientFound = patientFound;
+			this.otherDoctor = otherDoctor;
+			this.bookedAlready = bookedAlready;
+		}
+
+		public boolean isBooked() {
+			return this.newStatus != null;
+		}
+
+		public String toString() {
+			if (this.previousStatus == null) {
+				return "No such appointment with that ID.";
+			}
+			if (!this.patientFound) {
+				return "No such patient with that ID.";
+			}
+			if (this.otherDoctor) {
+				return "That appointment belongs to another doctor.";
+			}
+			if (this.bookedAlready) {
+				return "The patient already holds or waits for that appointment.";
+			}
+			if (this.newStatus == null) {
+				return "The appointment is in the past (" + this.previousStatus + ") and cannot be booked.";
+			}
+			return "Status updated from " + this.previousStatus + " to " + this.newStatus;
+		}
+	}//end Result
+
+	/**
+	 * Outcome of a cancellation.
+	 */
+	public static class Cancellation{
+		//status before the cancellation, null when the appointment does not exist
+		public final String previousStatus;
+		//status after the cancellation, null when nothing was cancelled
+		public final String newStatus;
+		//whether the patient gave the appointment up as its holder
+		public final boolean released;
+		//whether the patient left the waitlist
+		public final boolean leftWaitlist;
+
+		Cancellation(String previousStatus, String newStatus, boolean released, boolean leftWaitlist) {
+			this.previousStatus = previousStatus;
+			this.newStatus = newStatus;
+			this.released = released;
+			this.leftWaitlist = leftWaitlist;
+		}
+
+		public boolean isCancelled() {
+			return this.newStatus != null;
+		}
+
+		public String toString() {
+			if (this.previousStatus == null) {
+				return "No such appointment with that ID.";
+			}
+			if (this.newStatus == null) {
+				return "The patient neither holds nor waits for that appointment.";
+			}
+			if (this.released) {
+				return "Booking cancelled, status updated from " + this.previousStatus + " to " + this.newStatus
+					+ (this.newStatus.equals("WL") ? "; the vacancy awaits a waitlist worker to promote the next patient in line" : "");
+			}
+			return "Removed from the waitlist, status is " + this.newStatus;
+		}
+	}//end Cancellation
+
+	private static final Metrics.Operation BOOK = Metrics.global().operation("op.book");
+	private static final Metrics.Operation CANCEL = Metrics.global().operation("op.cancel");
+
+	private final DBproject _esql;
+
+	public BookingEngine(DBproject esql) {
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to book an appointment of a doctor for a patient.
+	 *
+	 * @param patientId the patient taking the appointment
+	 * @param doctorId the doctor of the appointment
+	 * @param apptId the appointment to book
+	 * @return the status transition that was applied
+	 * @throws java.sql.SQLException when the booking failed, nothing is changed in that case; SQLState 23P01
+	 *         when it overlaps another booked appointment of the doctor (sql/create_slot_ranges.sql)
+	 */
+	public Result book(int patientId, int doctorId, int apptId) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			//BOOK_SQL is a statement of its own, so its snapshot is taken after the lock
+			Pipeline.Result booked = new Pipeline()
+				.add(LOCK_SQL, apptId)
+				.add(BOOK_SQL, doctorId, patientId, patientId, apptId, patientId, doctorId, patientId, doctorId, patientId,
+					doctorId, patientId)
+				.execute(this._esql);
+			if (!booked.isOk()) {
+				throw booked.getError();
+			}
+			List<String> row = booked.getRows(1).get(0);
+			Result result = new Result(row.get(0), row.get(1), "t".equals(row.get(2)), "f".equals(row.get(5)),
+				"t".equals(row.get(6)));
+			if ("AV".equals(result.previousStatus) && result.isBooked()) {
+				this._esql.getCapacityIndex().booked(doctorId, LocalDate.parse(row.get(3)), row.get(4), 1);
+			}
+			return result;
+		}finally {
+			BOOK.record(System.nanoTime() - start, 0, 0, 0);
+		}
+	}//end book
+
+	/**
+	 * Method to cancel the booking of an appointment by a patient: the
+	 * holder gives it up, or a waiting patient leaves the queue.
+	 *
+	 * @param patientId the patient cancelling
+	 * @param apptId the appointment
+	 * @return the status transition that was applied
+	 * @throws java.sql.SQLException when the cancellation failed, nothing is changed in that case
+	 */
+	public Cancellation cancel(int patientId, int apptId) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			List<List<String>> rows = this._esql.executeQueryAndReturnResult(CANCEL_SQL, apptId, patientId, patientId,
+				patientId, patientId, patientId, patientId);
+			this._esql.noteWrite();
+			List<String> row = rows.get(0);
+			Cancellation result = new Cancellation(row.get(0), row.get(1), "t".equals(row.get(2)), "t".equals(row.get(3)));
+			if (result.released && "WL".equals(result.newStatus)) {
+				//a vacancy was recorded for the next patient in line
+				this._esql.getWaitlist().vacancyRecorded();
+			}
+			if ("AV".equals(result.newStatus)) {
+				//the appointment stopped taking a place; its doctor is only known when it had a holder
+				LocalDate date = LocalDate.parse(row.get(4));
+				if (row.get(6) != null) {
+					this._esql.getCapacityIndex().booked(Integer.parseInt(row.get(6)), date, row.get(5), -1);
+				}else {
+					this._esql.getCapacityIndex().forget(date);
+				}
+			}
+			return result;
+		}finally {
+			CANCEL.record(System.nanoTime() - start, 0, 0, 0);
+		}
+	}//end cancel
+}
@@ -0,0 +1,244 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class inserts Doctor, Patient and Appointment rows read from a CSV
+ * file, in the column order of the files under data/.  Rows are checked
+ * with the same rules as the interactive prompts and sent with JDBC
+ * batches.  A row that fails the checks or is refused by the database is
+ * written to the error file and the rest of the batch goes on.
+ *
+ */
+
+public class BulkIngest{
+	//the appointment dates of the CSV files, e.g. 1/13/2020
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("M/d/yyyy");
+
+	/**
+	 * A row that passed the checks, with its values ready to bind.
+	 */
+	private static class Row{
+		final long lineNo;
+		final String line;
+		final Object[] values;
+
+		Row(long lineNo, String line, Object[] values) {
+			this.lineNo = lineNo;
+			this.line = line;
+			this.values = values;
+		}
+	}//end Row
+
+	private final ConnectionPool _pool;
+	private final int _batchSize;
+	private final int _commitInterval;
+	private long _inserted = 0;
+	private long _rejected = 0;
+
+	public BulkIngest(ConnectionPool pool, int batchSize, int commitInterval) {
+		this._pool = pool;
+		this._batchSize = Math.max(1, batchSize);
+		this._commitInterval = Math.max(this._batchSize, commitInterval);
+	}
+
+	/**
+	 * Method to return the insert statement of an entity.
+	 */
+	static String insertSql(String entity) {
+		if (entity.equals("doctor")) {
+			return "INSERT INTO Doctor (doctor_ID, name, specialty, did) VALUES (?, ?, ?, ?)";
+		}else if (entity.equals("patient")) {
+			return "INSERT INTO Patient (patient_ID, name, gtype, age, address, number_of_appts) VALUES (?, ?, ?, ?, ?, ?)";
+		}else if (entity.equals("appointment")) {
+			return DBproject.ADD_APPOINTMENT_SQL;
+		}
+		throw new IllegalArgumentException("Unknown entity " + entity + ", must be doctor, patient or appointment");
+	}
+
+	/**
+	 * Method to check one CSV line and convert it to the values of the
+	 * insert statement.
+	 *
+	 * @throws RuntimeException with the reason when the line is invalid
+	 */
+	static Object[] parse(String entity, String line) {
+		String[] f = line.split(",", -1);
+		if (entity.equals("doctor")) {
+			expect(f, 4);
+			return new Object[] {
+				Integer.parseInt(f[0].trim()),
+				DBproject.checkLength(f[1], 128, "The doctor's name"),
+				DBproject.checkLength(f[2], 24, "The doctor's specialty"),
+				Integer.parseInt(f[3].trim())
+			};
+		}else if (entity.equals("patient")) {
+			expect(f, 6);
+			return new Object[] {
+				Integer.parseInt(f[0].trim()),
+				DBproject.checkLength(f[1], 128, "The patient's name"),
+				DBproject.checkGender(f[2]),
+				Integer.parseInt(f[3].trim()),
+				DBproject.checkLength(f[4], 256, "The patient's address"),
+				Integer.parseInt(f[5].trim())
+			};
+		}else {
+			expect(f, 4);
+			return new Object[] {
+				Integer.parseInt(f[0].trim()),
+				java.sql.Date.valueOf(LocalDate.parse(f[1].trim(), DATE_FORMAT)),
+				DBproject.checkTimeSlot(f[2]),
+				DBproject.checkStatus(f[3])
+			};
+		}
+	}//end parse
+
+	private static void expect(String[] fields, int count) {
+		if (fields.length != count) {
+			throw new RuntimeException("Expected " + count + " fields but found " + fields.length);
+		}
+	}
+
+	/**
+	 * Method to insert every line of a CSV file.
+	 *
+	 * @param entity doctor, patient or appointment
+	 * @param csv the file to read
+	 * @param errors the file receiving the rejected lines and their reason
+	 * @return the number of rows inserted
+	 * @throws java.lang.Exception when the files or the connection failed
+	 */
+	public long ingest(String entity, File csv, File errors) throws Exception {
+		String sql = insertSql(entity);
+		long start = System.nanoTime();
+		BufferedReader reader = new BufferedReader(
+			new InputStreamReader(new FileInputStream(csv), StandardCharsets.UTF_8), 1 << 16);
+		BufferedWriter rejects = new BufferedWriter(
+			new OutputStreamWriter(new FileOutputStream(errors), StandardCharsets.UTF_8));
+		ConnectionPool.PooledConnection pc = this._pool.borrow();
+		try {
+			Connection conn = pc.getConnection();
+			conn.setAutoCommit(false);
+			PreparedStatement stmt = pc.getStatementCache().prepare(sql);
+
+			List<Row> batch = new ArrayList<Row>(this._batchSize);
+			long sinceCommit = 0;
+			long lineNo = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				++lineNo;
+				if (line.isEmpty()) {
+					continue;
+				}
+				try {
+					batch.add(new Row(lineNo, line, parse(entity, line)));
+				}catch (RuntimeException e) {
+					reject(rejects, lineNo, line, e.getMessage());
+					continue;
+				}
+				if (batch.size() == this._batchSize) {
+					sinceCommit += flush(conn, stmt, batch, rejects);
+					if (sinceCommit >= this._commitInterval) {
+						conn.commit();
+						sinceCommit = 0;
+					}
+				}
+			}//end while
+			flush(conn, stmt, batch, rejects);
+			conn.commit();
+			conn.setAutoCommit(true);
+		}finally {
+			this._pool.release(pc);
+			reader.close();
+			rejects.close();
+		}
+		double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+		System.out.println(String.format("Inserted %,d %s rows in %.2f s (%,.0f rows/sec), rejected %,d into %s",
+			this._inserted, entity, seconds, this._inserted / seconds, this._rejected, errors.getPath()));
+		return this._inserted;
+	}//end ingest
+
+	/**
+	 * Method to send a batch.  When the database refuses it, the batch is
+	 * rolled back to a savepoint and replayed row by row so that only the
+	 * offending rows are rejected.
+	 *
+	 * @return the number of rows inserted
+	 */
+	private long flush(Connection conn, PreparedStatement stmt, List<Row> batch, BufferedWriter rejects)
+			throws SQLException, IOException {
+		if (batch.isEmpty()) {
+			return 0;
+		}
+		long inserted = 0;
+		Savepoint sp = conn.setSavepoint();
+		try {
+			for (Row row : batch) {
+				DBproject.bind(stmt, row.values);
+				stmt.addBatch();
+			}
+			int[] counts = stmt.executeBatch();
+			for (int i = 0; i < counts.length; ++i) {
+				if (counts[i] == 0) {
+					reject(rejects, batch.get(i).lineNo, batch.get(i).line, "The ID already exists");
+				}else {
+					++inserted;
+				}
+			}//end for
+		}catch (SQLException e) {
+			stmt.clearBatch();
+			conn.rollback(sp);
+			for (Row row : batch) {
+				Savepoint rowSp = conn.setSavepoint();
+				try {
+					DBproject.bind(stmt, row.values);
+					if (stmt.executeUpdate() == 0) {
+						reject(rejects, row.lineNo, row.line, "The ID already exists");
+					}else {
+						++inserted;
+					}
+					conn.releaseSavepoint(rowSp);
+				}catch (SQLException rowError) {
+					conn.rollback(rowSp);
+					reject(rejects, row.lineNo, row.line, rowError.getMessage());
+				}
+			}//end for
+		}
+		conn.releaseSavepoint(sp);
+		batch.clear();
+		this._inserted += inserted;
+		return inserted;
+	}//end flush
+
+	private void reject(BufferedWriter rejects, long lineNo, String line, String reason) throws IOException {
+		++this._rejected;
+		rejects.write(lineNo + "\t" + String.valueOf(reason).replace('\n', ' ') + "\t" + line);
+		rejects.newLine();
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * This class loads the CSV files of the data directory into the tables of
+ * create.sql through the driver's CopyManager.  Files are streamed from the
+ * client, so the server does not need access to them.  Tables are loaded in
+ * foreign key order; tables of the same level do not depend on each other
+ * and are loaded in parallel, each on its own connection.
+ *
+ */
+
+public class BulkLoader{
+	/**
+	 * A table, the CSV file that feeds it, its columns and the tables it references.
+	 */
+	static class Table{
+		final String name;
+		final String file;
+		final String columns;
+		final String[] dependsOn;
+
+		Table(String name, String file, String columns, String... dependsOn) {
+			this.name = name;
+			this.file = file;
+			this.columns = columns;
+			this.dependsOn = dependsOn;
+		}
+	}//end Table
+
+	//the tables of create.sql, in no particular order
+	static final Table[] TABLES = {
+		new Table("Hospital", "hospital.csv", "hospital_ID, name"),
+		new Table("Patient", "patient.csv", "patient_ID, name, gtype, age, address, number_of_appts"),
+		new Table("Appointment", "appointment.csv", "appnt_ID, adate, time_slot, status"),
+		new Table("Department", "department.csv", "dept_ID, name, hid", "Hospital"),
+		new Table("Staff", "staff.csv", "staff_ID, name, hid", "Hospital"),
+		new Table("Doctor", "doctor.csv", "doctor_ID, name, specialty, did", "Department"),
+		new Table("searches", "searches.csv", "hid, pid, aid", "Hospital", "Patient", "Appointment"),
+		new Table("schedules", "schedules.csv", "appt_id, staff_id", "Appointment", "Staff"),
+		new Table("request_maintenance", "request_maintenance.csv", "patient_per_hour, dept_name, time_slot, did, sid", "Doctor", "Staff"),
+		new Table("has_appointment", "has_appointment.csv", "appt_id, doctor_id", "Appointment", "Doctor")
+	};
+
+	private final ConnectionPool _pool;
+	private final int _parallelism;
+
+	public BulkLoader(ConnectionPool pool, int parallelism) {
+		this._pool = pool;
+		this._parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Method to group the tables into levels; every table only references
+	 * tables of earlier levels.
+	 */
+	static List<List<Table>> levels() {
+		List<List<Table>> levels = new ArrayList<List<Table>>();
+		Set<String> loaded = new HashSet<String>();
+		List<Table> pending = new ArrayList<Table>();
+		for (Table t : TABLES) {
+			pending.add(t);
+		}
+		while (!pending.isEmpty()) {
+			List<Table> level = new ArrayList<Table>();
+			for (Table t : pending) {
+				boolean ready = true;
+				for (String dep : t.dependsOn) {
+					ready &= loaded.contains(dep);
+				}
+				if (ready) {
+					level.add(t);
+				}
+			}//end for
+			if (level.isEmpty()) {
+				throw new IllegalStateException("Circular foreign keys between " + pending.size() + " tables");
+			}
+			for (Table t : level) {
+				loaded.add(t.name);
+			}
+			pending.removeAll(level);
+			levels.add(level);
+		}//end while
+		return levels;
+	}//end levels
+
+	/**
+	 * Method to load every CSV file of a directory.
+	 *
+	 * @param dir the directory holding the CSV files
+	 * @param truncate empties the tables first when true
+	 * @return the total number of rows loaded
+	 * @throws java.lang.Exception when a file could not be read or loaded
+	 */
+	public long load(File dir, boolean truncate) throws Exception {
+		if (truncate) {
+			truncateAll();
+		}
+		long start = System.nanoTime();
+		long total = 0;
+		ExecutorService workers = Executors.newFixedThreadPool(this._parallelism);
+		try {
+			for (List<Table> level : levels()) {
+				List<Future<Long>> loads = new ArrayList<Future<Long>>();
+				for (final Table t : level) {
+					final File csv = new File(dir, t.file);
+					loads.add(workers.submit(() -> copy(t, csv)));
+				}//end for
+				//a level has to finish before the tables referencing it start
+				for (Future<Long> f : loads) {
+					try {
+						total += f.get();
+					}catch (ExecutionException e) {
+						throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+					}
+				}//end for
+			}//end for
+		}finally {
+			workers.shutdownNow();
+		}
+		report("all tables", total, System.nanoTime() - start);
+		return total;
+	}//end load
+
+	/**
+	 * Method to stream one CSV file into its table on a dedicated connection.
+	 */
+	private long copy(Table t, File csv) throws SQLException, IOException {
+		long start = System.nanoTime();
+		Connection conn = this._pool.openUnpooled();
+		try {
+			Statement stmt = conn.createStatement();
+			//the CSV files use month/day/year dates
+			stmt.execute("SET DateStyle = 'ISO, MDY'");
+			stmt.close();
+
+			CopyManager copier = conn.unwrap(PGConnection.class).getCopyAPI();
+			BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(csv), StandardCharsets.UTF_8), 1 << 16);
+			try {
+				long rows = copier.copyIn("COPY " + t.name + " (" + t.columns + ") FROM STDIN WITH DELIMITER ','", reader);
+				report(t.name, rows, System.nanoTime() - start);
+				return rows;
+			}finally {
+				reader.close();
+			}
+		}finally {
+			conn.close();
+		}
+	}//end copy
+
+	/**
+	 * Method to empty every table before a reload.
+	 */
+	private void truncateAll() throws SQLException {
+		StringBuilder names = new StringBuilder();
+		for (Table t : TABLES) {
+			names.append(names.length() == 0 ? "" : ", ").append(t.name);
+		}
+		Connection conn = this._pool.openUnpooled();
+		try {
+			Statement stmt = conn.createStatement();
+			stmt.execute("TRUNCATE " + names + " CASCADE");
+			stmt.close();
+		}finally {
+			conn.close();
+		}
+	}//end truncateAll
+
+	private static void report(String what, long rows, long nanos) {
+		double seconds = Math.max(nanos, 1) / 1e9;
+		System.out.println(String.format("Loaded %,d rows into %s in %.2f s (%,.0f rows/sec)",
+			rows, what, seconds, rows / seconds));
+	}
+}
@@ -0,0 +1,327 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * This class answers which hours of a department still have room on a
+ * date.  Every request_maintenance row gives a doctor working hours in a
+ * department, with patient_per_hour patients an hour.  The table is keyed
+ * by (did, sid), so the rows of one doctor may repeat or overlap the same
+ * hours; they are merged per doctor into one set of working hours first.
+ * Those hours are cut into cells of at most one hour, each with its
+ * capacity; a cell covered by several rows takes the largest of their
+ * patient_per_hour, as the same doctor sees the patients whichever request
+ * listed the hour, and belongs to the departments of all of them.  The
+ * cells are stored in primitive arrays: per doctor and per department
+ * name, the cell numbers sorted by start time.  For a date, the number of AC and WL appointments
+ * of each cell is read once, an appointment counting in every cell of its
+ * doctor it overlaps, and then kept up to date by the bookings,
+ * cancellations and promotions of this process.  Dates are read again
+ * after dbproject.capacity.ttlMs so that the bookings of other clients
+ * are seen too.
+ *
+ */
+
+public class CapacityIndex{
+	static final String WORKING_HOURS_SQL =
+		"SELECT did, dept_name, time_slot, patient_per_hour FROM request_maintenance";
+
+	static final String BOOKED_ON_DATE_SQL =
+		"SELECT H.doctor_id, A.time_slot"
+		+ " FROM has_appointment H JOIN Appointment A ON A.appnt_ID = H.appt_id"
+		+ " WHERE A.adate = ? AND A.status IN ('AC', 'WL')";
+
+	private static final int[] NONE = new int[0];
+
+	/**
+	 * An hour a department still has room in.
+	 */
+	public static class OpenSlot{
+		public final int doctorId;
+		//packed, see TimeSlots
+		public final int slot;
+		public final int remaining;
+
+		OpenSlot(int doctorId, int slot, int remaining) {
+			this.doctorId = doctorId;
+			this.slot = slot;
+			this.remaining = remaining;
+		}
+
+		public String toString() {
+			return TimeSlots.format(this.slot) + " doctor " + this.doctorId + " (" + this.remaining + " left)";
+		}
+	}//end OpenSlot
+
+	/**
+	 * The booked count of every cell on one date.
+	 */
+	private static class Day{
+		final AtomicIntegerArray booked;
+		final long loadedAt;
+
+		Day(AtomicIntegerArray booked, long loadedAt) {
+			this.booked = booked;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	private final DBproject _esql;
+	private final long _ttlMillis;
+	//one entry per cell
+	private int[] _cellDoctor = NONE;
+	private int[] _cellSlot = NONE;
+	private int[] _cellCapacity = NONE;
+	//cells of each doctor and each department name, sorted by start
+	private Map<Integer, int[]> _cellsOfDoctor = new HashMap<Integer, int[]>();
+	private Map<String, int[]> _cellsOfDepartment = new HashMap<String, int[]>();
+	private final Map<Long, Day> _days = new ConcurrentHashMap<Long, Day>();
+	private volatile boolean _loaded = false;
+
+	public CapacityIndex(DBproject esql, long ttlMillis) {
+		this._esql = esql;
+		this._ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * Method to read the working hours of request_maintenance again and
+	 * forget the booked counts.
+	 *
+	 * @throws java.sql.SQLException when failed to read the table
+	 */
+	public synchronized void reload() throws SQLException {
+		List<List<String>> rows = this._esql.executeQueryAndReturnResult(WORKING_HOURS_SQL, new Object[0]);
+		//the valid rows of each doctor: start, end, patient_per_hour and the index of the department name
+		List<String> names = new ArrayList<String>();
+		Map<Integer, List<int[]>> hoursOfDoctor = new HashMap<Integer, List<int[]>>();
+		for (List<String> row : rows) {
+			int slot = TimeSlots.parse(row.get(2));
+			int perHour = Integer.parseInt(row.get(3));
+			if (slot < 0 || perHour <= 0) {
+				continue;
+			}
+			int name = names.indexOf(row.get(1));
+			if (name < 0) {
+				name = names.size();
+				names.add(row.get(1));
+			}
+			add(hoursOfDoctor, Integer.parseInt(row.get(0)),
+				new int[] {TimeSlots.start(slot), TimeSlots.end(slot), perHour, name});
+		}
+
+		List<int[]> cells = new ArrayList<int[]>();
+		Map<Integer, List<Integer>> byDoctor = new HashMap<Integer, List<Integer>>();
+		Map<String, List<Integer>> byDepartment = new HashMap<String, List<Integer>>();
+		for (Map.Entry<Integer, List<int[]>> e : hoursOfDoctor.entrySet()) {
+			int doctorId = e.getKey();
+			List<int[]> hours = e.getValue();
+			int[] from = new int[hours.size()];
+			int[] to = new int[hours.size()];
+			for (int i = 0; i < from.length; ++i) {
+				from[i] = hours.get(i)[0];
+				to[i] = hours.get(i)[1];
+			}
+			Arrays.sort(from);
+			Arrays.sort(to);
+			//with both ends sorted, a merged range ends where no later row starts before its end
+			for (int i = 0; i < from.length; ) {
+				int first = from[i];
+				int last = to[i];
+				while (++i < from.length && from[i] <= last) {
+					last = Math.max(last, to[i]);
+				}
+				for (int start = first; start < last; start += 60) {
+					int end = Math.min(start + 60, last);
+					int perHour = 0;
+					List<String> departments = new ArrayList<String>();
+					for (int[] h : hours) {
+						if (h[0] < end && start < h[1]) {
+							perHour = Math.max(perHour, h[2]);
+							if (!departments.contains(names.get(h[3]))) {
+								departments.add(names.get(h[3]));
+							}
+						}
+					}
+					//a part of an hour takes its share of the hour's patients, at least one
+					int capacity = Math.max(1, perHour * (end - start) / 60);
+					Integer cell = cells.size();
+					cells.add(new int[] {doctorId, TimeSlots.pack(start, end), capacity});
+					add(byDoctor, doctorId, cell);
+					for (String department : departments) {
+						add(byDepartment, department, cell);
+					}
+				}
+			}
+		}
+
+		int[] cellDoctor = new int[cells.size()];
+		final int[] cellSlot = new int[cells.size()];
+		int[] cellCapacity = new int[cells.size()];
+		for (int i = 0; i < cellDoctor.length; ++i) {
+			cellDoctor[i] = cells.get(i)[0];
+			cellSlot[i] = cells.get(i)[1];
+			cellCapacity[i] = cells.get(i)[2];
+		}
+		this._cellDoctor = cellDoctor;
+		this._cellSlot = cellSlot;
+		this._cellCapacity = cellCapacity;
+		this._cellsOfDoctor = sortedByStart(byDoctor, cellSlot, cellDoctor);
+		this._cellsOfDepartment = sortedByStart(byDepartment, cellSlot, cellDoctor);
+		this._days.clear();
+		this._loaded = true;
+	}//end reload
+
+	private static <K, V> void add(Map<K, List<V>> map, K key, V value) {
+		List<V> values = map.get(key);
+		if (values == null) {
+			values = new ArrayList<V>();
+			map.put(key, values);
+		}
+		values.add(value);
+	}
+
+	/**
+	 * Method to turn each list of cells into an array ordered by start
+	 * minute, then doctor.  The sort key is packed in a long so the arrays
+	 * are sorted without boxing.
+	 */
+	private static <K> Map<K, int[]> sortedByStart(Map<K, List<Integer>> map, int[] cellSlot, int[] cellDoctor) {
+		Map<K, int[]> sorted = new HashMap<K, int[]>(map.size() * 2);
+		for (Map.Entry<K, List<Integer>> e : map.entrySet()) {
+			List<Integer> cells = e.getValue();
+			long[] keys = new long[cells.size()];
+			for (int i = 0; i < keys.length; ++i) {
+				int cell = cells.get(i);
+				keys[i] = (long) TimeSlots.start(cellSlot[cell]) << 52 | (long) (cellDoctor[cell] & 0xFFFFF) << 32 | cell;
+			}
+			Arrays.sort(keys);
+			int[] ordered = new int[keys.length];
+			for (int i = 0; i < keys.length; ++i) {
+				ordered[i] = (int) keys[i];
+			}
+			sorted.put(e.getKey(), ordered);
+		}
+		return sorted;
+	}//end sortedByStart
+
+	private void ensureLoaded() throws SQLException {
+		if (!this._loaded) {
+			synchronized (this) {
+				if (!this._loaded) {
+					reload();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Method to return the booked counts of a date, reading them when they
+	 * are missing or older than the time to live.
+	 */
+	private Day day(LocalDate date) throws SQLException {
+		Long key = date.toEpochDay();
+		Day d = this._days.get(key);
+		if (d != null && System.currentTimeMillis() - d.loadedAt < this._ttlMillis) {
+			return d;
+		}
+		AtomicIntegerArray booked = new AtomicIntegerArray(this._cellSlot.length);
+		long loadedAt = System.currentTimeMillis();
+		List<List<String>> rows = this._esql.executeQueryAndReturnResult(BOOKED_ON_DATE_SQL, java.sql.Date.valueOf(date));
+		for (List<String> row : rows) {
+			count(booked, Integer.parseInt(row.get(0)), TimeSlots.parse(row.get(1)), 1);
+		}
+		d = new Day(booked, loadedAt);
+		this._days.put(key, d);
+		return d;
+	}//end day
+
+	/**
+	 * Method to add delta to every cell of a doctor that overlaps a slot.
+	 */
+	private void count(AtomicIntegerArray booked, int doctorId, int slot, int delta) {
+		int[] cells = this._cellsOfDoctor.get(doctorId);
+		if (cells == null || slot < 0) {
+			return;
+		}
+		for (int cell : cells) {
+			if (TimeSlots.overlaps(this._cellSlot[cell], slot)) {
+				booked.addAndGet(cell, delta);
+			}
+		}
+	}
+
+	/**
+	 * Method to return the first hours of a department with room left on a
+	 * date, in order of start time, then doctor.
+	 *
+	 * @param department the department name
+	 * @param date the date
+	 * @param fromMinute skip the hours ending at or before this minute of the day
+	 * @param limit the most hours returned
+	 * @return the open hours, empty when the department has no working hours
+	 * @throws java.sql.SQLException when the working hours or bookings could not be read
+	 */
+	public List<OpenSlot> nextOpen(String department, LocalDate date, int fromMinute, int limit) throws SQLException {
+		ensureLoaded();
+		List<OpenSlot> open = new ArrayList<OpenSlot>();
+		int[] cells = this._cellsOfDepartment.get(department);
+		if (cells == null || limit <= 0) {
+			return open;
+		}
+		AtomicIntegerArray booked = day(date).booked;
+		for (int cell : cells) {
+			if (TimeSlots.end(this._cellSlot[cell]) <= fromMinute) {
+				continue;
+			}
+			int remaining = this._cellCapacity[cell] - booked.get(cell);
+			if (remaining > 0) {
+				open.add(new OpenSlot(this._cellDoctor[cell], this._cellSlot[cell], remaining));
+				if (open.size() == limit) {
+					break;
+				}
+			}
+		}
+		return open;
+	}//end nextOpen
+
+	/**
+	 * Method to record that an appointment of a doctor started (delta 1) or
+	 * stopped (delta -1) taking a place.  Dates not read yet are left alone.
+	 *
+	 * @param doctorId the doctor of the appointment
+	 * @param date the date of the appointment
+	 * @param timeSlot the time_slot of the appointment
+	 * @param delta the change of the booked count
+	 */
+	public void booked(int doctorId, LocalDate date, String timeSlot, int delta) {
+		Day d = this._days.get(date.toEpochDay());
+		if (d != null) {
+			count(d.booked, doctorId, TimeSlots.parse(timeSlot), delta);
+		}
+	}
+
+	/**
+	 * Method to drop the booked counts of a date, read again on next use.
+	 */
+	public void forget(LocalDate date) {
+		this._days.remove(date.toEpochDay());
+	}
+}
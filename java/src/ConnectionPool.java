@@ -0,0 +1,408 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class defines a small bounded pool of physical PostgreSQL connections.
+ * Connections are validated when they are borrowed, idle connections above
+ * the minimum size are evicted after a timeout, borrowers wait at most a
+ * configured time for a free connection, and connections held longer than
+ * the leak threshold are reported together with the stack that borrowed them.
+ *
+ */
+
+public class ConnectionPool{
+	private final String _url;
+	private final Properties _props;
+	private final int _minSize;
+	private final int _maxSize;
+	private final long _idleTimeoutMillis;
+	private final long _borrowTimeoutMillis;
+	private final long _leakThresholdMillis;
+	private final int _statementCacheSize;
+
+	private final ReentrantLock _lock = new ReentrantLock();
+	private final Condition _available = _lock.newCondition();
+	//idle connections, the most recently returned one is borrowed first
+	private final Deque<PooledConnection> _idle = new ArrayDeque<PooledConnection>();
+	private final List<PooledConnection> _borrowed = new ArrayList<PooledConnection>();
+	//connections that exist or are being opened
+	private int _total = 0;
+	private boolean _closed = false;
+	private final Thread _housekeeper;
+	//connections returned this recently are handed out again without a validation round trip
+	private static final long VALIDATION_BYPASS_MILLIS = 500;
+	//time callers spend in borrow, waiting, validating or opening
+	private static final Metrics.Operation WAIT = Metrics.global().operation("pool.borrow");
+
+	/**
+	 * A physical connection owned by the pool together with its statement cache.
+	 */
+	public static class PooledConnection{
+		private final Connection _connection;
+		private final StatementCache _statementCache;
+		private long _lastReturned;
+		private long _borrowedAt;
+		private Throwable _borrowSite;
+		private boolean _leakReported;
+
+		PooledConnection(Connection connection, int statementCacheSize) {
+			this._connection = connection;
+			this._statementCache = new StatementCache(connection, statementCacheSize);
+			this._lastReturned = System.currentTimeMillis();
+		}
+
+		public Connection getConnection() {
+			return this._connection;
+		}
+
+		public StatementCache getStatementCache() {
+			return this._statementCache;
+		}
+
+		void destroy() {
+			this._statementCache.close();
+			try {
+				this._connection.close();
+			}catch (SQLException e) {
+				// ignored.
+			}
+		}
+	}//end PooledConnection
+
+	public ConnectionPool(String url, Properties props, int minSize, int maxSize, long idleTimeoutMillis,
+			long borrowTimeoutMillis, long leakThresholdMillis, int statementCacheSize) throws SQLException {
+		if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+			throw new IllegalArgumentException("The pool size must satisfy 0 <= min <= max and max > 0.");
+		}
+		this._url = url;
+		this._props = props;
+		this._minSize = minSize;
+		this._maxSize = maxSize;
+		this._idleTimeoutMillis = idleTimeoutMillis;
+		this._borrowTimeoutMillis = borrowTimeoutMillis;
+		this._leakThresholdMillis = leakThresholdMillis;
+		this._statementCacheSize = statementCacheSize;
+
+		//opens the minimum number of connections up front so bad settings fail fast
+		for (int i = 0; i < minSize; ++i) {
+			this._idle.push(open());
+			this._total++;
+		}//end for
+
+		this._housekeeper = new Thread(this::housekeep, "connection-pool-housekeeper");
+		this._housekeeper.setDaemon(true);
+		this._housekeeper.start();
+	}
+
+	/**
+	 * Method to open a new physical connection.
+	 */
+	private PooledConnection open() throws SQLException {
+		return new PooledConnection(DriverManager.getConnection(this._url, this._props), this._statementCacheSize);
+	}
+
+	/**
+	 * Method to open a physical connection that is not managed by the pool,
+	 * for long lived sessions such as LISTEN or COPY workers.
+	 *
+	 * @return a new connection the caller must close
+	 * @throws java.sql.SQLException when the connection could not be opened
+	 */
+	public Connection openUnpooled() throws SQLException {
+		return DriverManager.getConnection(this._url, this._props);
+	}
+
+	/**
+	 * Method to borrow a connection.  An idle connection is validated before
+	 * it is handed out, unless it was returned within the last half second;
+	 * a new one is opened when the pool is below its maximum size;
+	 * otherwise the caller waits for a connection to be returned, at most
+	 * the borrow timeout.
+	 *
+	 * @return a valid connection, to be given back through release
+	 * @throws java.sql.SQLException when no connection became available in time
+	 */
+	public PooledConnection borrow() throws SQLException {
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(this._borrowTimeoutMillis);
+		while (true) {
+			PooledConnection candidate = null;
+			boolean create = false;
+			this._lock.lock();
+			try {
+				while (!this._closed && this._idle.isEmpty() && this._total >= this._maxSize) {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						throw new SQLException("Timed out after " + this._borrowTimeoutMillis
+							+ " ms waiting for a database connection (pool size " + this._maxSize + ")", "08001");
+					}
+					try {
+						this._available.awaitNanos(remaining);
+					}catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new SQLException("Interrupted while waiting for a database connection", "08001");
+					}
+				}//end while
+				if (this._closed) {
+					throw new SQLException("The connection pool is closed", "08003");
+				}
+				if (!this._idle.isEmpty()) {
+					candidate = this._idle.pop();
+				}else {
+					this._total++;
+					create = true;
+				}
+			}finally {
+				this._lock.unlock();
+			}
+
+			if (create) {
+				try {
+					candidate = open();
+				}catch (SQLException e) {
+					discard();
+					throw e;
+				}
+			}else if (System.currentTimeMillis() - candidate._lastReturned > VALIDATION_BYPASS_MILLIS && !isValid(candidate)) {
+				//validation failed, drop the connection and try again
+				candidate.destroy();
+				discard();
+				continue;
+			}
+			markBorrowed(candidate);
+			WAIT.record(System.nanoTime() - start, 0, 0, 0);
+			return candidate;
+		}//end while
+	}//end borrow
+
+	private boolean isValid(PooledConnection pc) {
+		try {
+			return pc.getConnection().isValid(5);
+		}catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void markBorrowed(PooledConnection pc) {
+		pc._borrowedAt = System.currentTimeMillis();
+		pc._borrowSite = this._leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+		pc._leakReported = false;
+		this._lock.lock();
+		try {
+			this._borrowed.add(pc);
+		}finally {
+			this._lock.unlock();
+		}
+	}
+
+	/**
+	 * Method to give a borrowed connection back to the pool.  A connection
+	 * left inside a transaction is rolled back; a broken one is closed.
+	 *
+	 * @param pc the connection returned by borrow
+	 */
+	public void release(PooledConnection pc) {
+		if (pc == null) {
+			return;
+		}
+		boolean healthy;
+		try {
+			healthy = !pc.getConnection().isClosed();
+			if (healthy && !pc.getConnection().getAutoCommit()) {
+				pc.getConnection().rollback();
+				pc.getConnection().setAutoCommit(true);
+			}
+		}catch (SQLException e) {
+			healthy = false;
+		}
+
+		this._lock.lock();
+		try {
+			this._borrowed.remove(pc);
+			if (healthy && !this._closed) {
+				pc._lastReturned = System.currentTimeMillis();
+				pc._borrowSite = null;
+				this._idle.push(pc);
+				this._available.signal();
+				return;
+			}
+		}finally {
+			this._lock.unlock();
+		}
+		pc.destroy();
+		discard();
+	}//end release
+
+	/**
+	 * Method to forget a connection that was closed or never opened.
+	 */
+	private void discard() {
+		this._lock.lock();
+		try {
+			this._total--;
+			this._available.signal();
+		}finally {
+			this._lock.unlock();
+		}
+	}
+
+	/**
+	 * Housekeeping loop: evicts idle connections above the minimum size and
+	 * reports connections held longer than the leak threshold.
+	 */
+	private void housekeep() {
+		long period = Math.max(1000L, Math.min(this._idleTimeoutMillis, 30000L) / 2);
+		while (true) {
+			try {
+				Thread.sleep(period);
+			}catch (InterruptedException e) {
+				return;
+			}
+			List<PooledConnection> evicted = new ArrayList<PooledConnection>();
+			long now = System.currentTimeMillis();
+			this._lock.lock();
+			try {
+				if (this._closed) {
+					return;
+				}
+				//the eldest idle connections are at the tail of the deque
+				Iterator<PooledConnection> it = this._idle.descendingIterator();
+				while (it.hasNext() && this._total - evicted.size() > this._minSize) {
+					PooledConnection pc = it.next();
+					if (now - pc._lastReturned < this._idleTimeoutMillis) {
+						break;
+					}
+					it.remove();
+					evicted.add(pc);
+				}//end while
+				this._total -= evicted.size();
+
+				if (this._leakThresholdMillis > 0) {
+					for (PooledConnection pc : this._borrowed) {
+						if (!pc._leakReported && now - pc._borrowedAt > this._leakThresholdMillis) {
+							pc._leakReported = true;
+							System.err.println("Possible connection leak: connection held for "
+								+ (now - pc._borrowedAt) + " ms");
+							if (pc._borrowSite != null) {
+								pc._borrowSite.printStackTrace();
+							}
+						}
+					}//end for
+				}
+			}finally {
+				this._lock.unlock();
+			}
+			for (PooledConnection pc : evicted) {
+				pc.destroy();
+			}
+		}//end while
+	}//end housekeep
+
+	public int getMaxSize() {
+		return this._maxSize;
+	}
+
+	public int getTotalCount() {
+		this._lock.lock();
+		try {
+			return this._total;
+		}finally {
+			this._lock.unlock();
+		}
+	}
+
+	public int getIdleCount() {
+		this._lock.lock();
+		try {
+			return this._idle.size();
+		}finally {
+			this._lock.unlock();
+		}
+	}
+
+	public int getBorrowedCount() {
+		this._lock.lock();
+		try {
+			return this._borrowed.size();
+		}finally {
+			this._lock.unlock();
+		}
+	}
+
+	/**
+	 * Method to sum the statement cache hits of every pooled connection.
+	 */
+	public long getStatementCacheHits() {
+		long hits = 0;
+		for (PooledConnection pc : snapshot()) {
+			hits += pc.getStatementCache().getHits();
+		}
+		return hits;
+	}
+
+	/**
+	 * Method to sum the statement cache misses of every pooled connection.
+	 */
+	public long getStatementCacheMisses() {
+		long misses = 0;
+		for (PooledConnection pc : snapshot()) {
+			misses += pc.getStatementCache().getMisses();
+		}
+		return misses;
+	}
+
+	private List<PooledConnection> snapshot() {
+		this._lock.lock();
+		try {
+			List<PooledConnection> all = new ArrayList<PooledConnection>(this._idle);
+			all.addAll(this._borrowed);
+			return all;
+		}finally {
+			this._lock.unlock();
+		}
+	}
+
+	/**
+	 * Method to close the pool and every idle connection.  Borrowed
+	 * connections are closed when they are released.
+	 */
+	public void close() {
+		List<PooledConnection> idle;
+		this._lock.lock();
+		try {
+			this._closed = true;
+			idle = new ArrayList<PooledConnection>(this._idle);
+			this._idle.clear();
+			this._total -= idle.size();
+			this._available.signalAll();
+		}finally {
+			this._lock.unlock();
+		}
+		this._housekeeper.interrupt();
+		for (PooledConnection pc : idle) {
+			pc.destroy();
+		}
+	}//end close
+}
@@ -1,990 +1,1897 @@
-/*
- * Template JAVA User Interface
- * =============================
- *
- * Database Management Systems
- * Department of Computer Science &amp; Engineering
- * University of California - Riverside
- *
- * Target DBMS: 'Postgres'
- *
- */
-
-import java.time.format.DateTimeFormatter;
-import java.time.LocalDate;
-import java.sql.DriverManager;
-import java.sql.Connection;
-import java.sql.Statement;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
-import java.io.File;
-import java.io.FileReader;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.List;
-import java.util.ArrayList;
-import java.util.Scanner;
-
-/**
- * This class defines a simple embedded SQL utility class that is designed to
- * work with PostgreSQL JDBC drivers.
- *
- */
-
-public class DBproject{
-	//reference to physical database connection
-	private Connection _connection = null;
-	static BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
-	
-	public DBproject(String dbname, String dbport, String user, String passwd) throws SQLException {
-		System.out.print("Connecting to database...");
-		try{
-			// constructs the connection URL
-			String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
-			System.out.println ("Connection URL: " + url + "\n");
-			
-			// obtain a physical connection
-	        this._connection = DriverManager.getConnection(url, user, passwd);
-	        System.out.println("Done");
-		}catch(Exception e){
-			System.err.println("Error - Unable to Connect to Database: " + e.getMessage());
-	        System.out.println("Make sure you started postgres on this machine");
-	        System.exit(-1);
-		}
-	}
-	
-	/**
-	 * Method to execute an update SQL statement.  Update SQL instructions
-	 * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
-	 * 
-	 * @param sql the input SQL string
-	 * @throws java.sql.SQLException when update failed
-	 * */
-	public void executeUpdate (String sql) throws SQLException { 
-		// creates a statement object
-		Statement stmt = this._connection.createStatement ();
-
-		// issues the update instruction
-		stmt.executeUpdate (sql);
-
-		// close the instruction
-	    stmt.close ();
-	}//end executeUpdate
-
-	/**
-	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
-	 * method issues the query to the DBMS and outputs the results to
-	 * standard out.
-	 * 
-	 * @param query the input query string
-	 * @return the number of rows returned
-	 * @throws java.sql.SQLException when failed to execute the query
-	 */
-	public int executeQueryAndPrintResult (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
-
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
-
-		/*
-		 *  obtains the metadata object for the returned result set.  The metadata
-		 *  contains row and column info.
-		 */
-		ResultSetMetaData rsmd = rs.getMetaData ();
-		int numCol = rsmd.getColumnCount ();
-		int rowCount = 0;
-		
-		//iterates through the result set and output them to standard out.
-		boolean outputHeader = true;
-		while (rs.next()){
-			if(outputHeader){
-				for(int i = 1; i <= numCol; i++){
-					System.out.print(rsmd.getColumnName(i) + "\t");
-			    }
-			    System.out.println();
-			    outputHeader = false;
-			}
-			for (int i=1; i<=numCol; ++i)
-				System.out.print (rs.getString (i) + "\t");
-			System.out.println ();
-			++rowCount;
-		}//end while
-		stmt.close ();
-		return rowCount;
-	}
-	
-	/**
-	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
-	 * method issues the query to the DBMS and returns the results as
-	 * a list of records. Each record in turn is a list of attribute values
-	 * 
-	 * @param query the input query string
-	 * @return the query result as a list of records
-	 * @throws java.sql.SQLException when failed to execute the query
-	 */
-	public List<List<String>> executeQueryAndReturnResult (String query) throws SQLException { 
-		//creates a statement object 
-		Statement stmt = this._connection.createStatement (); 
-		
-		//issues the query instruction 
-		ResultSet rs = stmt.executeQuery (query); 
-	 
-		/*
-		 * obtains the metadata object for the returned result set.  The metadata 
-		 * contains row and column info. 
-		*/ 
-		ResultSetMetaData rsmd = rs.getMetaData (); 
-		int numCol = rsmd.getColumnCount (); 
-		int rowCount = 0; 
-	 
-		//iterates through the result set and saves the data returned by the query. 
-		boolean outputHeader = false;
-		List<List<String>> result  = new ArrayList<List<String>>(); 
-		while (rs.next()){
-			List<String> record = new ArrayList<String>(); 
-			for (int i=1; i<=numCol; ++i) 
-				record.add(rs.getString (i)); 
-			result.add(record); 
-		}//end while 
-		stmt.close (); 
-		return result; 
-	}//end executeQueryAndReturnResult
-	
-	/**
-	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
-	 * method issues the query to the DBMS and returns the number of results
-	 * 
-	 * @param query the input query string
-	 * @return the number of rows returned
-	 * @throws java.sql.SQLException when failed to execute the query
-	 */
-	public int executeQuery (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
-
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
-
-		int rowCount = 0;
-
-		//iterates through the result set and count nuber of results.
-		if(rs.next()){
-			rowCount++;
-		}//end while
-		stmt.close ();
-		return rowCount;
-	}
-	
-	/**
-	 * Method to fetch the last value from sequence. This
-	 * method issues the query to the DBMS and returns the current 
-	 * value of sequence used for autogenerated keys
-	 * 
-	 * @param sequence name of the DB sequence
-	 * @return current value of a sequence
-	 * @throws java.sql.SQLException when failed to execute the query
-	 */
-	
-	public int getCurrSeqVal(String sequence) throws SQLException {
-		Statement stmt = this._connection.createStatement ();
-		
-		ResultSet rs = stmt.executeQuery (String.format("Select currval('%s')", sequence));
-		if (rs.next()) return rs.getInt(1);
-		return -1;
-	}
-
-	/**
-	 * Method to close the physical connection if it is open.
-	 */
-	public void cleanup(){
-		try{
-			if (this._connection != null){
-				this._connection.close ();
-			}//end if
-		}catch (SQLException e){
-	         // ignored.
-		}//end try
-	}//end cleanup
-
-	/**
-	 * The main execution method
-	 * 
-	 * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
-	 */
-	public static void main (String[] args) {
-		if (args.length != 3) {
-			System.err.println (
-				"Usage: " + "java [-classpath <classpath>] " + DBproject.class.getName () +
-		            " <dbname> <port> <user>");
-			return;
-		}//end if
-		
-		DBproject esql = null;
-		
-		try{
-			System.out.println("(1)");
-			
-			try {
-				Class.forName("org.postgresql.Driver");
-			}catch(Exception e){
-
-				System.out.println("Where is your PostgreSQL JDBC Driver? " + "Include in your library path!");
-				e.printStackTrace();
-				return;
-			}
-			
-			System.out.println("(2)");
-			String dbname = args[0];
-			String dbport = args[1];
-			String user = args[2];
-			
-			esql = new DBproject (dbname, dbport, user, "");
-			
-			boolean keepon = true;
-			while(keepon){
-				System.out.println("MAIN MENU");
-				System.out.println("---------");
-				System.out.println("1. Add Doctor");
-				System.out.println("2. Add Patient");
-				System.out.println("3. Add Appointment");
-				System.out.println("4. Make an Appointment");
-				System.out.println("5. List appointments of a given doctor");
-				System.out.println("6. List all available appointments of a given department");
-				System.out.println("7. List total number of different types of appointments per doctor in descending order");
-				System.out.println("8. Find total number of patients per doctor with a given status");
-				System.out.println("9. < EXIT");
-				
-				switch (readChoice()){
-					case 1: AddDoctor(esql); break;
-					case 2: AddPatient(esql); break;
-					case 3: AddAppointment(esql); break;
-					case 4: MakeAppointment(esql); break;
-					case 5: ListAppointmentsOfDoctor(esql); break;
-					case 6: ListAvailableAppointmentsOfDepartment(esql); break;
-					case 7: ListStatusNumberOfAppointmentsPerDoctor(esql); break;
-					case 8: FindPatientsCountWithStatus(esql); break;
-					case 9: keepon = false; break;
-				}
-			}
-		}catch(Exception e){
-			System.err.println (e.getMessage ());
-		}finally{
-			try{
-				if(esql != null) {
-					System.out.print("Disconnecting from database...");
-					esql.cleanup ();
-					System.out.println("Done\n\nBye !");
-				}//end if				
-			}catch(Exception e){
-				// ignored.
-			}
-		}
-	}
-
-	public static int readChoice() {
-		int input;
-		// returns only if a correct value is given.
-		do {
-			System.out.print("Please make your choice: ");
-			try { // read the integer, parse it and break.
-				input = Integer.parseInt(in.readLine());
-				break;
-			}catch (Exception e) {
-				System.out.println("Your input is invalid!");
-				continue;
-			}//end try
-		}while (true);
-		return input;
-	}//end readChoice
-
-	public static void AddDoctor(DBproject esql) {//1
-		int doctor_ID;
-		String doctor_Name;
-		String specialty;
-		int dept_ID;
-
-		do {
-			System.out.print("What's the doctor's ID?");
-			try {
-				doctor_ID = Integer.parseInt(in.readLine());
-				break;
-			}
-			catch (Exception e) {
-				System.out.println("Your input is invalid!");
-				continue;
-			}
-
-		}
-		while (true);
-	
-		do {
-			System.out.print("What's the doctor's name?");
-			try {
-				doctor_Name = in.readLine();
-				if (doctor_Name.length() <= 0 || doctor_Name.length() > 128) {
-					throw new RuntimeException("The doctor's name must be between 1 and 128 characters.");
-				}
-				break;
-			}
-			catch (Exception e) {
-				System.out.println("Your input is invalid! " + e.getMessage());
-				continue;
-			}
-
-		}
-		while (true);
-
-		do {
-                        System.out.print("What's the doctor's specialty?");
-                        try {
-                                specialty = in.readLine();
-                                if (specialty.length() <= 0 || specialty.length() > 24) {
-                                        throw new RuntimeException("The doctor's specialty must be between 1 and 24 characters.");
-                                }
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid! " + e.getMessage());
-                                continue;
-                        }
-
-                }
-                while (true);
-
-		do {
-                        System.out.print("What's the doctor's department ID?");
-                        try {
-                                dept_ID = Integer.parseInt(in.readLine());
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid!");
-                                continue;
-                        }
-
-                }
-                while (true);
-		
-		try {
-			String query = "INSERT INTO Doctor (doctor_ID, name, specialty, did) VALUES (" + doctor_ID + ", \'" + doctor_Name + "\', \'" + specialty + "\', " + dept_ID + ");";
-		esql.executeUpdate(query);
-		}
-		catch (Exception e) {
-			System.err.println("Query invalid!" + e.getMessage());
-		}				
-	
-	}
-
-	public static void AddPatient(DBproject esql) {//2
-		int patient_ID;
-		String patient_Name;  
-		String gender;  
-		int patient_Age;
-		String address; 
-		int number_of_appts;
-		
-		do {
-                        System.out.print("What's the patient's ID?");
-                        try {
-                                patient_ID = Integer.parseInt(in.readLine());
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid!");
-                                continue;
-                        }
-
-                }
-                while (true);
-
-		do {
-                        System.out.print("What's the patient's name?");
-                        try {
-                                patient_Name = in.readLine();
-                                if (patient_Name.length() <= 0 || patient_Name.length() > 128) {
-                                        throw new RuntimeException("The patient's name must be between 1 and 128 characters.");
-                                }
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid!" + e.getMessage());
-                                continue;
-                        }
-
-                }
-                while (true);
-
-		do {
-			System.out.print("What is the patient's gender?");
-			try {
-				gender = in.readLine();
-				if(!gender.equals("F") && !gender.equals("M")) {
-					throw new RuntimeException("There are only two genders, F or M");
-				}
-				break;
-			}
-			catch (Exception e) {
-				System.out.println("Your input is invalid! " + e.getMessage()) ;
-				continue;
-			}
-		}
-		while(true);
-
-		do {
-                        System.out.print("What's the patient's age?");
-                        try {
-                                patient_Age = Integer.parseInt(in.readLine());
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid!");
-                                continue;
-                        }
-
-                }
-		while(true);
-
-		do {
-                        System.out.print("What's the patient's address?");
-                        try {
-                                address = in.readLine();
-                                if (address.length() <= 0 || address.length() > 256) {
-                                        throw new RuntimeException("The patient's address must be between 1 and 256 characters.");
-                                }
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid! " + e.getMessage());
-                                continue;
-                        }
-
-                }
-                while (true);	
-
-		do {
-                        System.out.print("How many appointments does the patient have? ");
-                        try {
-                                number_of_appts = Integer.parseInt(in.readLine());
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid!");
-                                continue;
-                        }
-
-                }
-                while(true);
-
-		try {
-                        String query = "INSERT INTO Patient (patient_ID, name, gtype, age, address, number_of_appts) VALUES (" + patient_ID + ", \'" + patient_Name + "\', \'" + gender + "\', " + patient_Age + ", \'" + address + "\', " + number_of_appts + ");";
-                esql.executeUpdate(query);
-                }
-                catch (Exception e) {
-                        System.err.println("Invalid query!" + e.getMessage());
-                }
-
-	}
-
-	public static void AddAppointment(DBproject esql) {//3
-		int appnt_ID;
-
-		String date;
-		LocalDate appointment_Date;
-		DateTimeFormatter dtf = DateTimeFormatter.ofPattern("MM/dd/yyyy");
-
-		String time_slot;
-
-		String status;	
-		
-
-		do {
-                        System.out.print("What's the appointment ID? ");
-                        try {
-                                appnt_ID = Integer.parseInt(in.readLine());
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid!");
-                                continue;
-                        }
-
-                }
-                while(true);
-
-		do {
-			System.out.print("What's the appointment date? ");
-			try {
-				date = in.readLine();
-				appointment_Date = LocalDate.parse(date, dtf);
-				break;
-			}
-			catch (Exception e) {
-				System.out.println("Your input is invalid! Must be in the format: MM-DD-YYYY");
-				continue;
-			}
-		}
-		while (true);
-		
-		do {
-                        System.out.print("What's the appointment time slot? ");
-                        try {
-                                time_slot = in.readLine();
-                                if (time_slot.length() != 11) {
-                                        throw new RuntimeException("Must be in the format: HH:MM-HH:MM");
-                                }
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid! " + e.getMessage());
-                                continue;
-                        }
-
-                }
-                while (true);
-
-		do {
-                        System.out.print("What is the appointment's status? ");
-                        try {
-                                status = in.readLine();
-                                if(!status.equals("PA") && !status.equals("AC") && !status.equals("AV") && !status.equals("WL")) {
-                                        throw new RuntimeException("Must be PA, AC, AV, or WL.");
-                                }
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid! " + e.getMessage()) ;
-                                continue;
-                        }
-                }
-                while(true);	
-
-		try {
-                        String query = "INSERT INTO Appointment (appnt_ID, adate, time_slot, status) VALUES (" + appnt_ID + ", \'" + date + "\', \'" + time_slot + "\', \'" + status + "\');";
-                esql.executeUpdate(query);
-                }
-                catch (Exception e) {
-                        System.err.println("Invalid query!" + e.getMessage());
-                }	
-
-	}
-
-
-	public static void MakeAppointment(DBproject esql) {//4
-		// Given a patient, a doctor and an appointment of the doctor that s/he wants to take, add an appointment to the DB
-		int patID;
-		String patName;
-                String patGender;
-                int patAge;
-                String patAddress;
-                int patNumber_of_appts;
-		int docID;
-		int appID;
-		String appStatus;
-		
-		do {
-                        System.out.print("What's the patient's ID? ");
-                        try {
-                                patID = Integer.parseInt(in.readLine());
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid!");
-                                continue;
-                        }
-
-                }
-                while (true);
-
-		 do {
-                        System.out.print("What's the patient's name? ");
-                        try {
-                                patName = in.readLine();
-                                if (patName.length() <= 0 || patName.length() > 128) {
-                                        throw new RuntimeException("The patient's name must be between 1 and 128 characters.");
-                                }
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid!" + e.getMessage());
-                                continue;
-                        }
-
-                }
-                while (true);
-
-                do {
-                        System.out.print("What is the patient's gender? ");
-                        try {
-                                patGender = in.readLine();
-                                if(!patGender.equals("F") && !patGender.equals("M")) {
-                                        throw new RuntimeException("There are only two genders, F or M");
-                                }
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid! " + e.getMessage()) ;
-                                continue;
-                        }
-                }
-                while(true);
-
-                do {
-                        System.out.print("What's the patient's age? ");
-                        try {
-                                patAge = Integer.parseInt(in.readLine());
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid!");
-                                continue;
-                        }
-
-                }
-                while(true);
-
-                do {
-                        System.out.print("What's the patient's address?");
-                        try {
-                                patAddress = in.readLine();
-                                if (patAddress.length() <= 0 || patAddress.length() > 256) {
-                                        throw new RuntimeException("The patient's address must be between 1 and 256 characters.");
-                                }
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid! " + e.getMessage());
-                                continue;
-                        }
-
-                }
-                while (true);
-
-                do {
-                        System.out.print("How many appointments does the patient have? ");
-                        try {
-                                patNumber_of_appts = Integer.parseInt(in.readLine());
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid!");
-                                continue;
-                        }
-
-                }
-                while(true);
-
-		do {
-                        System.out.print("What's the doctor's ID?");
-                        try {
-                                docID = Integer.parseInt(in.readLine());
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid!");
-                                continue;
-                        }
-
-                }
-                while (true);
-	
-		do {
-                        System.out.print("What's the appointment ID? ");
-                        try {
-                                appID = Integer.parseInt(in.readLine());
-                                break;
-                        }
-                        catch (Exception e) {
-                                System.out.println("Your input is invalid!");
-                                continue;
-                        }
-
-                }
-                while(true);
-		do {
-		try {
-			String query = "SELECT status FROM Appointment WHERE appnt_ID = " + appID + ";";
-				
-			if (esql.executeQueryAndPrintResult(query) == 0) {
-				System.out.println("No such appointment with that ID.");	
-			}
-
-			else {
-				
-				List<List<String>> yes = esql.executeQueryAndReturnResult(query);
-				String result = yes.get(0).get(0);
-				//System.out.println(result);
-				
-				if (result.equals("AV")) {
-					try {
-						query = "UPDATE Patient Set number_of_appts = " + (patNumber_of_appts+1) + ";"; 
-						esql.executeUpdate(query);	
-						System.out.println("Updating patient table");
-					}
-					catch (Exception e) {
-						System.err.println("Query invalid.");
-					}
-
-					try {			
-						query = "INSERT INTO has_appointment (appt_ID, doctor_ID) VALUES (" + appID + ", " + docID + ");";
-						esql.executeUpdate(query);
-						System.out.println("Inserting into appointment table"); 
-                			}
-                			catch (Exception e) {
-                        			System.err.println("Query invalid!");
-					}
-
-					try {
-                                                query = "UPDATE Appointment Set status = 'AC';";
-                                                esql.executeUpdate(query);
-						System.out.println("Status updated to AC");
-                                        }
-                                        catch (Exception e) {
-                                                System.err.println("Query invalid.");
-                                        }
-                		
-				}
-			
-				else if (result.equals("AC")) {
-                                        try {
-                                                query = "UPDATE Patient Set number_of_appts = " + (patNumber_of_appts+1) + ";";
-                                                esql.executeUpdate(query);
-						System.out.println("Updating patient table");
-                                        }
-                                        catch (Exception e) {
-                                                System.err.println("Query invalid.");
-                                        }
-
-                                        try {
-                                                query = "INSERT INTO has_appointment (appt_ID, doctor_ID) VALUES (" + appID + ", " + docID + ");";
-                                                esql.executeUpdate(query);
-						System.out.println("Inserting into appointment table");
-                                        }
-                                        catch (Exception e) {
-                                                System.err.println("Query invalid!");
-                                        }
-
-                                        try {
-                                                query = "UPDATE Appointment Set status = 'WL';";
-                                                esql.executeUpdate(query);
-                                                System.out.println("Status updated to WL");
-                                        }
-                                        catch (Exception e) {
-                                                System.err.println("Query invalid.");
-                                        }
-                                }
-
-				else if (result.equals("WL")) {
-                                        try {
-                                                query = "UPDATE Patient Set number_of_appts = " + (patNumber_of_appts+1) + ";";
-                                                esql.executeUpdate(query);
-                                                System.out.println("Updating patient table");
-                                        }
-                                        catch (Exception e) {
-                                                System.err.println("Query invalid.");
-                                        }
-
-                                        try {
-                                                query = "INSERT INTO has_appointment (appt_ID, doctor_ID) VALUES (" + appID + ", " + docID + ");";
-                                                esql.executeUpdate(query);
-                                                System.out.println("Inserting into appointment table");
-                                        }
-                                        catch (Exception e) {
-                                                System.err.println("Query invalid!");
-                                        }
-
-                                          
-                                        
-                                }
-
-				
-					
-			}
-				
-				
-			break;
-			}
-		
-		catch (Exception e) {
-                        System.err.println(e);
-                        continue;
-                }
-		}while(true);
-				
-			
-
-		
-		
-
-	}
-
-	public static boolean validateDate(String str){
-        if(str.length() != 10 || str.charAt(4) != '-' && str.charAt(7) != '-')
-            return false;
-        
-        String[] date = str.split("-", -1);
-        
-        int year = Integer.parseInt(date[0]);
-        int month = Integer.parseInt(date[1]);
-        int day = Integer.parseInt(date[2]);
-        
-        
-        if(year < 1900 || month < 1 || month > 12 || day < 1 || day > 31)
-            return false;
-        
-        int daysInMonth = 0;
-        switch(month){
-            case 1:
-            case 3:
-            case 5:
-            case 7:
-            case 8:
-            case 10:
-            case 12:
-                daysInMonth = 31;
-                break;
-            case 4:
-            case 6:
-            case 9:
-            case 11:
-                daysInMonth = 30;
-                break;
-            case 2:
-                daysInMonth = 28;
-                break;
-            default:
-                return false;
-        }
-        
-        return (day <= daysInMonth);
-    }
-
-
-	   public static void ListAppointmentsOfDoctor(DBproject esql) {
-    
-        
-        Scanner input = new Scanner(System.in);
-        
-       
-        String validatedDocID = "";
-        do{
-            System.out.println("Enter Doctor ID:  ");
-            String doctor_id = input.next();
-            
-            String query = "SELECT doctor_ID FROM Doctor";
-            List<List<String>> listOfDoctors = new ArrayList<List<String>>();
-            
-            
-            
-            for(List<String> did : listOfDoctors){
-                for(int i = 0; i < did.size(); i++){
-                    if(doctor_id == did.get(i))
-                        validatedDocID = doctor_id;
-                }
-            }
-        }while("".equals(validatedDocID));
-        
-        
-       
-        String date1 = "";
-        do{
-            System.out.println("Enter the earliest date in YYYY-MM-DD format:  ");
-            date1 = input.next();
-        }while(!validateDate(date1));
-        
-        
-        
-        String date2 = "";
-        do{
-            System.out.println("Enter the earliest date in YYYY-MM-DD format:  ");
-            date2 = input.next();
-        }while(!validateDate(date2));
-        
-        
-        
-        System.out.println("Listing all active and available appointments of the doctor.");
-        String query = "";
-      
-    }
- 
-    public static void ListAvailableAppointmentsOfDepartment(DBproject esql) {
-      
-        Scanner input = new Scanner(System.in);
-        
-        String validatedDepartmentName = "";
-        do{
-            System.out.print("Enter Department Name:  ");
-            String dep_name = input.next();
-            
-            String query = "SELECT name FROM Department";
-            List<List<String>> listOfDepartments = new ArrayList<List<String>>();
-            
-            
-            for(List<String> name : listOfDepartments){
-                for(int i = 0; i < name.size(); i++){
-                    if(dep_name == name.get(i))
-                        validatedDepartmentName = dep_name;
-                }
-            }
-        }while("".equals(validatedDepartmentName));
-        
-        
-       
-        String date1 = "";
-        do{
-            System.out.println("Enter date in YYYY-MM-DD format:  ");
-            date1 = input.next();
-        }while(!validateDate(date1));
-        
-        
-        System.out.println("List of available appointments of the department: " + validatedDepartmentName);
-        String query = "";
-    }
- 
-    public static void ListStatusNumberOfAppointmentsPerDoctor(DBproject esql) {
-        Scanner input = new Scanner(System.in);
-    
-    }
- 
-    
-    public static void FindPatientsCountWithStatus(DBproject esql) {
-       
-        Scanner input = new Scanner(System.in);
- 
-        
-        String validatedStatus = "";
-        do{
-            System.out.println("Enter appointment status to search: PA, AC, AV, WL");
-            String status = input.next();
-            if(status == "PA" || status == "AC" || status == "AV" || status =="WL"){
-                validatedStatus = status;
-            }
-        }while("".equals(validatedStatus));
- 
-        String query = "";
- 
- 
-    }
-}
-
-/*	public static void ListAppointmentsOfDoctor(DBproject esql) {//5
-		// For a doctor ID and a date range, find the list of active and available appointments of the doctor
-	}
-
-	public static void ListAvailableAppointmentsOfDepartment(DBproject esql) {//6
-		// For a department name and a specific date, find the list of available appointments of the department
-	}
-
-	public static void FindPatientsCountWithStatus(DBproject esql) {//8
-		// Find how many patients per doctor there are with a given status (i.e. PA, AC, AV, WL) and list that number per doctor.
-	}
-	
-	public static void ListStatusNumberOfAppointmentsPerDoctor(DBproject esql) {//7
-                // Count number of different types of appointments per doctors and list them in descending order
-                
-
-        }*/
-	
-
-
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.time.format.DateTimeFormatter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.io.File;
+import java.io.FileReader;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class defines a simple embedded SQL utility class that is designed to
+ * work with PostgreSQL JDBC drivers.
+ *
+ */
+
+public class DBproject{
+	//pool of physical database connections shared by every caller
+	private ConnectionPool _pool = null;
+	//hospitals, departments and doctors, loaded at startup and kept current
+	private ReferenceLookup _lookup = null;
+	//connection of a thread running several operations in one transaction
+	private final ThreadLocal<ConnectionPool.PooledConnection> _pinned = new ThreadLocal<ConnectionPool.PooledConnection>();
+	//doctors added to the ReferenceLookup by the open transaction of the pinned connection, in order
+	private final ThreadLocal<List<Integer>> _uncommittedDoctors = new ThreadLocal<List<Integer>>();
+	//bumped by every write made through this object, invalidates cached results
+	private final AtomicLong _writeGeneration = new AtomicLong();
+	//patients per doctor for each appointment status, for menu option 8
+	private final ResultCache<String, List<List<String>>> _patientsPerStatus =
+		new ResultCache<String, List<List<String>>>(Long.getLong("dbproject.cache.ttlMs", 5000L));
+	static BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+	//latency and volume of the database calls, see Metrics and the stats operation
+	private static final Metrics.Operation UPDATES = Metrics.global ().operation ("db.update");
+	private static final Metrics.Operation QUERIES = Metrics.global ().operation ("db.query");
+	private static final Metrics.Operation STREAMS = Metrics.global ().operation ("db.stream");
+	private static final Metrics.Operation PIPELINES = Metrics.global ().operation ("db.pipeline");
+	//blocks of generated primary keys, see IdAllocator
+	private final IdAllocator _doctorIds = new IdAllocator(this, "doctor_id_seq");
+	private final IdAllocator _patientIds = new IdAllocator(this, "patient_id_seq");
+	private final IdAllocator _appointmentIds = new IdAllocator(this, "appointment_id_seq");
+	//hours with room left per department, see CapacityIndex
+	private final CapacityIndex _capacity = new CapacityIndex(this, Long.getLong("dbproject.capacity.ttlMs", 30000L));
+	//fills the appointments given up with the next waiting patient
+	private final Waitlist _waitlist = new Waitlist(this);
+	private static final Object[] NO_PARAMS = new Object[0];
+	//statements slower than dbproject.slowlog.thresholdMs, null when not set
+	private SlowQueryLog _slowLog = null;
+	//rows fetched per round trip by streamed queries
+	static final int DEFAULT_FETCH_SIZE = Integer.getInteger("dbproject.fetchSize", 1000);
+	
+	public DBproject(String dbname, String dbport, String user, String passwd) throws SQLException {
+		System.out.print("Connecting to database...");
+		try{
+			// constructs the connection URL
+			String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
+			System.out.println ("Connection URL: " + url + "\n");
+			
+			// connection properties, statements reused this many times get a server-side plan
+			Properties props = new Properties();
+			props.setProperty("user", user);
+			props.setProperty("password", passwd);
+			props.setProperty("prepareThreshold", System.getProperty("dbproject.prepareThreshold", "5"));
+
+			// obtain the pool of physical connections
+	        this._pool = new ConnectionPool(url, props,
+	        	Integer.getInteger("dbproject.pool.minSize", 1),
+	        	Integer.getInteger("dbproject.pool.maxSize", 8),
+	        	Long.getLong("dbproject.pool.idleTimeoutMs", 300000L),
+	        	Long.getLong("dbproject.pool.borrowTimeoutMs", 30000L),
+	        	Long.getLong("dbproject.pool.leakThresholdMs", 60000L),
+	        	Integer.getInteger("dbproject.statementCacheSize", 64));
+	        System.out.println("Done");
+	        this._slowLog = SlowQueryLog.fromProperties(this._pool);
+
+	        // preloads the hospitals, departments and doctors used to validate input
+	        this._lookup = new ReferenceLookup(this._pool, Long.getLong("dbproject.reference.ttlMs", 5000L));
+	        try {
+	        	this._lookup.reload();
+	        }catch(SQLException e){
+	        	System.err.println("Reference data not loaded, retrying on first use: " + e.getMessage());
+	        }
+	        // keeps them current with the changes notified by the database
+	        long pollMillis = Long.getLong("dbproject.reference.pollMs", 500L);
+	        if (pollMillis > 0){
+	        	this._lookup.listen(pollMillis);
+	        }
+		}catch(Exception e){
+			System.err.println("Error - Unable to Connect to Database: " + e.getMessage());
+	        System.out.println("Make sure you started postgres on this machine");
+	        System.exit(-1);
+		}
+	}
+
+	/**
+	 * Method to take the connection used by the execute methods: the one
+	 * pinned to the calling thread, or else one from the pool.
+	 */
+	private ConnectionPool.PooledConnection borrow () throws SQLException {
+		ConnectionPool.PooledConnection pc = this._pinned.get ();
+		return pc != null ? pc : this._pool.borrow ();
+	}
+
+	private void release (ConnectionPool.PooledConnection pc) {
+		if (pc != this._pinned.get ()){
+			this._pool.release (pc);
+		}//end if
+	}
+
+	/**
+	 * Method to make every execute method called by this thread use the
+	 * same connection until unpinConnection is called, so that statements
+	 * of several operations can share a transaction.
+	 *
+	 * @return the pinned connection, whose autocommit mode the caller may change
+	 * @throws java.sql.SQLException when no connection could be borrowed
+	 */
+	public ConnectionPool.PooledConnection pinConnection () throws SQLException {
+		ConnectionPool.PooledConnection pc = this._pinned.get ();
+		if (pc == null){
+			pc = this._pool.borrow ();
+			this._pinned.set (pc);
+		}//end if
+		return pc;
+	}
+
+	/**
+	 * Method to give the connection pinned to this thread back to the pool.
+	 */
+	public void unpinConnection () {
+		ConnectionPool.PooledConnection pc = this._pinned.get ();
+		if (pc != null){
+			this._pinned.remove ();
+			this._uncommittedDoctors.remove ();
+			this._pool.release (pc);
+		}//end if
+	}
+
+	/**
+	 * Method to remember a doctor added to the ReferenceLookup before the
+	 * transaction of the pinned connection that inserted it committed.
+	 */
+	private void addedUncommittedDoctor (int doctorId) throws SQLException {
+		ConnectionPool.PooledConnection pc = this._pinned.get ();
+		if (pc == null || pc.getConnection ().getAutoCommit ())
+			return;
+		List<Integer> doctors = this._uncommittedDoctors.get ();
+		if (doctors == null){
+			doctors = new ArrayList<Integer>();
+			this._uncommittedDoctors.set (doctors);
+		}//end if
+		doctors.add (doctorId);
+	}
+
+	/**
+	 * Method to return how many in-memory changes the open transaction of
+	 * the pinned connection has made so far, to pass to rolledBack after
+	 * rolling back to a savepoint set now.
+	 */
+	public int transactionMark () {
+		List<Integer> doctors = this._uncommittedDoctors.get ();
+		return doctors == null ? 0 : doctors.size ();
+	}
+
+	/**
+	 * Method to tell that the transaction of the pinned connection committed,
+	 * so its in-memory changes are final.
+	 */
+	public void committed () {
+		this._uncommittedDoctors.remove ();
+	}
+
+	/**
+	 * Method to tell that the pinned connection rolled back to a savepoint,
+	 * or its whole transaction with mark 0.  The doctors added since the mark
+	 * are read again from the committed tables, which drops those that were
+	 * never committed; no notification would ever do so.
+	 *
+	 * @param mark the transactionMark taken with the savepoint
+	 * @throws java.sql.SQLException when the doctors could not be read again
+	 */
+	public void rolledBack (int mark) throws SQLException {
+		List<Integer> doctors = this._uncommittedDoctors.get ();
+		if (doctors == null || doctors.size () <= mark)
+			return;
+		List<Integer> undone = doctors.subList (mark, doctors.size ());
+		List<Integer> ids = new ArrayList<Integer>(undone);
+		undone.clear ();
+		this._lookup.recheckDoctors (ids);
+	}
+
+	/**
+	 * Method to return the in-memory department and doctor lookup.
+	 */
+	public ReferenceLookup getReferenceLookup () {
+		return this._lookup;
+	}
+
+	/**
+	 * Method to return the connection pool behind this object.
+	 */
+	public ConnectionPool getPool () {
+		return this._pool;
+	}
+
+	/**
+	 * Method to record a database call in the metrics and, when it was slow
+	 * enough, in the slow query log.
+	 */
+	private void finished (Metrics.Operation op, long start, long roundTrips, long rows, String sql, Object[] params) {
+		long nanos = System.nanoTime () - start;
+		op.record (nanos, roundTrips, rows, 0);
+		if (this._slowLog != null)
+			this._slowLog.offer (sql, params, nanos, rows);
+	}
+
+	/**
+	 * Method to execute an update SQL statement.  Update SQL instructions
+	 * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
+	 * 
+	 * @param sql the input SQL string
+	 * @throws java.sql.SQLException when update failed
+	 * */
+	public void executeUpdate (String sql) throws SQLException { 
+		long start = System.nanoTime ();
+		int rowCount = 0;
+		ConnectionPool.PooledConnection pc = borrow ();
+		try {
+			// creates a statement object
+			Statement stmt = pc.getConnection ().createStatement ();
+			try {
+				// issues the update instruction
+				rowCount = stmt.executeUpdate (sql);
+			}finally{
+				// close the instruction, also on failure as the connection goes back to the pool
+				stmt.close ();
+			}
+		}finally{
+			release (pc);
+			noteWrite ();
+			finished (UPDATES, start, 1, rowCount, sql, NO_PARAMS);
+		}
+	}//end executeUpdate
+
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
+	 * method issues the query to the DBMS and outputs the results to
+	 * standard out.
+	 * 
+	 * @param query the input query string
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQueryAndPrintResult (String query) throws SQLException {
+		long start = System.nanoTime ();
+		int rowCount = 0;
+		ConnectionPool.PooledConnection pc = borrow ();
+		try {
+			//creates a statement object
+			Statement stmt = pc.getConnection ().createStatement ();
+			try {
+				//issues the query instruction
+				ResultSet rs = stmt.executeQuery (query);
+				rowCount = printResult (rs);
+				return rowCount;
+			}finally{
+				stmt.close ();
+			}
+		}finally{
+			release (pc);
+			finished (QUERIES, start, 1, rowCount, query, NO_PARAMS);
+		}
+	}
+
+	/**
+	 * Method to output a result set to standard out, header first, in the
+	 * format of the dbproject.output.format system property.
+	 *
+	 * @param rs the result set to print, it is consumed but not closed
+	 * @return the number of rows printed
+	 * @throws java.sql.SQLException when failed to read the result set
+	 */
+	private static int printResult (ResultSet rs) throws SQLException {
+		ResultRenderer renderer = ResultRenderer.toStdout ();
+		long rowCount;
+		try {
+			//iterates through the result set and output them to standard out.
+			while (rs.next()){
+				renderer.handle (rs);
+			}//end while
+		}finally{
+			rowCount = renderer.finish ();
+		}
+		return (int) rowCount;
+	}//end printResult
+	
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
+	 * method issues the query to the DBMS and returns the results as
+	 * a list of records. Each record in turn is a list of attribute values
+	 * 
+	 * @param query the input query string
+	 * @return the query result as a list of records
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public List<List<String>> executeQueryAndReturnResult (String query) throws SQLException { 
+		long start = System.nanoTime ();
+		List<List<String>> result = null;
+		ConnectionPool.PooledConnection pc = borrow ();
+		try {
+			//creates a statement object 
+			Statement stmt = pc.getConnection ().createStatement (); 
+			try {
+				//issues the query instruction 
+				ResultSet rs = stmt.executeQuery (query); 
+				result = collectResult (rs);
+				return result; 
+			}finally{
+				stmt.close (); 
+			}
+		}finally{
+			release (pc);
+			finished (QUERIES, start, 1, result == null ? 0 : result.size (), query, NO_PARAMS);
+		}
+	}//end executeQueryAndReturnResult
+
+	/**
+	 * Method to save every row of a result set as a list of attribute values.
+	 *
+	 * @param rs the result set to read, it is consumed but not closed
+	 * @return the rows as a list of records
+	 * @throws java.sql.SQLException when failed to read the result set
+	 */
+	private static List<List<String>> collectResult (ResultSet rs) throws SQLException {
+		/*
+		 * obtains the metadata object for the returned result set.  The metadata 
+		 * contains row and column info. 
+		*/ 
+		int numCol = rs.getMetaData ().getColumnCount (); 
+	 
+		//iterates through the result set and saves the data returned by the query. 
+		List<List<String>> result  = new ArrayList<List<String>>(); 
+		while (rs.next()){
+			List<String> record = new ArrayList<String>(); 
+			for (int i=1; i<=numCol; ++i) 
+				record.add(rs.getString (i)); 
+			result.add(record); 
+		}//end while 
+		return result;
+	}//end collectResult
+	
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
+	 * method issues the query to the DBMS and returns the number of results
+	 * 
+	 * @param query the input query string
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQuery (String query) throws SQLException {
+		long start = System.nanoTime ();
+		int rowCount = 0;
+		ConnectionPool.PooledConnection pc = borrow ();
+		try {
+			//creates a statement object
+			Statement stmt = pc.getConnection ().createStatement ();
+			try {
+				//issues the query instruction
+				ResultSet rs = stmt.executeQuery (query);
+
+				//iterates through the result set and count nuber of results.
+				if(rs.next()){
+					rowCount++;
+				}//end while
+				return rowCount;
+			}finally{
+				stmt.close ();
+			}
+		}finally{
+			release (pc);
+			finished (QUERIES, start, 1, rowCount, query, NO_PARAMS);
+		}
+	}
+
+	/**
+	 * Method to execute a parameterized update SQL statement.  The statement
+	 * is taken from the borrowed connection's statement cache, so repeated
+	 * calls with the same template are parsed and planned only once.
+	 *
+	 * @param sql the SQL template, using ? for bind values
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return the number of rows affected
+	 * @throws java.sql.SQLException when update failed
+	 */
+	public int executeUpdate (String sql, Object... params) throws SQLException {
+		long start = System.nanoTime ();
+		int rowCount = 0;
+		ConnectionPool.PooledConnection pc = borrow ();
+		try {
+			PreparedStatement stmt = pc.getStatementCache ().prepare (sql);
+			bind (stmt, params);
+			rowCount = stmt.executeUpdate ();
+			return rowCount;
+		}finally{
+			release (pc);
+			noteWrite ();
+			finished (UPDATES, start, 1, rowCount, sql, params);
+		}
+	}//end executeUpdate
+
+	/**
+	 * Method to send the statements of a pipeline in one round trip, as a
+	 * single multi-statement prepared text taken from the statement cache.
+	 *
+	 * @param pipeline the statements to run
+	 * @return the update count or rows of each statement, or the error that rolled them back
+	 * @throws java.sql.SQLException when the connection failed
+	 */
+	public Pipeline.Result executePipeline (Pipeline pipeline) throws SQLException {
+		long start = System.nanoTime ();
+		long rowCount = 0;
+		ConnectionPool.PooledConnection pc = borrow ();
+		try {
+			PreparedStatement stmt = pc.getStatementCache ().prepare (pipeline.getSql ());
+			bind (stmt, pipeline.getParams ());
+			int[] counts = new int[pipeline.size ()];
+			List<List<List<String>>> rows = new ArrayList<List<List<String>>>();
+			try {
+				boolean isQuery = stmt.execute ();
+				for (int i = 0; i < counts.length; ++i){
+					if (isQuery){
+						ResultSet rs = stmt.getResultSet ();
+						rows.add (collectResult (rs));
+						rs.close ();
+						counts[i] = -1;
+						rowCount += rows.get (i).size ();
+					}else{
+						rows.add (null);
+						counts[i] = stmt.getUpdateCount ();
+						rowCount += Math.max (0, counts[i]);
+					}
+					isQuery = stmt.getMoreResults ();
+				}//end for
+			}catch (SQLException e){
+				//class 08 is a lost connection, anything else failed a statement
+				if (e.getSQLState () != null && e.getSQLState ().startsWith ("08"))
+					throw e;
+				return Pipeline.failed (counts.length, e);
+			}
+			return Pipeline.succeeded (counts, rows);
+		}finally{
+			release (pc);
+			noteWrite ();
+			finished (PIPELINES, start, 1, rowCount, pipeline.getSql (), pipeline.getParams ());
+		}
+	}//end executePipeline
+
+	/**
+	 * Method to execute a parameterized query and output the results to
+	 * standard out.  Rows are streamed, so the result is never held in memory,
+	 * and written through a ResultRenderer in the format of the
+	 * dbproject.output.format system property.
+	 *
+	 * @param query the SQL template, using ? for bind values
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQueryAndPrintResult (String query, Object... params) throws SQLException {
+		return (int) executeQueryAndRender (ResultRenderer.toStdout (), query, params);
+	}
+
+	/**
+	 * Method to execute a parameterized query and stream its rows to a
+	 * renderer, which is finished once the query succeeded.  A failed query
+	 * leaves the renderer unfinished, so no complete looking but empty
+	 * listing is written.
+	 *
+	 * @param renderer the destination of the rows
+	 * @param query the SQL template, using ? for bind values
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query or to write the rows
+	 */
+	public long executeQueryAndRender (ResultRenderer renderer, String query, Object... params) throws SQLException {
+		streamQuery (query, renderer, params);
+		return renderer.finish ();
+	}
+	/**
+	 * Method to execute a parameterized query and return the results as a
+	 * list of records.
+	 *
+	 * @param query the SQL template, using ? for bind values
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return the query result as a list of records
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public List<List<String>> executeQueryAndReturnResult (String query, Object... params) throws SQLException {
+		long start = System.nanoTime ();
+		List<List<String>> result = null;
+		ConnectionPool.PooledConnection pc = borrow ();
+		try {
+			PreparedStatement stmt = pc.getStatementCache ().prepare (query);
+			bind (stmt, params);
+			ResultSet rs = stmt.executeQuery ();
+			try {
+				result = collectResult (rs);
+				return result;
+			}finally{
+				rs.close ();
+			}
+		}finally{
+			release (pc);
+			finished (QUERIES, start, 1, result == null ? 0 : result.size (), query, params);
+		}
+	}//end executeQueryAndReturnResult
+
+	/**
+	 * Method to execute a parameterized query and return whether it
+	 * produced any row (1) or not (0), like executeQuery(String).
+	 *
+	 * @param query the SQL template, using ? for bind values
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQuery (String query, Object... params) throws SQLException {
+		long start = System.nanoTime ();
+		int rowCount = 0;
+		ConnectionPool.PooledConnection pc = borrow ();
+		try {
+			PreparedStatement stmt = pc.getStatementCache ().prepare (query);
+			bind (stmt, params);
+			ResultSet rs = stmt.executeQuery ();
+			try {
+				rowCount = rs.next() ? 1 : 0;
+				return rowCount;
+			}finally{
+				rs.close ();
+			}
+		}finally{
+			release (pc);
+			finished (QUERIES, start, 1, rowCount, query, params);
+		}
+	}
+
+	/**
+	 * Method to execute a parameterized query and hand its rows to a
+	 * callback as they arrive.  The query runs inside a read transaction with
+	 * the given fetch size, so the driver keeps a server-side cursor and
+	 * holds at most one batch of rows in memory however large the result is.
+	 *
+	 * @param query the SQL template, using ? for bind values
+	 * @param fetchSize the number of rows fetched per round trip
+	 * @param handler the callback invoked once per row
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return the number of rows streamed
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public long streamQuery (String query, int fetchSize, RowHandler handler, Object... params) throws SQLException {
+		long start = System.nanoTime ();
+		long rowCount = 0;
+		ConnectionPool.PooledConnection pc = borrow ();
+		try {
+			Connection conn = pc.getConnection ();
+			//the driver only fetches in batches when autocommit is off; a
+			//transaction already open on a pinned connection is left to its owner
+			boolean autoCommit = conn.getAutoCommit ();
+			if (autoCommit)
+				conn.setAutoCommit (false);
+			PreparedStatement stmt = pc.getStatementCache ().prepare (query);
+			bind (stmt, params);
+			stmt.setFetchSize (fetchSize);
+			ResultSet rs = stmt.executeQuery ();
+			try {
+				while (rs.next ()){
+					handler.handle (rs);
+					++rowCount;
+				}//end while
+			}finally{
+				rs.close ();
+				//cached statements are shared, so restore the default
+				stmt.setFetchSize (0);
+			}
+			if (autoCommit){
+				conn.commit ();
+				conn.setAutoCommit (true);
+			}//end if
+			return rowCount;
+		}finally{
+			release (pc);
+			//one round trip for the query and one per further batch of rows
+			finished (STREAMS, start, 1 + (fetchSize > 0 ? rowCount / fetchSize : 0), rowCount, query, params);
+		}
+	}//end streamQuery
+
+	/**
+	 * Method to stream a parameterized query with the default fetch size,
+	 * taken from the dbproject.fetchSize system property.
+	 *
+	 * @param query the SQL template, using ? for bind values
+	 * @param handler the callback invoked once per row
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return the number of rows streamed
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public long streamQuery (String query, RowHandler handler, Object... params) throws SQLException {
+		return streamQuery (query, DEFAULT_FETCH_SIZE, handler, params);
+	}
+
+	/**
+	 * Method to bind the given values to the placeholders of a statement.
+	 * A null value is bound as SQL NULL.
+	 */
+	static void bind (PreparedStatement stmt, Object[] params) throws SQLException {
+		stmt.clearParameters ();
+		for (int i = 0; i < params.length; ++i) {
+			if (params[i] == null)
+				stmt.setNull (i + 1, java.sql.Types.NULL);
+			else
+				stmt.setObject (i + 1, params[i]);
+		}//end for
+	}//end bind
+
+	/**
+	 * Method to record that data was written, so cached results are reloaded.
+	 * The execute methods call it for updates; writers that go through a
+	 * query (such as a booking) or straight to the pool must call it.
+	 */
+	public void noteWrite () {
+		this._writeGeneration.incrementAndGet ();
+	}
+
+	/**
+	 * Method to return the number of patients per doctor with appointments
+	 * of a status, busiest doctors first.  The four statuses are counted in
+	 * one pass and cached together until the cache time to live
+	 * (dbproject.cache.ttlMs, default 5000) ends or a write is made.
+	 *
+	 * @param status PA, AC, AV or WL
+	 * @return records of doctor ID and number of patients
+	 * @throws java.lang.Exception when failed to execute the query
+	 */
+	public List<List<String>> getPatientsPerDoctorWithStatus (String status) throws Exception {
+		List<List<String>> rows = this._patientsPerStatus.get (status, this._writeGeneration.get (),
+			new ResultCache.Loader<String, List<List<String>>>() {
+				public Map<String, List<List<String>>> load () throws Exception {
+					final String[] statuses = {"PA", "AC", "AV", "WL"};
+					final Map<String, List<List<String>>> byStatus = new HashMap<String, List<List<String>>>();
+					for (String st : statuses)
+						byStatus.put (st, new ArrayList<List<String>>());
+					streamQuery (PATIENTS_PER_DOCTOR_WITH_STATUS_SQL, new RowHandler() {
+						public void handle (ResultSet rs) throws SQLException {
+							for (int i = 0; i < statuses.length; ++i){
+								long patients = rs.getLong (i + 2);
+								if (patients > 0){
+									List<String> record = new ArrayList<String>();
+									record.add (rs.getString (1));
+									record.add (Long.toString (patients));
+									byStatus.get (statuses[i]).add (record);
+								}
+							}//end for
+						}
+					});
+					//busiest doctors first, then by doctor ID
+					Comparator<List<String>> order = new Comparator<List<String>>() {
+						public int compare (List<String> a, List<String> b) {
+							int c = Long.compare (Long.parseLong (b.get (1)), Long.parseLong (a.get (1)));
+							return c != 0 ? c : Long.compare (Long.parseLong (a.get (0)), Long.parseLong (b.get (0)));
+						}
+					};
+					for (List<List<String>> list : byStatus.values ())
+						list.sort (order);
+					return byStatus;
+				}
+			});
+		return rows == null ? new ArrayList<List<String>>() : rows;
+	}//end getPatientsPerDoctorWithStatus
+
+	/**
+	 * Method to return the number of statement cache hits over all pooled connections.
+	 */
+	public long getStatementCacheHits () {
+		return this._pool.getStatementCacheHits ();
+	}
+
+	/**
+	 * Method to return the number of statement cache misses over all pooled connections.
+	 */
+	public long getStatementCacheMisses () {
+		return this._pool.getStatementCacheMisses ();
+	}
+
+	/**
+	 * Method to fetch the last value from sequence. This
+	 * method issues the query to the DBMS and returns the current 
+	 * value of sequence used for autogenerated keys
+	 * 
+	 * @param sequence name of the DB sequence
+	 * @return current value of a sequence
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	
+	public int getCurrSeqVal(String sequence) throws SQLException {
+		ConnectionPool.PooledConnection pc = borrow ();
+		try {
+			PreparedStatement stmt = pc.getConnection ().prepareStatement ("SELECT currval(?::regclass)");
+			try {
+				stmt.setString (1, sequence);
+				ResultSet rs = stmt.executeQuery ();
+				if (rs.next()) return rs.getInt(1);
+				return -1;
+			}finally{
+				stmt.close ();
+			}
+		}finally{
+			release (pc);
+		}
+	}
+
+	/**
+	 * Method to return the generator of doctor IDs, backed by doctor_id_seq.
+	 */
+	public IdAllocator getDoctorIds () {
+		return this._doctorIds;
+	}
+
+	/**
+	 * Method to return the generator of patient IDs, backed by patient_id_seq.
+	 */
+	public IdAllocator getPatientIds () {
+		return this._patientIds;
+	}
+
+	/**
+	 * Method to return the generator of appointment IDs, backed by appointment_id_seq.
+	 */
+	public IdAllocator getAppointmentIds () {
+		return this._appointmentIds;
+	}
+
+	/**
+	 * Method to return the index of the hours with room left.
+	 */
+	public CapacityIndex getCapacityIndex () {
+		return this._capacity;
+	}
+
+	/**
+	 * Method to return the waitlist of the appointments.
+	 */
+	public Waitlist getWaitlist () {
+		return this._waitlist;
+	}
+
+	/**
+	 * Method to start the number of promotion workers given by
+	 * dbproject.waitlist.workers, which run until cleanup.  Without that
+	 * property only serve mode starts them (one worker); the menu and
+	 * script modes leave the vacancies to a waitlist-workers process.
+	 *
+	 * @param byDefault whether to start one worker when the property is not set
+	 */
+	public void startWaitlistWorkers (boolean byDefault) {
+		Integer workers = Integer.getInteger ("dbproject.waitlist.workers");
+		if (workers == null && !byDefault) {
+			return;
+		}//end if
+		this._waitlist.start (workers == null ? 1 : workers, Long.getLong ("dbproject.waitlist.idleMs", 20L),
+			Long.getLong ("dbproject.waitlist.maxIdleMs", 2000L), false);
+	}
+
+	/**
+	 * Method to stop the waitlist workers and close the connection pool if it is open.
+	 */
+	public void cleanup(){
+		this._waitlist.stop ();
+		if (this._lookup != null){
+			this._lookup.close ();
+		}//end if
+		if (this._slowLog != null){
+			this._slowLog.close ();
+		}//end if
+		if (this._pool != null){
+			this._pool.close ();
+		}//end if
+	}//end cleanup
+
+	/**
+	 * The main execution method
+	 * 
+	 * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
+	 */
+	public static void main (String[] args) {
+		if (args.length < 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + DBproject.class.getName () +
+		            " <dbname> <port> <user> [<command> <args>...]\n" +
+		            "Commands:\n" +
+		            "  load <csv-dir> [--truncate]   stream the CSV files into the tables\n" +
+		            "  ingest <doctor|patient|appointment> <csv> [<error-file>]\n" +
+		            "                                batch insert checked rows, rejects go to the error file\n" +
+		            "  verify-indexes                fail when a menu query scans a large table\n" +
+		            "  script [<file>|-] [--transaction <n>] [--stop-on-error]\n" +
+		            "                                run operations such as 'book pid=1 doc=2 appt=3', one per line\n" +
+		            "  serve [<port>] [<host>]       answer the eight operations as JSON over HTTP, default 127.0.0.1:8080\n" +
+		            "  partitions [<months-ahead>] [--archive <months-kept>]\n" +
+		            "                                create the coming Appointment partitions, archive old past ones\n" +
+		            "  waitlist-workers [<n>]        promote waiting patients into cancelled appointments until stopped\n" +
+		            "  loadtest [<clients>] [<seconds>]\n" +
+		            "                                book concurrently from several clients, then audit the bookings");
+			return;
+		}//end if
+		
+		DBproject esql = null;
+		
+		try{
+			System.out.println("(1)");
+			
+			try {
+				Class.forName("org.postgresql.Driver");
+			}catch(Exception e){
+
+				System.out.println("Where is your PostgreSQL JDBC Driver? " + "Include in your library path!");
+				e.printStackTrace();
+				return;
+			}
+			
+			System.out.println("(2)");
+			String dbname = args[0];
+			String dbport = args[1];
+			String user = args[2];
+			
+			esql = new DBproject (dbname, dbport, user, "");
+
+			// runs a single command instead of the menu
+			if (args.length > 3) {
+				if (!runCommand (esql, args)) {
+					esql.cleanup ();
+					System.exit (1);
+				}//end if
+				return;
+			}//end if
+			
+			esql.startWaitlistWorkers (false);
+			boolean keepon = true;
+			while(keepon){
+				System.out.println("MAIN MENU");
+				System.out.println("---------");
+				System.out.println("1. Add Doctor");
+				System.out.println("2. Add Patient");
+				System.out.println("3. Add Appointment");
+				System.out.println("4. Make an Appointment");
+				System.out.println("5. List appointments of a given doctor");
+				System.out.println("6. List all available appointments of a given department");
+				System.out.println("7. List total number of different types of appointments per doctor in descending order");
+				System.out.println("8. Find total number of patients per doctor with a given status");
+				System.out.println("9. < EXIT");
+				System.out.println("10. Show statistics");
+				System.out.println("11. Cancel an appointment");
+				
+				switch (readChoice()){
+					case 1: AddDoctor(esql); break;
+					case 2: AddPatient(esql); break;
+					case 3: AddAppointment(esql); break;
+					case 4: MakeAppointment(esql); break;
+					case 5: ListAppointmentsOfDoctor(esql); break;
+					case 6: ListAvailableAppointmentsOfDepartment(esql); break;
+					case 7: ListStatusNumberOfAppointmentsPerDoctor(esql); break;
+					case 8: FindPatientsCountWithStatus(esql); break;
+					case 9: keepon = false; break;
+					case 10: showStats(esql); break;
+					case 11: CancelAppointment(esql); break;
+				}
+			}
+		}catch(Exception e){
+			System.err.println (e.getMessage ());
+		}finally{
+			try{
+				if(esql != null) {
+					System.out.print("Disconnecting from database...");
+					esql.cleanup ();
+					System.out.println("Done\n\nBye !");
+				}//end if				
+			}catch(Exception e){
+				// ignored.
+			}
+		}
+	}
+
+	/**
+	 * Method to run the command given after the connection arguments.
+	 *
+	 * @param esql the connected database
+	 * @param args the command line arguments, the command starts at index 3
+	 * @return false when the command is unknown or reported a failure
+	 * @throws java.lang.Exception when the command failed
+	 */
+	public static boolean runCommand(DBproject esql, String[] args) throws Exception {
+		String command = args[3];
+		if (command.equals("load") && args.length >= 5) {
+			boolean truncate = args.length > 5 && args[5].equals("--truncate");
+			new BulkLoader(esql.getPool(), Integer.getInteger("dbproject.load.parallelism", 4))
+				.load(new File(args[4]), truncate);
+		}else if (command.equals("ingest") && args.length >= 6) {
+			File errors = new File(args.length > 6 ? args[6] : args[5] + ".rejected");
+			new BulkIngest(esql.getPool(), Integer.getInteger("dbproject.ingest.batchSize", 1000),
+				Integer.getInteger("dbproject.ingest.commitInterval", 10000))
+				.ingest(args[4], new File(args[5]), errors);
+		}else if (command.equals("verify-indexes")) {
+			return new IndexVerifier(esql.getPool(), Long.getLong("dbproject.verify.minRows", 10000L)).verify();
+		}else if (command.equals("script")) {
+			String source = "-";
+			int perTransaction = 0;
+			boolean stopOnError = false;
+			for (int i = 4; i < args.length; ++i) {
+				if (args[i].equals("--transaction") && i + 1 < args.length) {
+					perTransaction = Integer.parseInt(args[++i]);
+				}else if (args[i].equals("--stop-on-error")) {
+					stopOnError = true;
+				}else {
+					source = args[i];
+				}
+			}//end for
+			BufferedReader reader = source.equals("-") ? in : new BufferedReader(new FileReader(source));
+			esql.startWaitlistWorkers(false);
+			try {
+				return new ScriptRunner(esql, perTransaction, stopOnError).run(reader);
+			}finally {
+				if (reader != in) {
+					reader.close();
+				}
+			}
+		}else if (command.equals("serve")) {
+			esql.startWaitlistWorkers(true);
+			int port = args.length > 4 ? Integer.parseInt(args[4]) : 8080;
+			String host = args.length > 5 ? args[5] : "127.0.0.1";
+			new HttpService(esql, Integer.getInteger("dbproject.http.concurrency", esql.getPool().getMaxSize()),
+				Long.getLong("dbproject.http.queueTimeoutMs", 2000L),
+				Long.getLong("dbproject.http.statementTimeoutMs", 10000L)).serveForever(host, port);
+		}else if (command.equals("partitions")) {
+			int ahead = 3;
+			int kept = -1;
+			for (int i = 4; i < args.length; ++i) {
+				if (args[i].equals("--archive") && i + 1 < args.length) {
+					kept = Integer.parseInt(args[++i]);
+				}else {
+					ahead = Integer.parseInt(args[i]);
+				}
+			}//end for
+			return new PartitionMaintenance(esql.getPool()).maintain(ahead, kept);
+		}else if (command.equals("waitlist-workers")) {
+			int workers = args.length > 4 ? Integer.parseInt(args[4]) : Integer.getInteger("dbproject.waitlist.workers", 1);
+			esql.getWaitlist().start(workers, Long.getLong("dbproject.waitlist.idleMs", 20L),
+				Long.getLong("dbproject.waitlist.maxIdleMs", 2000L), true);
+			System.out.println("Promoting waiting patients with " + workers + " workers, press Ctrl-C to stop");
+			Thread.sleep(Long.MAX_VALUE);
+		}else if (command.equals("loadtest")) {
+			int clients = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+			long seconds = args.length > 5 ? Long.parseLong(args[5]) : 30;
+			return LoadGenerator.fromProperties(esql, clients, seconds).run();
+		}else {
+			System.err.println("Unknown command or missing arguments: " + command);
+			return false;
+		}
+		return true;
+	}//end runCommand
+
+	// the operations of the menu without prompts, shared with the script mode;
+	// they check their arguments and throw RuntimeException when one is invalid
+
+	private static final Metrics.Operation ADD_DOCTOR = Metrics.global().operation("op.add-doctor");
+	private static final Metrics.Operation ADD_PATIENT = Metrics.global().operation("op.add-patient");
+	private static final Metrics.Operation ADD_APPOINTMENT = Metrics.global().operation("op.add-appointment");
+	private static final Metrics.Operation LIST_BY_DOCTOR = Metrics.global().operation("op.list-by-doctor");
+	private static final Metrics.Operation LIST_AVAILABLE = Metrics.global().operation("op.list-available-by-department");
+	private static final Metrics.Operation STATUS_COUNTS = Metrics.global().operation("op.status-counts");
+	private static final Metrics.Operation OPEN_SLOTS = Metrics.global().operation("op.open-slots");
+	private static final Metrics.Operation FREE_BETWEEN = Metrics.global().operation("op.free-between");
+	private static final Metrics.Operation PATIENTS_PER_STATUS = Metrics.global().operation("op.patients-per-status");
+
+	public static void addDoctor(DBproject esql, int doctorId, String name, String specialty, int deptId) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			esql.executeUpdate("INSERT INTO Doctor (doctor_ID, name, specialty, did) VALUES (?, ?, ?, ?)", doctorId,
+				checkLength(name, 128, "The doctor's name"), checkLength(specialty, 24, "The doctor's specialty"), deptId);
+			esql.getReferenceLookup().addDoctor(doctorId, deptId);
+			esql.addedUncommittedDoctor(doctorId);
+		}finally {
+			ADD_DOCTOR.record(System.nanoTime() - start, 0, 0, 0);
+		}
+	}
+
+	public static void addPatient(DBproject esql, int patientId, String name, String gender, int age, String address,
+			int appointments) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			esql.executeUpdate("INSERT INTO Patient (patient_ID, name, gtype, age, address, number_of_appts) VALUES (?, ?, ?, ?, ?, ?)",
+				patientId, checkLength(name, 128, "The patient's name"), checkGender(gender), age,
+				checkLength(address, 256, "The patient's address"), appointments);
+		}finally {
+			ADD_PATIENT.record(System.nanoTime() - start, 0, 0, 0);
+		}
+	}
+
+	/**
+	 * Method to add an appointment.
+	 *
+	 * @return false when an appointment with that ID already exists
+	 */
+	public static boolean addAppointment(DBproject esql, int apptId, LocalDate date, String timeSlot, String status) throws SQLException {
+		return addAppointment(esql, apptId, date, timeSlot, status, null);
+	}
+
+	/**
+	 * Method to add an appointment and link it to its doctor, both in one
+	 * round trip and one transaction.
+	 *
+	 * @param doctorId the doctor of the appointment, null to leave it unassigned
+	 * @return false when an appointment with that ID already exists
+	 */
+	public static boolean addAppointment(DBproject esql, int apptId, LocalDate date, String timeSlot, String status,
+			Integer doctorId) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			java.sql.Date day = java.sql.Date.valueOf(date);
+			checkTimeSlot(timeSlot);
+			checkStatus(status);
+			if (doctorId == null) {
+				return esql.executeUpdate(ADD_APPOINTMENT_SQL, apptId, day, timeSlot, status) > 0;
+			}
+			if (!esql.getReferenceLookup().isDoctor(doctorId)) {
+				throw new RuntimeException("There is no doctor with that ID.");
+			}
+			Pipeline.Result result = new Pipeline()
+				.add(ADD_APPOINTMENT_SQL, apptId, day, timeSlot, status)
+				.add(LINK_NEW_APPOINTMENT_SQL, doctorId, apptId, day, timeSlot, status, apptId)
+				.execute(esql);
+			if (!result.isOk()) {
+				throw result.getError();
+			}
+			boolean added = result.getUpdateCount(0) > 0;
+			if (added && (status.equals("AC") || status.equals("WL"))) {
+				esql.getCapacityIndex().booked(doctorId, date, timeSlot, 1);
+			}
+			return added;
+		}finally {
+			ADD_APPOINTMENT.record(System.nanoTime() - start, 0, 0, 0);
+		}
+	}
+
+	public static long listAppointmentsOfDoctor(DBproject esql, int doctorId, LocalDate from, LocalDate to) throws SQLException {
+		return listAppointmentsOfDoctor(esql, ResultRenderer.toStdout(), doctorId, from, to);
+	}
+
+	public static long listAppointmentsOfDoctor(DBproject esql, ResultRenderer renderer, int doctorId, LocalDate from, LocalDate to)
+			throws SQLException {
+		long start = System.nanoTime();
+		try {
+			if (!esql.getReferenceLookup().isDoctor(doctorId)) {
+				throw new RuntimeException("There is no doctor with that ID.");
+			}
+			return esql.executeQueryAndRender(renderer, APPOINTMENTS_OF_DOCTOR_SQL, doctorId,
+				java.sql.Date.valueOf(from), java.sql.Date.valueOf(to));
+		}finally {
+			LIST_BY_DOCTOR.record(System.nanoTime() - start, 0, 0, 0);
+		}
+	}
+
+	public static long listAvailableOfDepartment(DBproject esql, String department, LocalDate date) throws SQLException {
+		return listAvailableOfDepartment(esql, ResultRenderer.toStdout(), department, date);
+	}
+
+	public static long listAvailableOfDepartment(DBproject esql, ResultRenderer renderer, String department, LocalDate date)
+			throws SQLException {
+		long start = System.nanoTime();
+		try {
+			if (!esql.getReferenceLookup().isDepartment(department)) {
+				throw new RuntimeException("There is no department with that name.");
+			}
+			return esql.executeQueryAndRender(renderer, AVAILABLE_OF_DEPARTMENT_SQL,
+				ReferenceLookup.toArrayLiteral(esql.getReferenceLookup().doctorsOfDepartment(department)), java.sql.Date.valueOf(date));
+		}finally {
+			LIST_AVAILABLE.record(System.nanoTime() - start, 0, 0, 0);
+		}
+	}
+
+	/**
+	 * Method to list the first hours of a department with room left on a
+	 * date, from the in-memory CapacityIndex; for today only the hours not
+	 * over yet.
+	 *
+	 * @param limit the most hours listed
+	 * @return the number of hours listed
+	 */
+	public static long listOpenSlots(DBproject esql, ResultRenderer renderer, String department, LocalDate date, int limit)
+			throws SQLException {
+		long start = System.nanoTime();
+		try {
+			LocalDateTime now = LocalDateTime.now();
+			int fromMinute = date.equals(now.toLocalDate()) ? now.getHour() * 60 + now.getMinute() : 0;
+			List<CapacityIndex.OpenSlot> open = esql.getCapacityIndex().nextOpen(department, date, fromMinute, limit);
+			renderer.header(new String[] {"time_slot", "doctor_id", "remaining"}, new boolean[] {false, true, true});
+			for (CapacityIndex.OpenSlot slot : open) {
+				renderer.row(new String[] {TimeSlots.format(slot.slot), Integer.toString(slot.doctorId),
+					Integer.toString(slot.remaining)});
+			}
+			renderer.finish();
+			return open.size();
+		}finally {
+			OPEN_SLOTS.record(System.nanoTime() - start, 0, 0, 0);
+		}
+	}
+
+	/**
+	 * Method to list the available appointments of a department that lie
+	 * between two times and do not overlap a booked appointment of their
+	 * doctor.
+	 *
+	 * @param from the earliest start
+	 * @param to the latest end, after from
+	 * @return the number of appointments listed
+	 */
+	public static long listFreeBetween(DBproject esql, ResultRenderer renderer, String department, LocalDateTime from,
+			LocalDateTime to) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			if (!to.isAfter(from)) {
+				throw new RuntimeException("The end must be after the start.");
+			}
+			if (!esql.getReferenceLookup().isDepartment(department)) {
+				throw new RuntimeException("There is no department with that name.");
+			}
+			return esql.executeQueryAndRender(renderer, FREE_OF_DEPARTMENT_BETWEEN_SQL,
+				java.sql.Timestamp.valueOf(from), java.sql.Timestamp.valueOf(to),
+				java.sql.Date.valueOf(from.toLocalDate()), java.sql.Date.valueOf(to.toLocalDate()),
+				ReferenceLookup.toArrayLiteral(esql.getReferenceLookup().doctorsOfDepartment(department)));
+		}finally {
+			FREE_BETWEEN.record(System.nanoTime() - start, 0, 0, 0);
+		}
+	}
+
+	public static long listStatusCounts(DBproject esql) throws SQLException {
+		long rows = listStatusCounts(esql, ResultRenderer.toStdout());
+		System.out.println(rows + " doctor(s)");
+		return rows;
+	}
+
+	public static long listStatusCounts(DBproject esql, ResultRenderer renderer) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			return esql.executeQueryAndRender(renderer, STATUS_COUNTS_PER_DOCTOR_SQL);
+		}finally {
+			STATUS_COUNTS.record(System.nanoTime() - start, 0, 0, 0);
+		}
+	}
+
+	public static long listPatientsPerDoctor(DBproject esql, String status) throws Exception {
+		long rows = listPatientsPerDoctor(esql, ResultRenderer.toStdout(), status);
+		System.out.println(rows + " doctor(s)");
+		return rows;
+	}
+
+	public static long listPatientsPerDoctor(DBproject esql, ResultRenderer renderer, String status) throws Exception {
+		long start = System.nanoTime();
+		try {
+			List<List<String>> rows = esql.getPatientsPerDoctorWithStatus(checkStatus(status));
+			renderer.header(new String[] {"doctor_id", "patients"}, new boolean[] {true, true});
+			for (List<String> row : rows) {
+				renderer.row(new String[] {row.get(0), row.get(1)});
+			}
+			renderer.finish();
+			return rows.size();
+		}finally {
+			PATIENTS_PER_STATUS.record(System.nanoTime() - start, 0, 0, 0);
+		}
+	}
+
+	/**
+	 * Method to print the latency and volume of every operation and database
+	 * call made so far, and the state of the pool and caches.
+	 */
+	public static void showStats(DBproject esql) {
+		ConnectionPool pool = esql.getPool();
+		System.out.print(Metrics.global().getReport());
+		System.out.println(String.format("connections: %d open, %d idle, %d borrowed of %d",
+			pool.getTotalCount(), pool.getIdleCount(), pool.getBorrowedCount(), pool.getMaxSize()));
+		System.out.println(String.format("statement cache: %d hits, %d misses",
+			esql.getStatementCacheHits(), esql.getStatementCacheMisses()));
+		System.out.println(String.format("patients per status cache: %d hits, %d loads",
+			esql._patientsPerStatus.getHits(), esql._patientsPerStatus.getLoads()));
+	}
+
+	public static int readChoice() {
+		int input;
+		// returns only if a correct value is given.
+		do {
+			System.out.print("Please make your choice: ");
+			try { // read the integer, parse it and break.
+				input = Integer.parseInt(in.readLine());
+				break;
+			}catch (Exception e) {
+				System.out.println("Your input is invalid!");
+				continue;
+			}//end try
+		}while (true);
+		return input;
+	}//end readChoice
+
+	public static void AddDoctor(DBproject esql) {//1
+		int doctor_ID;
+		String doctor_Name;
+		String specialty;
+		int dept_ID;
+
+		do {
+			System.out.print("What's the doctor's ID? (leave empty to generate one) ");
+			try {
+				doctor_ID = readId(in.readLine(), esql.getDoctorIds());
+				break;
+			}
+			catch (Exception e) {
+				System.out.println("Your input is invalid! " + e.getMessage());
+				continue;
+			}
+
+		}
+		while (true);
+	
+		do {
+			System.out.print("What's the doctor's name?");
+			try {
+				doctor_Name = checkLength(in.readLine(), 128, "The doctor's name");
+				break;
+			}
+			catch (Exception e) {
+				System.out.println("Your input is invalid! " + e.getMessage());
+				continue;
+			}
+
+		}
+		while (true);
+
+		do {
+                        System.out.print("What's the doctor's specialty?");
+                        try {
+                                specialty = checkLength(in.readLine(), 24, "The doctor's specialty");
+                                break;
+                        }
+                        catch (Exception e) {
+                                System.out.println("Your input is invalid! " + e.getMessage());
+                                continue;
+                        }
+
+                }
+                while (true);
+
+		do {
+                        System.out.print("What's the doctor's department ID?");
+                        try {
+                                dept_ID = Integer.parseInt(in.readLine());
+                                break;
+                        }
+                        catch (Exception e) {
+                                System.out.println("Your input is invalid!");
+                                continue;
+                        }
+
+                }
+                while (true);
+		
+		try {
+			addDoctor(esql, doctor_ID, doctor_Name, specialty, dept_ID);
+		}
+		catch (Exception e) {
+			System.err.println("Query invalid!" + e.getMessage());
+		}				
+	
+	}
+
+	public static void AddPatient(DBproject esql) {//2
+		int patient_ID;
+		String patient_Name;  
+		String gender;  
+		int patient_Age;
+		String address; 
+		int number_of_appts;
+		
+		do {
+                        System.out.print("What's the patient's ID? (leave empty to generate one) ");
+                        try {
+                                patient_ID = readId(in.readLine(), esql.getPatientIds());
+                                break;
+                        }
+                        catch (Exception e) {
+                                System.out.println("Your input is invalid! " + e.getMessage());
+                                continue;
+                        }
+
+                }
+                while (true);
+
+		do {
+                        System.out.print("What's the patient's name?");
+                        try {
+                                patient_Name = checkLength(in.readLine(), 128, "The patient's name");
+                                break;
+                        }
+                        catch (Exception e) {
+                                System.out.println("Your input is invalid!" + e.getMessage());
+                                continue;
+                        }
+
+                }
+                while (true);
+
+		do {
+			System.out.print("What is the patient's gender?");
+			try {
+				gender = checkGender(in.readLine());
+				break;
+			}
+			catch (Exception e) {
+				System.out.println("Your input is invalid! " + e.getMessage()) ;
+				continue;
+			}
+		}
+		while(true);
+
+		do {
+                        System.out.print("What's the patient's age?");
+                        try {
+                                patient_Age = Integer.parseInt(in.readLine());
+                                break;
+                        }
+                        catch (Exception e) {
+                                System.out.println("Your input is invalid!");
+                                continue;
+                        }
+
+                }
+		while(true);
+
+		do {
+                        System.out.print("What's the patient's address?");
+                        try {
+                                address = checkLength(in.readLine(), 256, "The patient's address");
+                                break;
+                        }
+                        catch (Exception e) {
+                                System.out.println("Your input is invalid! " + e.getMessage());
+                                continue;
+                        }
+
+                }
+                while (true);	
+
+		do {
+                        System.out.print("How many appointments does the patient have? ");
+                        try {
+                                number_of_appts = Integer.parseInt(in.readLine());
+                                break;
+                        }
+                        catch (Exception e) {
+                                System.out.println("Your input is invalid!");
+                                continue;
+                        }
+
+                }
+                while(true);
+
+		try {
+                        addPatient(esql, patient_ID, patient_Name, gender, patient_Age, address, number_of_appts);
+                }
+                catch (Exception e) {
+                        System.err.println("Invalid query!" + e.getMessage());
+                }
+
+	}
+
+	public static void AddAppointment(DBproject esql) {//3
+		int appnt_ID;
+
+		String date;
+		LocalDate appointment_Date;
+		DateTimeFormatter dtf = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+
+		String time_slot;
+
+		String status;	
+		
+		Integer doctor_ID = null;
+
+		do {
+                        System.out.print("What's the appointment ID? (leave empty to generate one) ");
+                        try {
+                                appnt_ID = readId(in.readLine(), esql.getAppointmentIds());
+                                break;
+                        }
+                        catch (Exception e) {
+                                System.out.println("Your input is invalid! " + e.getMessage());
+                                continue;
+                        }
+
+                }
+                while(true);
+
+		do {
+			System.out.print("What's the appointment date? ");
+			try {
+				date = in.readLine();
+				appointment_Date = LocalDate.parse(date, dtf);
+				break;
+			}
+			catch (Exception e) {
+				System.out.println("Your input is invalid! Must be in the format: MM-DD-YYYY");
+				continue;
+			}
+		}
+		while (true);
+		
+		do {
+                        System.out.print("What's the appointment time slot? ");
+                        try {
+                                time_slot = checkTimeSlot(in.readLine());
+                                break;
+                        }
+                        catch (Exception e) {
+                                System.out.println("Your input is invalid! " + e.getMessage());
+                                continue;
+                        }
+
+                }
+                while (true);
+
+		do {
+                        System.out.print("What is the appointment's status? ");
+                        try {
+                                status = checkStatus(in.readLine());
+                                break;
+                        }
+                        catch (Exception e) {
+                                System.out.println("Your input is invalid! " + e.getMessage()) ;
+                                continue;
+                        }
+                }
+                while(true);	
+
+		do {
+                        System.out.print("Which doctor is the appointment with? (leave empty for none) ");
+                        try {
+                                String doctor = in.readLine().trim();
+                                if (!doctor.isEmpty()) {
+                                        doctor_ID = Integer.parseInt(doctor);
+                                        if (!esql.getReferenceLookup().isDoctor(doctor_ID)) {
+                                                throw new RuntimeException("There is no doctor with that ID.");
+                                        }
+                                }
+                                break;
+                        }
+                        catch (Exception e) {
+                                System.out.println("Your input is invalid! " + e.getMessage());
+                                doctor_ID = null;
+                                continue;
+                        }
+                }
+                while(true);
+
+		try {
+                        if (!addAppointment(esql, appnt_ID, appointment_Date, time_slot, status, doctor_ID)) {
+                                System.out.println("Appointment " + appnt_ID + " already exists.");
+                        }
+                }
+                catch (Exception e) {
+                        System.err.println("Invalid query!" + e.getMessage());
+                }	
+
+	}
+
+
+	public static void MakeAppointment(DBproject esql) {//4
+		// Given a patient, a doctor and an appointment of the doctor that s/he wants to take, add an appointment to the DB
+		int patID;
+		int docID;
+		int appID;
+		
+		do {
+                        System.out.print("What's the patient's ID? ");
+                        try {
+                                patID = Integer.parseInt(in.readLine());
+                                break;
+                        }
+                        catch (Exception e) {
+                                System.out.println("Your input is invalid!");
+                                continue;
+                        }
+
+                }
+                while (true);
+
+		do {
+                        System.out.print("What's the doctor's ID?");
+                        try {
+                                docID = Integer.parseInt(in.readLine());
+                                break;
+                        }
+                        catch (Exception e) {
+                                System.out.println("Your input is invalid!");
+                                continue;
+                        }
+
+                }
+                while (true);
+		do {
+                        System.out.print("What's the appointment ID? ");
+                        try {
+                                appID = Integer.parseInt(in.readLine());
+                                break;
+                        }
+                        catch (Exception e) {
+                                System.out.println("Your input is invalid!");
+                                continue;
+                        }
+
+                }
+                while(true);
+
+		try {
+			BookingEngine.Result result = new BookingEngine(esql).book(patID, docID, appID);
+			System.out.println(result);
+		}
+		catch (Exception e) {
+			System.err.println("Query invalid! " + e.getMessage());
+		}
+	}
+
+	public static void CancelAppointment(DBproject esql) {//11
+		int patID;
+		int appID;
+
+		do {
+			System.out.print("What's the patient's ID? ");
+			try {
+				patID = Integer.parseInt(in.readLine());
+				break;
+			}
+			catch (Exception e) {
+				System.out.println("Your input is invalid!");
+				continue;
+			}
+		}
+		while (true);
+
+		do {
+			System.out.print("What's the appointment ID? ");
+			try {
+				appID = Integer.parseInt(in.readLine());
+				break;
+			}
+			catch (Exception e) {
+				System.out.println("Your input is invalid!");
+				continue;
+			}
+		}
+		while (true);
+
+		try {
+			System.out.println(new BookingEngine(esql).cancel(patID, appID));
+		}
+		catch (Exception e) {
+			System.err.println("Query invalid! " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Method to parse a typed ID, or to take a generated one when nothing was typed.
+	 */
+	public static int readId(String input, IdAllocator ids) throws SQLException {
+		String id = input.trim();
+		if (id.isEmpty()) {
+			int generated = ids.next();
+			System.out.println("Using ID " + generated);
+			return generated;
+		}
+		return Integer.parseInt(id);
+	}
+
+	/**
+	 * Method to check that a text field is between 1 and max characters long.
+	 * The interactive prompts and the bulk ingest share these checks.
+	 *
+	 * @param value the text entered
+	 * @param max the maximum length of the column
+	 * @param what the field as shown in the error message, e.g. "The doctor's name"
+	 * @return the value when it is valid
+	 * @throws RuntimeException with the message for the user when it is not
+	 */
+	public static String checkLength(String value, int max, String what){
+		if (value == null || value.length() <= 0 || value.length() > max) {
+			throw new RuntimeException(what + " must be between 1 and " + max + " characters.");
+		}
+		return value;
+	}
+
+	public static String checkGender(String gender){
+		if (gender == null || !gender.equals("F") && !gender.equals("M")) {
+			throw new RuntimeException("There are only two genders, F or M");
+		}
+		return gender;
+	}
+
+	public static String checkTimeSlot(String time_slot){
+		if (TimeSlots.parse(time_slot) < 0) {
+			throw new RuntimeException("Must be in the format: H:MM-HH:MM, ending after it starts");
+		}
+		return time_slot;
+	}
+
+	public static String checkStatus(String status){
+		if (status == null || !status.equals("PA") && !status.equals("AC") && !status.equals("AV") && !status.equals("WL")) {
+			throw new RuntimeException("Must be PA, AC, AV, or WL.");
+		}
+		return status;
+	}
+
+	public static boolean validateDate(String str){
+        if(str == null || str.length() != 10 || str.charAt(4) != '-' || str.charAt(7) != '-')
+            return false;
+        
+        String[] date = str.split("-", -1);
+        
+        int year, month, day;
+        try {
+            year = Integer.parseInt(date[0]);
+            month = Integer.parseInt(date[1]);
+            day = Integer.parseInt(date[2]);
+        }
+        catch (NumberFormatException e) {
+            return false;
+        }
+        
+        
+        if(year < 1900 || month < 1 || month > 12 || day < 1 || day > 31)
+            return false;
+        
+        int daysInMonth = 0;
+        switch(month){
+            case 1:
+            case 3:
+            case 5:
+            case 7:
+            case 8:
+            case 10:
+            case 12:
+                daysInMonth = 31;
+                break;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                daysInMonth = 30;
+                break;
+            case 2:
+                daysInMonth = 28;
+                break;
+            default:
+                return false;
+        }
+        
+        return (day <= daysInMonth);
+    }
+
+
+	//inserts an appointment unless its ID is taken.  The check only turns a
+	//taken ID into no row instead of an error: the key of Appointment, or the
+	//appointment_id table of a partitioned one (sql/partition_appointments.sql),
+	//still refuses an ID inserted by another client at the same moment (23505)
+	static final String ADD_APPOINTMENT_SQL =
+		"INSERT INTO Appointment (appnt_ID, adate, time_slot, status)"
+		+ " SELECT * FROM (VALUES (?::integer, ?::date, ?::varchar, ?::varchar)) AS N (appnt_ID, adate, time_slot, status)"
+		+ " WHERE NOT EXISTS (SELECT 1 FROM Appointment A WHERE A.appnt_ID = N.appnt_ID)";
+
+	//links the appointment just added to its doctor, unless an appointment
+	//with that ID existed already and differs or has a doctor
+	static final String LINK_NEW_APPOINTMENT_SQL =
+		"INSERT INTO has_appointment (appt_id, doctor_id)"
+		+ " SELECT A.appnt_ID, ? FROM Appointment A"
+		+ " WHERE A.appnt_ID = ? AND A.adate = ? AND A.time_slot = ? AND A.status = ?"
+		+ " AND NOT EXISTS (SELECT 1 FROM has_appointment H WHERE H.appt_id = ?)";
+
+	// queries of the listing operations, indexed by sql/create_indexes.sql
+
+	//(5) active and available appointments of a doctor in a date range; on a
+	//partitioned Appointment only the months of the range are read
+	static final String APPOINTMENTS_OF_DOCTOR_SQL =
+		"SELECT A.appnt_ID, A.adate, A.time_slot, A.status"
+		+ " FROM has_appointment H JOIN Appointment A ON A.appnt_ID = H.appt_id"
+		+ " WHERE H.doctor_id = ? AND A.status IN ('AC', 'AV') AND A.adate BETWEEN ? AND ?"
+		+ " ORDER BY A.adate, A.appnt_ID";
+
+	//(6) available appointments of a department's doctors on a date; the doctors
+	//come from the ReferenceLookup as an array literal such as {1,2,3}
+	static final String AVAILABLE_OF_DEPARTMENT_SQL =
+		"SELECT A.appnt_ID, A.adate, A.time_slot, H.doctor_id"
+		+ " FROM has_appointment H"
+		+ " JOIN Appointment A ON A.appnt_ID = H.appt_id"
+		+ " WHERE H.doctor_id = ANY (?::integer[]) AND A.status = 'AV' AND A.adate = ?"
+		+ " ORDER BY A.time_slot, A.appnt_ID";
+
+	//available appointments of a department's doctors lying between two times,
+	//leaving out those that overlap a booked appointment of their doctor; both
+	//range tests use the GiST indexes of sql/create_slot_ranges.sql, and the
+	//adate bounds let a partitioned Appointment read only the months asked for
+	static final String FREE_OF_DEPARTMENT_BETWEEN_SQL =
+		"SELECT A.appnt_ID, A.adate, A.time_slot, H.doctor_id"
+		+ " FROM Appointment A"
+		+ " JOIN has_appointment H ON H.appt_id = A.appnt_ID"
+		+ " WHERE A.slot <@ tsrange(?::timestamp, ?::timestamp) AND A.adate BETWEEN ?::date AND ?::date"
+		+ " AND A.status = 'AV' AND H.doctor_id = ANY (?::integer[])"
+		+ " AND NOT EXISTS (SELECT 1 FROM doctor_booked_slot B WHERE B.doctor_id = H.doctor_id AND B.slot && A.slot)"
+		+ " ORDER BY lower(A.slot), H.doctor_id, A.appnt_ID";
+
+	//(7) number of appointments of each status per doctor, busiest doctors first;
+	//read from the summary maintained by the triggers of sql/create_summaries.sql
+	static final String STATUS_COUNTS_PER_DOCTOR_SQL =
+		"SELECT doctor_id, pa, ac, av, wl, pa + ac + av + wl AS total"
+		+ " FROM doctor_status_counts"
+		+ " ORDER BY total DESC, doctor_id";
+
+	//(8) number of patients per doctor with appointments of each status, in one pass
+	static final String PATIENTS_PER_DOCTOR_WITH_STATUS_SQL =
+		"SELECT H.doctor_id,"
+		+ " COUNT(DISTINCT S.pid) FILTER (WHERE A.status = 'PA') AS pa,"
+		+ " COUNT(DISTINCT S.pid) FILTER (WHERE A.status = 'AC') AS ac,"
+		+ " COUNT(DISTINCT S.pid) FILTER (WHERE A.status = 'AV') AS av,"
+		+ " COUNT(DISTINCT S.pid) FILTER (WHERE A.status = 'WL') AS wl"
+		+ " FROM has_appointment H"
+		+ " JOIN Appointment A ON A.appnt_ID = H.appt_id"
+		+ " JOIN searches S ON S.aid = A.appnt_ID"
+		+ " GROUP BY H.doctor_id";
+
+	public static void ListAppointmentsOfDoctor(DBproject esql) {//5
+        // For a doctor ID and a date range, find the list of active and available appointments of the doctor
+        int doctor_ID;
+        do {
+            System.out.print("Enter Doctor ID: ");
+            try {
+                doctor_ID = Integer.parseInt(in.readLine());
+                if (!esql.getReferenceLookup().isDoctor(doctor_ID)) {
+                    throw new RuntimeException("There is no doctor with that ID.");
+                }
+                break;
+            }
+            catch (Exception e) {
+                System.out.println("Your input is invalid! " + e.getMessage());
+                continue;
+            }
+        }
+        while (true);
+
+        String date1 = readDate("Enter the earliest date in YYYY-MM-DD format: ");
+        String date2 = readDate("Enter the latest date in YYYY-MM-DD format: ");
+
+        System.out.println("Listing all active and available appointments of the doctor.");
+        try {
+            listAppointmentsOfDoctor(esql, doctor_ID, LocalDate.parse(date1), LocalDate.parse(date2));
+        }
+        catch (Exception e) {
+            System.err.println("Query invalid! " + e.getMessage());
+        }
+    }
+
+    /**
+     * Method to prompt until a valid YYYY-MM-DD date is entered.
+     */
+    public static String readDate(String prompt) {
+        do {
+            System.out.print(prompt);
+            try {
+                String date = in.readLine();
+                if (validateDate(date)) {
+                    return date;
+                }
+            }
+            catch (Exception e) {
+                // asks again.
+            }
+            System.out.println("Your input is invalid!");
+        }
+        while (true);
+    }
+ 
+    public static void ListAvailableAppointmentsOfDepartment(DBproject esql) {//6
+        // For a department name and a specific date, find the list of available appointments of the department
+        String dep_name;
+        do {
+            System.out.print("Enter Department Name: ");
+            try {
+                dep_name = in.readLine();
+                if (!esql.getReferenceLookup().isDepartment(dep_name)) {
+                    throw new RuntimeException("There is no department with that name.");
+                }
+                break;
+            }
+            catch (Exception e) {
+                System.out.println("Your input is invalid! " + e.getMessage());
+                continue;
+            }
+        }
+        while (true);
+
+        String date1 = readDate("Enter date in YYYY-MM-DD format: ");
+
+        System.out.println("List of available appointments of the department: " + dep_name);
+        try {
+            listAvailableOfDepartment(esql, dep_name, LocalDate.parse(date1));
+        }
+        catch (Exception e) {
+            System.err.println("Query invalid! " + e.getMessage());
+        }
+    }
+ 
+    public static void ListStatusNumberOfAppointmentsPerDoctor(DBproject esql) {//7
+        try {
+            listStatusCounts(esql);
+        }
+        catch (Exception e) {
+            System.err.println("Query invalid! " + e.getMessage());
+        }
+    }
+ 
+    
+    public static void FindPatientsCountWithStatus(DBproject esql) {//8
+        String status;
+        do {
+            System.out.print("Enter appointment status to search: PA, AC, AV, WL ");
+            try {
+                status = checkStatus(in.readLine());
+                break;
+            }
+            catch (Exception e) {
+                System.out.println("Your input is invalid! " + e.getMessage());
+                continue;
+            }
+        }
+        while (true);
+
+        try {
+            listPatientsPerDoctor(esql, status);
+        }
+        catch (Exception e) {
+            System.err.println("Query invalid! " + e.getMessage());
+        }
+    }
+}
+
+/*	public static void ListAppointmentsOfDoctor(DBproject esql) {//5
+		// For a doctor ID and a date range, find the list of active and available appointments of the doctor
+	}
+
+	public static void ListAvailableAppointmentsOfDepartment(DBproject esql) {//6
+		// For a department name and a specific date, find the list of available appointments of the department
+	}
+
+	public static void FindPatientsCountWithStatus(DBproject esql) {//8
+		// Find how many patients per doctor there are with a given status (i.e. PA, AC, AV, WL) and list that number per doctor.
+	}
+	
+	public static void ListStatusNumberOfAppointmentsPerDoctor(DBproject esql) {//7
+                // Count number of different types of appointments per doctors and list them in descending order
+                
+
+        }*/
+	
+
+
@@ -0,0 +1,420 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * This class writes the ten CSV files loaded by sql/load.sql (or the load
+ * command) at a chosen scale.  At scale 1 there are 1,000 patients, 100
+ * doctors, 100 staff and 10,000 appointments, so scale 1000 gives 1M
+ * patients and 10M appointments.  Every foreign key of create.sql holds:
+ * departments belong to hospitals, doctors to departments, and each
+ * appointment gets one doctor (has_appointment), one searching patient
+ * (searches) and one staff member of the doctor's hospital (schedules).
+ * Doctors and departments are drawn from a Zipf distribution, so a few of
+ * them are far busier than the rest.  Large tables are written in chunks by
+ * parallel workers; the output only depends on the scale and the seed.
+ *
+ * Usage: java DataGenerator <out-dir> <scale> [<threads>] [<seed>]
+ */
+
+public class DataGenerator{
+	static final int PATIENTS_PER_SCALE = 1000;
+	static final int DOCTORS_PER_SCALE = 100;
+	static final int STAFF_PER_SCALE = 100;
+	static final int APPOINTMENTS_PER_SCALE = 10000;
+	static final int DEPARTMENTS_PER_HOSPITAL = 20;
+	//rows per chunk of the appointment and patient tables
+	static final int CHUNK = 100000;
+
+	static final String[] DEPARTMENTS = {
+		"Cardiology", "Gastroenterology", "Neurology", "Oncology", "Pediatric", "Orthopedics",
+		"Dermatology", "Radiology", "Urology", "Psychiatry", "Ophthalmology", "Nephrology",
+		"Pulmonology", "Endocrinology", "Rheumatology", "Emergency Medicine", "General Surgery",
+		"Obstetrics/Gynecology", "Allergy and Immunology", "Anesthesiology"
+	};
+	static final String[] SPECIALTIES = {
+		"Allergist", "Cardiologist", "Dermatologist", "Endocrinologist", "Gastroenterologist",
+		"Neurologist", "Oncologist", "Pediatrician", "Psychiatrist", "Radiologist", "Surgeon", "Urologist"
+	};
+	static final String[] FIRST_NAMES = {
+		"Alvin", "Carrie", "Calvin", "Camille", "Lindsey", "Armand", "Alberto", "Wyatt", "Maria",
+		"Priya", "Kenji", "Fatima", "Diego", "Olivia", "Noah", "Amara", "Lucas", "Mei", "Ethan", "Sofia"
+	};
+	static final String[] LAST_NAMES = {
+		"Saunders", "Cortez", "Morrison", "Holmes", "Sullivan", "Enderle", "Scarlett", "Ruoff", "Nguyen",
+		"Patel", "Garcia", "Kim", "Okafor", "Smith", "Johnson", "Chen", "Rossi", "Schmidt", "Cohen", "Silva"
+	};
+	static final String[] STREETS = {
+		"Chapel Drive", "Bald Hill Street", "Campfire Ave.", "Main Street", "Oak Lane", "Elm Court"
+	};
+	static final String[] CITIES = {
+		"Melbourne", "Baton Rouge", "Cockeysville", "Riverside", "Fresno", "Tucson", "Boise"
+	};
+	static final String[] TIME_SLOTS = {
+		"8:00-10:00", "10:00-12:00", "13:00-15:00", "15:00-17:00", "17:00-19:00"
+	};
+	static final LocalDate FIRST_DATE = LocalDate.of(2019, 1, 1);
+	static final int DAYS = 4 * 365;
+	//appointments before this date are in the past (PA)
+	static final LocalDate CUTOFF = LocalDate.of(2021, 6, 1);
+
+	private final File _dir;
+	private final long _seed;
+	private final int _patients;
+	private final int _doctors;
+	private final int _staff;
+	private final int _appointments;
+	private final int _hospitals;
+	private final int _departments;
+
+	//department of each doctor and hospital of each department
+	private final int[] _doctorDept;
+	private final int[] _deptHospital;
+	//skewed choice of a doctor and of a patient
+	private final double[] _doctorCdf;
+	private final int[] _doctorRank;
+	private final double[] _patientCdf;
+	//number of appointments each patient searched, filled by the appointment chunks
+	private final AtomicIntegerArray _patientAppts;
+
+	public DataGenerator(File dir, int scale, long seed) {
+		this._dir = dir;
+		this._seed = seed;
+		this._patients = PATIENTS_PER_SCALE * scale;
+		this._doctors = DOCTORS_PER_SCALE * scale;
+		this._staff = STAFF_PER_SCALE * scale;
+		this._appointments = APPOINTMENTS_PER_SCALE * scale;
+		this._hospitals = 4 * Math.max(1, scale / 100);
+		this._departments = this._hospitals * DEPARTMENTS_PER_HOSPITAL;
+
+		SplittableRandom rnd = new SplittableRandom(seed);
+		this._deptHospital = new int[this._departments];
+		for (int d = 0; d < this._departments; ++d) {
+			this._deptHospital[d] = d % this._hospitals;
+		}
+		double[] deptCdf = zipf(this._departments, 1.0);
+		int[] deptRank = permutation(this._departments, rnd);
+		this._doctorDept = new int[this._doctors];
+		for (int i = 0; i < this._doctors; ++i) {
+			this._doctorDept[i] = deptRank[sample(deptCdf, rnd)];
+		}
+		this._doctorCdf = zipf(this._doctors, 1.1);
+		this._doctorRank = permutation(this._doctors, rnd);
+		this._patientCdf = zipf(this._patients, 0.6);
+		this._patientAppts = new AtomicIntegerArray(this._patients);
+	}
+
+	/**
+	 * Method to build the cumulative distribution of a Zipf law over n items.
+	 */
+	static double[] zipf(int n, double exponent) {
+		double[] cdf = new double[n];
+		double sum = 0;
+		for (int i = 0; i < n; ++i) {
+			sum += 1.0 / Math.pow(i + 1, exponent);
+			cdf[i] = sum;
+		}
+		for (int i = 0; i < n; ++i) {
+			cdf[i] /= sum;
+		}
+		return cdf;
+	}
+
+	/**
+	 * Method to draw a rank from a cumulative distribution.
+	 */
+	static int sample(double[] cdf, SplittableRandom rnd) {
+		double u = rnd.nextDouble();
+		int lo = 0, hi = cdf.length - 1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (cdf[mid] < u) {
+				lo = mid + 1;
+			}else {
+				hi = mid;
+			}
+		}//end while
+		return lo;
+	}
+
+	/**
+	 * Method to shuffle the IDs 0..n-1, so the hot items are spread over the ID range.
+	 */
+	static int[] permutation(int n, SplittableRandom rnd) {
+		int[] p = new int[n];
+		for (int i = 0; i < n; ++i) {
+			p[i] = i;
+		}
+		for (int i = n - 1; i > 0; --i) {
+			int j = rnd.nextInt(i + 1);
+			int t = p[i];
+			p[i] = p[j];
+			p[j] = t;
+		}
+		return p;
+	}
+
+	private static String pick(String[] values, SplittableRandom rnd) {
+		return values[rnd.nextInt(values.length)];
+	}
+
+	private static String name(SplittableRandom rnd) {
+		return pick(FIRST_NAMES, rnd) + " " + pick(LAST_NAMES, rnd);
+	}
+
+	private static String date(LocalDate d) {
+		return d.getMonthValue() + "/" + d.getDayOfMonth() + "/" + d.getYear();
+	}
+
+	private Writer open(String file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(
+			new FileOutputStream(new File(this._dir, file)), StandardCharsets.UTF_8), 1 << 16);
+	}
+
+	private SplittableRandom random(String table, int chunk) {
+		return new SplittableRandom(this._seed * 31 + table.hashCode() * 1000003L + chunk);
+	}
+
+	/**
+	 * Method to write every file with the given number of worker threads.
+	 */
+	public void generate(int threads) throws Exception {
+		this._dir.mkdirs();
+		long start = System.nanoTime();
+		ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			List<Future<?>> tasks = new ArrayList<Future<?>>();
+			tasks.add(workers.submit(() -> { writeHospitals(); return null; }));
+			tasks.add(workers.submit(() -> { writeDepartments(); return null; }));
+			tasks.add(workers.submit(() -> { writeStaff(); return null; }));
+			tasks.add(workers.submit(() -> { writeDoctors(); return null; }));
+			tasks.add(workers.submit(() -> { writeRequestMaintenance(); return null; }));
+			int apptChunks = (this._appointments + CHUNK - 1) / CHUNK;
+			for (int c = 0; c < apptChunks; ++c) {
+				final int chunk = c;
+				tasks.add(workers.submit(() -> { writeAppointments(chunk); return null; }));
+			}
+			waitFor(tasks);
+			tasks.clear();
+
+			//the patients' appointment counters are final once every appointment is written
+			int patientChunks = (this._patients + CHUNK - 1) / CHUNK;
+			for (int c = 0; c < patientChunks; ++c) {
+				final int chunk = c;
+				tasks.add(workers.submit(() -> { writePatients(chunk); return null; }));
+			}
+			waitFor(tasks);
+
+			concat("appointment.csv", apptChunks);
+			concat("has_appointment.csv", apptChunks);
+			concat("searches.csv", apptChunks);
+			concat("schedules.csv", apptChunks);
+			concat("patient.csv", patientChunks);
+		}finally {
+			workers.shutdownNow();
+		}
+		System.out.println(String.format("Wrote %,d patients, %,d doctors and %,d appointments to %s in %.1f s",
+			this._patients, this._doctors, this._appointments, this._dir.getPath(), (System.nanoTime() - start) / 1e9));
+	}//end generate
+
+	private static void waitFor(List<Future<?>> tasks) throws Exception {
+		for (Future<?> f : tasks) {
+			try {
+				f.get();
+			}catch (ExecutionException e) {
+				throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+			}
+		}
+	}
+
+	/**
+	 * Method to join the chunk files of a table, in order, into its CSV file.
+	 */
+	private void concat(String file, int chunks) throws IOException {
+		OutputStream out = new FileOutputStream(new File(this._dir, file));
+		try {
+			byte[] buf = new byte[1 << 16];
+			for (int c = 0; c < chunks; ++c) {
+				File part = new File(this._dir, file + "." + c);
+				InputStream in = new FileInputStream(part);
+				try {
+					int n;
+					while ((n = in.read(buf)) > 0) {
+						out.write(buf, 0, n);
+					}
+				}finally {
+					in.close();
+				}
+				part.delete();
+			}//end for
+		}finally {
+			out.close();
+		}
+	}//end concat
+
+	private void writeHospitals() throws IOException {
+		Writer w = open("hospital.csv");
+		try {
+			for (int h = 0; h < this._hospitals; ++h) {
+				w.write(h + ",General Hospital " + (h + 1) + "\n");
+			}
+		}finally {
+			w.close();
+		}
+	}
+
+	private void writeDepartments() throws IOException {
+		Writer w = open("department.csv");
+		try {
+			for (int d = 0; d < this._departments; ++d) {
+				w.write(d + "," + DEPARTMENTS[(d / this._hospitals) % DEPARTMENTS.length] + "," + this._deptHospital[d] + "\n");
+			}
+		}finally {
+			w.close();
+		}
+	}
+
+	private void writeStaff() throws IOException {
+		SplittableRandom rnd = random("staff", 0);
+		Writer w = open("staff.csv");
+		try {
+			for (int s = 0; s < this._staff; ++s) {
+				w.write(s + "," + name(rnd) + "," + (s % this._hospitals) + "\n");
+			}
+		}finally {
+			w.close();
+		}
+	}
+
+	private void writeDoctors() throws IOException {
+		SplittableRandom rnd = random("doctor", 0);
+		Writer w = open("doctor.csv");
+		try {
+			for (int i = 0; i < this._doctors; ++i) {
+				w.write(i + "," + name(rnd) + "," + pick(SPECIALTIES, rnd) + "," + this._doctorDept[i] + "\n");
+			}
+		}finally {
+			w.close();
+		}
+	}
+
+	/**
+	 * Method to pick a staff member working in a hospital; staff s works in
+	 * hospital s % hospitals.
+	 */
+	private int staffOf(int hospital, SplittableRandom rnd) {
+		int perHospital = (this._staff - hospital + this._hospitals - 1) / this._hospitals;
+		return hospital + this._hospitals * rnd.nextInt(Math.max(1, perHospital));
+	}
+
+	private void writeRequestMaintenance() throws IOException {
+		SplittableRandom rnd = random("request_maintenance", 0);
+		Writer w = open("request_maintenance.csv");
+		try {
+			for (int i = 0; i < this._doctors; ++i) {
+				int dept = this._doctorDept[i];
+				w.write((1 + rnd.nextInt(4)) + "," + DEPARTMENTS[(dept / this._hospitals) % DEPARTMENTS.length] + ","
+					+ pick(TIME_SLOTS, rnd) + "," + i + "," + staffOf(this._deptHospital[dept], rnd) + "\n");
+			}
+		}finally {
+			w.close();
+		}
+	}
+
+	/**
+	 * Method to write one chunk of the appointments together with their
+	 * doctor, searching patient and scheduling staff.
+	 */
+	private void writeAppointments(int chunk) throws IOException {
+		SplittableRandom rnd = random("appointment", chunk);
+		int first = chunk * CHUNK;
+		int last = Math.min(this._appointments, first + CHUNK);
+		Writer appts = open("appointment.csv." + chunk);
+		Writer has = open("has_appointment.csv." + chunk);
+		Writer searches = open("searches.csv." + chunk);
+		Writer schedules = open("schedules.csv." + chunk);
+		try {
+			for (int a = first; a < last; ++a) {
+				LocalDate day = FIRST_DATE.plusDays(rnd.nextInt(DAYS));
+				String status;
+				if (day.isBefore(CUTOFF)) {
+					status = "PA";
+				}else {
+					int r = rnd.nextInt(100);
+					status = r < 40 ? "AC" : r < 85 ? "AV" : "WL";
+				}
+				appts.write(a + "," + date(day) + "," + pick(TIME_SLOTS, rnd) + "," + status + "\n");
+
+				int doctor = this._doctorRank[sample(this._doctorCdf, rnd)];
+				int hospital = this._deptHospital[this._doctorDept[doctor]];
+				has.write(a + "," + doctor + "\n");
+
+				int patient = sample(this._patientCdf, rnd);
+				this._patientAppts.incrementAndGet(patient);
+				searches.write(hospital + "," + patient + "," + a + "\n");
+
+				schedules.write(a + "," + staffOf(hospital, rnd) + "\n");
+			}//end for
+		}finally {
+			appts.close();
+			has.close();
+			searches.close();
+			schedules.close();
+		}
+	}//end writeAppointments
+
+	private void writePatients(int chunk) throws IOException {
+		SplittableRandom rnd = random("patient", chunk);
+		int first = chunk * CHUNK;
+		int last = Math.min(this._patients, first + CHUNK);
+		Writer w = open("patient.csv." + chunk);
+		try {
+			for (int p = first; p < last; ++p) {
+				w.write(p + "," + name(rnd) + "," + (rnd.nextBoolean() ? "F" : "M") + "," + (1 + rnd.nextInt(95)) + ","
+					+ (100 + rnd.nextInt(9900)) + " " + pick(STREETS, rnd) + " " + pick(CITIES, rnd) + ","
+					+ this._patientAppts.get(p) + "\n");
+			}
+		}finally {
+			w.close();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: java [-classpath <classpath>] DataGenerator <out-dir> <scale> [<threads>] [<seed>]");
+			return;
+		}
+		int scale = Integer.parseInt(args[1]);
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 166L;
+		new DataGenerator(new File(args[0]), scale, seed).generate(threads);
+	}
+}
@@ -0,0 +1,417 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class serves the menu operations as JSON over HTTP, with the
+ * JDK's built-in server.  Arguments are passed as query string or form
+ * parameters with the names of the script mode (see ScriptRunner):
+ *
+ *   POST /add-doctor?id=1&amp;name=Ann+Lee&amp;specialty=Allergist&amp;dept=3
+ *   POST /add-patient?id=7&amp;name=Bo+Park&amp;gender=F&amp;age=40&amp;address=1+Main+St&amp;appts=0
+ *   POST /add-appointment?id=12&amp;date=2021-03-04&amp;slot=10:00-11:00&amp;status=AV&amp;doc=1
+ *   POST /book?pid=7&amp;doc=1&amp;appt=12
+ *   POST /cancel?pid=7&amp;appt=12
+ *   GET  /waitlist?appt=12
+ *   GET  /list-by-doctor?doc=1&amp;from=2021-03-01&amp;to=2021-03-31
+ *   GET  /list-available-by-department?dept=Cardiology&amp;date=2021-03-04
+ *   GET  /open-slots?dept=Cardiology&amp;date=2021-03-04&amp;n=10
+ *   GET  /free-between?dept=Cardiology&amp;from=2021-03-04T08:00&amp;to=2021-03-04T12:00
+ *   GET  /status-counts
+ *   GET  /patients-per-status?status=AC
+ *   GET  /stats
+ *
+ * The id of the add operations may be left out to have one generated; it
+ * is returned in the answer.  Listings answer a JSON array of rows, the
+ * other operations a JSON object.
+ * Each request runs on its own thread, a virtual thread when the JVM has
+ * them, and pins one pooled connection for its whole run.  At most as many
+ * requests as the pool has connections run at once; the others wait up to
+ * dbproject.http.queueTimeoutMs and are then answered 503 so that clients
+ * back off instead of piling up.  Every statement is limited to
+ * dbproject.http.statementTimeoutMs; the limit is set on the pinned
+ * connection for the request only and reset before the connection goes
+ * back to the pool, so other users of the pool keep their own.
+ *
+ */
+
+public class HttpService{
+	private final DBproject _esql;
+	private final Semaphore _permits;
+	private final long _queueTimeoutMillis;
+	private final long _statementTimeoutMillis;
+	private HttpServer _server = null;
+	private ExecutorService _executor = null;
+
+	public HttpService(DBproject esql, int concurrency, long queueTimeoutMillis, long statementTimeoutMillis) {
+		this._esql = esql;
+		this._permits = new Semaphore(Math.max(1, concurrency), true);
+		this._queueTimeoutMillis = queueTimeoutMillis;
+		this._statementTimeoutMillis = statementTimeoutMillis;
+	}
+
+	/**
+	 * Method to return an executor running each task on a new virtual
+	 * thread, or a bounded thread pool when the JVM has no virtual threads.
+	 */
+	static ExecutorService newRequestExecutor(int fallbackThreads) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(fallbackThreads);
+		}
+	}
+
+	/**
+	 * Method to start serving on the given address.
+	 */
+	public void start(String host, int port) throws IOException {
+		this._server = HttpServer.create(new InetSocketAddress(host, port), Integer.getInteger("dbproject.http.backlog", 1024));
+		this._executor = newRequestExecutor(Integer.getInteger("dbproject.http.threads", 64));
+		this._server.setExecutor(this._executor);
+		String[] operations = {"add-doctor", "add-patient", "add-appointment", "book", "cancel", "waitlist",
+			"list-by-doctor", "list-available-by-department", "open-slots", "free-between", "status-counts", "patients-per-status",
+			"stats"};
+		for (final String op : operations) {
+			this._server.createContext("/" + op, new HttpHandler() {
+				public void handle(HttpExchange exchange) throws IOException {
+					serve(op, exchange);
+				}
+			});
+		}
+		this._server.start();
+		System.out.println("Serving on http://" + host + ":" + port + "/");
+	}//end start
+
+	/**
+	 * Method to stop accepting requests, letting running ones finish for up
+	 * to the given number of seconds.
+	 */
+	public void stop(int delaySeconds) {
+		if (this._server != null) {
+			this._server.stop(delaySeconds);
+			this._executor.shutdown();
+		}
+	}
+
+	/**
+	 * Method to serve until the JVM is interrupted.
+	 */
+	public void serveForever(String host, int port) throws IOException, InterruptedException {
+		start(host, port);
+		final CountDownLatch stopped = new CountDownLatch(1);
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				HttpService.this.stop(2);
+				stopped.countDown();
+			}
+		});
+		stopped.await();
+	}
+
+	private void serve(String op, HttpExchange exchange) throws IOException {
+		try {
+			if (!this._permits.tryAcquire(this._queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				error(exchange, 503, "Too many requests, try again later");
+				return;
+			}
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			error(exchange, 503, "Shutting down");
+			return;
+		}
+		LazyResponse body = new LazyResponse(exchange);
+		ConnectionPool.PooledConnection pc = null;
+		try {
+			pc = this._esql.pinConnection();
+			limit(pc);
+			run(op, parameters(exchange), body);
+			body.close();
+		}catch (RuntimeException e) {
+			//invalid or missing arguments
+			body.fail(400, e.getMessage());
+		}catch (SQLException e) {
+			//23xxx are constraint violations such as a duplicate ID
+			String state = e.getSQLState();
+			body.fail(state != null && state.startsWith("23") ? 409 : state != null && state.equals("57014") ? 504 : 500, e.getMessage());
+		}catch (Exception e) {
+			body.fail(500, e.getMessage());
+		}finally {
+			if (pc != null) {
+				unlimit(pc);
+			}
+			this._esql.unpinConnection();
+			this._permits.release();
+			exchange.close();
+		}
+	}//end serve
+
+	/**
+	 * Method to set the statement timeout of the connection serving a request.
+	 */
+	private void limit(ConnectionPool.PooledConnection pc) throws SQLException {
+		if (this._statementTimeoutMillis > 0) {
+			Statement stmt = pc.getConnection().createStatement();
+			try {
+				stmt.execute("SET statement_timeout = " + this._statementTimeoutMillis);
+			}finally {
+				stmt.close();
+			}
+		}
+	}
+
+	/**
+	 * Method to give the connection back its default statement timeout
+	 * before it returns to the pool.  A connection that cannot be reset is
+	 * closed, so the pool drops it instead of handing out the limit.
+	 */
+	private void unlimit(ConnectionPool.PooledConnection pc) {
+		if (this._statementTimeoutMillis <= 0) {
+			return;
+		}
+		try {
+			//a failed query may have left its transaction open and aborted
+			if (!pc.getConnection().getAutoCommit()) {
+				pc.getConnection().rollback();
+				pc.getConnection().setAutoCommit(true);
+			}
+			Statement stmt = pc.getConnection().createStatement();
+			try {
+				stmt.execute("RESET statement_timeout");
+			}finally {
+				stmt.close();
+			}
+		}catch (SQLException e) {
+			try {
+				pc.getConnection().close();
+			}catch (SQLException ce) {
+				// ignored.
+			}
+		}
+	}
+
+	private void run(String op, Map<String, String> args, LazyResponse body) throws Exception {
+		if (op.equals("add-doctor")) {
+			int id = ScriptRunner.idArg(args, this._esql.getDoctorIds());
+			DBproject.addDoctor(this._esql, id, ScriptRunner.arg(args, "name"),
+				ScriptRunner.arg(args, "specialty"), ScriptRunner.intArg(args, "dept"));
+			body.json(201, "{\"added\":true,\"id\":" + id + "}");
+		}else if (op.equals("add-patient")) {
+			int id = ScriptRunner.idArg(args, this._esql.getPatientIds());
+			DBproject.addPatient(this._esql, id, ScriptRunner.arg(args, "name"),
+				ScriptRunner.arg(args, "gender"), ScriptRunner.intArg(args, "age"), ScriptRunner.arg(args, "address"),
+				ScriptRunner.intArg(args, "appts"));
+			body.json(201, "{\"added\":true,\"id\":" + id + "}");
+		}else if (op.equals("add-appointment")) {
+			int id = ScriptRunner.idArg(args, this._esql.getAppointmentIds());
+			if (DBproject.addAppointment(this._esql, id, ScriptRunner.dateArg(args, "date"),
+					ScriptRunner.arg(args, "slot"), ScriptRunner.arg(args, "status"), ScriptRunner.optionalIntArg(args, "doc"))) {
+				body.json(201, "{\"added\":true,\"id\":" + id + "}");
+			}else {
+				body.fail(409, "Appointment " + ScriptRunner.arg(args, "id") + " already exists.");
+			}
+		}else if (op.equals("book")) {
+			BookingEngine.Result result = new BookingEngine(this._esql)
+				.book(ScriptRunner.intArg(args, "pid"), ScriptRunner.intArg(args, "doc"), ScriptRunner.intArg(args, "appt"));
+			body.json(result.isBooked() ? 200 : 409, "{\"booked\":" + result.isBooked()
+				+ ",\"previousStatus\":" + quote(result.previousStatus) + ",\"newStatus\":" + quote(result.newStatus)
+				+ ",\"message\":" + quote(result.toString()) + "}");
+		}else if (op.equals("cancel")) {
+			BookingEngine.Cancellation result = new BookingEngine(this._esql)
+				.cancel(ScriptRunner.intArg(args, "pid"), ScriptRunner.intArg(args, "appt"));
+			body.json(result.isCancelled() ? 200 : 409, "{\"cancelled\":" + result.isCancelled()
+				+ ",\"previousStatus\":" + quote(result.previousStatus) + ",\"newStatus\":" + quote(result.newStatus)
+				+ ",\"message\":" + quote(result.toString()) + "}");
+		}else if (op.equals("waitlist")) {
+			this._esql.getWaitlist().list(body.renderer(), ScriptRunner.intArg(args, "appt"));
+		}else if (op.equals("list-by-doctor")) {
+			DBproject.listAppointmentsOfDoctor(this._esql, body.renderer(), ScriptRunner.intArg(args, "doc"),
+				ScriptRunner.dateArg(args, "from"), ScriptRunner.dateArg(args, "to"));
+		}else if (op.equals("list-available-by-department")) {
+			DBproject.listAvailableOfDepartment(this._esql, body.renderer(), ScriptRunner.arg(args, "dept"),
+				ScriptRunner.dateArg(args, "date"));
+		}else if (op.equals("open-slots")) {
+			Integer limit = ScriptRunner.optionalIntArg(args, "n");
+			DBproject.listOpenSlots(this._esql, body.renderer(), ScriptRunner.arg(args, "dept"),
+				ScriptRunner.dateArg(args, "date"), limit == null ? 10 : limit);
+		}else if (op.equals("free-between")) {
+			DBproject.listFreeBetween(this._esql, body.renderer(), ScriptRunner.arg(args, "dept"),
+				ScriptRunner.dateTimeArg(args, "from"), ScriptRunner.dateTimeArg(args, "to"));
+		}else if (op.equals("status-counts")) {
+			DBproject.listStatusCounts(this._esql, body.renderer());
+		}else if (op.equals("stats")) {
+			stats(body.renderer());
+		}else {
+			DBproject.listPatientsPerDoctor(this._esql, body.renderer(), ScriptRunner.arg(args, "status"));
+		}
+	}//end run
+
+	/**
+	 * Method to list the figures of every operation called so far, with
+	 * latencies in microseconds.
+	 */
+	private static void stats(ResultRenderer renderer) throws SQLException {
+		Metrics metrics = Metrics.global();
+		renderer.header(new String[] {"operation", "calls", "p50_us", "p99_us", "p999_us", "round_trips", "rows", "bytes"},
+			new boolean[] {false, true, true, true, true, true, true, true});
+		for (String name : metrics.getOperationNames()) {
+			renderer.row(new String[] {name, Long.toString(metrics.count(name)),
+				Double.toString(metrics.percentileMicros(name, 50)), Double.toString(metrics.percentileMicros(name, 99)),
+				Double.toString(metrics.percentileMicros(name, 99.9)), Long.toString(metrics.roundTrips(name)),
+				Long.toString(metrics.rows(name)), Long.toString(metrics.bytes(name))});
+		}
+		renderer.finish();
+	}
+
+	/**
+	 * Method to read the parameters of the query string and of a form body.
+	 */
+	private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+		Map<String, String> args = new HashMap<String, String>();
+		decode(exchange.getRequestURI().getRawQuery(), args);
+		String type = exchange.getRequestHeaders().getFirst("Content-Type");
+		if (type != null && type.startsWith("application/x-www-form-urlencoded")) {
+			InputStream in = exchange.getRequestBody();
+			ByteArrayOutputStream form = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			for (int n; (n = in.read(buf)) > 0; ) {
+				form.write(buf, 0, n);
+			}
+			decode(new String(form.toByteArray(), StandardCharsets.UTF_8), args);
+		}
+		return args;
+	}
+
+	private static void decode(String query, Map<String, String> args) throws IOException {
+		if (query == null || query.isEmpty()) {
+			return;
+		}
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq > 0) {
+				args.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+			}
+		}
+	}
+
+	static String quote(String value) {
+		if (value == null) {
+			return "null";
+		}
+		StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			}else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			}else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	private static void error(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] body = ("{\"error\":" + quote(message) + "}\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, body.length);
+		exchange.getResponseBody().write(body);
+		exchange.close();
+	}
+
+	/**
+	 * The body of a response.  The status line is only sent with the first
+	 * bytes, so a failure before any row was written still gets an error
+	 * status instead of a cut off listing.
+	 */
+	private static class LazyResponse extends OutputStream{
+		private final HttpExchange _exchange;
+		private OutputStream _out = null;
+		private boolean _done = false;
+
+		LazyResponse(HttpExchange exchange) {
+			this._exchange = exchange;
+		}
+
+		private OutputStream out() throws IOException {
+			if (this._out == null) {
+				this._exchange.getResponseHeaders().set("Content-Type", "application/json");
+				this._exchange.sendResponseHeaders(200, 0);
+				this._out = this._exchange.getResponseBody();
+			}
+			return this._out;
+		}
+
+		ResultRenderer renderer() {
+			return ResultRenderer.create("json-array", new OutputStreamWriter(this, StandardCharsets.UTF_8));
+		}
+
+		void json(int status, String json) throws IOException {
+			byte[] body = (json + "\n").getBytes(StandardCharsets.UTF_8);
+			this._exchange.getResponseHeaders().set("Content-Type", "application/json");
+			this._exchange.sendResponseHeaders(status, body.length);
+			this._exchange.getResponseBody().write(body);
+			this._done = true;
+		}
+
+		void fail(int status, String message) throws IOException {
+			if (this._out == null && !this._done) {
+				error(this._exchange, status, message);
+				this._done = true;
+			}
+		}
+
+		public void write(int b) throws IOException {
+			out().write(b);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			out().write(b, off, len);
+		}
+
+		//a flush alone does not commit the status, only written bytes do
+		public void flush() throws IOException {
+			if (this._out != null) {
+				this._out.flush();
+			}
+		}
+
+		public void close() throws IOException {
+			if (this._out != null) {
+				this._out.close();
+			}
+		}
+	}//end LazyResponse
+}
@@ -0,0 +1,68 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * This class hands out primary keys from a sequence in blocks.  The
+ * sequences of sql/create_sequences.sql step by 1000, so one nextval
+ * reserves the 1000 values starting at the one it returns; they are then
+ * given out locally, and only every 1000th key costs a round trip.  Every
+ * client reserves its own blocks, so keys never collide across processes.
+ * Values of a block left unused when the process ends are skipped.
+ *
+ */
+
+public class IdAllocator{
+	//one round trip reads the next value and the step of the sequence
+	private static final String RESERVE_SQL =
+		"SELECT nextval(?::regclass), (SELECT seqincrement FROM pg_sequence WHERE seqrelid = ?::regclass)";
+
+	private final DBproject _esql;
+	private final String _sequence;
+	private long _next = 0;
+	private long _end = 0;
+
+	/**
+	 * @param esql the database holding the sequence
+	 * @param sequence the name of the sequence
+	 */
+	public IdAllocator(DBproject esql, String sequence) {
+		this._esql = esql;
+		this._sequence = sequence;
+	}
+
+	/**
+	 * Method to return an unused key, reserving a new block when the
+	 * current one is used up.
+	 *
+	 * @return the key
+	 * @throws java.sql.SQLException when no block could be reserved
+	 */
+	public synchronized int next() throws SQLException {
+		if (this._next >= this._end) {
+			List<List<String>> rs = this._esql.executeQueryAndReturnResult(RESERVE_SQL, this._sequence, this._sequence);
+			long first = Long.parseLong(rs.get(0).get(0));
+			long step = Long.parseLong(rs.get(0).get(1));
+			if (step <= 0) {
+				throw new SQLException("Sequence " + this._sequence + " must count up.");
+			}
+			this._next = first;
+			this._end = first + step;
+		}
+		if (this._next > Integer.MAX_VALUE) {
+			throw new SQLException("Sequence " + this._sequence + " is past the largest key.");
+		}
+		return (int) this._next++;
+	}//end next
+}
@@ -0,0 +1,182 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class checks that the queries of the menu operations are served by
+ * the indexes of sql/create_indexes.sql.  Each query runs under
+ * EXPLAIN (ANALYZE, BUFFERS) with sample arguments taken from the data,
+ * inside a transaction that is rolled back, and fails when its plan reads a
+ * table holding at least the configured number of rows with a sequential
+ * scan.  Small tables are allowed sequential scans because the planner
+ * rightly prefers them.  A partition is checked on its own rows and allowed
+ * a scan when its parent table is.
+ *
+ */
+
+public class IndexVerifier{
+	private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+	/**
+	 * A query to check, its sample arguments and the tables it may scan.
+	 */
+	private static class Check{
+		final String name;
+		final String sql;
+		final Object[] params;
+		final Set<String> mayScan;
+
+		Check(String name, String sql, Object[] params, String... mayScan) {
+			this.name = name;
+			this.sql = sql;
+			this.params = params;
+			this.mayScan = new HashSet<String>(Arrays.asList(mayScan));
+		}
+	}//end Check
+
+	private final ConnectionPool _pool;
+	private final long _minRows;
+
+	public IndexVerifier(ConnectionPool pool, long minRows) {
+		this._pool = pool;
+		this._minRows = minRows;
+	}
+
+	/**
+	 * Method to run every check and print its plan.
+	 *
+	 * @return true when no plan uses a sequential scan on a large table
+	 * @throws java.sql.SQLException when a query failed
+	 */
+	public boolean verify() throws SQLException {
+		ConnectionPool.PooledConnection pc = this._pool.borrow();
+		try {
+			Connection conn = pc.getConnection();
+			Statement stmt = conn.createStatement();
+			stmt.execute("ANALYZE");
+			stmt.close();
+
+			//EXPLAIN ANALYZE runs the statements, the booking must not stick
+			conn.setAutoCommit(false);
+			boolean ok = true;
+			for (Check check : checks(conn)) {
+				ok &= run(conn, check);
+			}
+			conn.rollback();
+			System.out.println(ok ? "All plans use indexes." : "Some plans regressed to sequential scans.");
+			return ok;
+		}finally {
+			this._pool.release(pc);
+		}
+	}//end verify
+
+	/**
+	 * Method to build the checks with sample arguments from the data: the
+	 * busiest doctor, the last month of appointments and an available date.
+	 */
+	private List<Check> checks(Connection conn) throws SQLException {
+		Object doctor = scalar(conn, "SELECT doctor_id FROM has_appointment GROUP BY doctor_id ORDER BY COUNT(*) DESC LIMIT 1");
+		Object patient = scalar(conn, "SELECT patient_ID FROM Patient LIMIT 1");
+		Object lastDate = scalar(conn, "SELECT MAX(adate) FROM Appointment");
+		Object firstDate = lastDate == null ? null
+			: java.sql.Date.valueOf(((java.sql.Date) lastDate).toLocalDate().minusDays(30));
+		Object availableDate = scalar(conn, "SELECT adate FROM Appointment WHERE status = 'AV' LIMIT 1");
+		Object availableAppt = scalar(conn, "SELECT appnt_ID FROM Appointment WHERE status = 'AV' LIMIT 1");
+		Object departmentDoctors = scalar(conn,
+			"SELECT '{' || string_agg(doctor_ID::text, ',') || '}' FROM Doctor"
+			+ " WHERE did = (SELECT did FROM Doctor GROUP BY did ORDER BY COUNT(*) DESC LIMIT 1)");
+
+		List<Check> checks = new ArrayList<Check>();
+		checks.add(new Check("(4) make an appointment", BookingEngine.BOOK_SQL,
+			new Object[] {doctor, patient, patient, availableAppt, patient, doctor, patient, doctor, patient, doctor,
+				patient}));
+		checks.add(new Check("(5) appointments of a doctor", DBproject.APPOINTMENTS_OF_DOCTOR_SQL,
+			new Object[] {doctor, firstDate, lastDate}));
+		checks.add(new Check("(6) available appointments of a department", DBproject.AVAILABLE_OF_DEPARTMENT_SQL,
+			new Object[] {departmentDoctors, availableDate}));
+		//lists every doctor's summary row, scanning is the right plan
+		checks.add(new Check("(7) appointment status counts per doctor", DBproject.STATUS_COUNTS_PER_DOCTOR_SQL,
+			new Object[0], "doctor_status_counts"));
+		//counts every appointment in one pass, scanning is the right plan
+		checks.add(new Check("(8) patients per doctor with each status", DBproject.PATIENTS_PER_DOCTOR_WITH_STATUS_SQL,
+			new Object[0], "appointment", "has_appointment", "searches"));
+		return checks;
+	}//end checks
+
+	/**
+	 * Method to explain one query and report the large tables it scans.
+	 */
+	private boolean run(Connection conn, Check check) throws SQLException {
+		PreparedStatement stmt = conn.prepareStatement("EXPLAIN (ANALYZE, BUFFERS) " + check.sql);
+		DBproject.bind(stmt, check.params);
+		List<String> scanned = new ArrayList<String>();
+		StringBuilder plan = new StringBuilder();
+		ResultSet rs = stmt.executeQuery();
+		while (rs.next()) {
+			String line = rs.getString(1);
+			plan.append("    ").append(line).append('\n');
+			Matcher m = SEQ_SCAN.matcher(line);
+			while (m.find()) {
+				scanned.add(m.group(1).toLowerCase());
+			}
+		}//end while
+		rs.close();
+		stmt.close();
+
+		boolean ok = true;
+		StringBuilder problems = new StringBuilder();
+		for (String table : scanned) {
+			long rows = estimatedRows(conn, table);
+			if (!check.mayScan.contains(table) && !check.mayScan.contains(parentOf(conn, table)) && rows >= this._minRows) {
+				ok = false;
+				problems.append(" seq scan on ").append(table).append(" (").append(rows).append(" rows)");
+			}
+		}//end for
+		System.out.println((ok ? "PASS " : "FAIL ") + check.name + problems);
+		System.out.print(plan);
+		return ok;
+	}//end run
+
+	private static long estimatedRows(Connection conn, String table) throws SQLException {
+		Object rows = scalar(conn, "SELECT reltuples::bigint FROM pg_class WHERE relname = ? AND relkind IN ('r', 'p')", table);
+		return rows == null ? 0 : ((Number) rows).longValue();
+	}
+
+	private static String parentOf(Connection conn, String table) throws SQLException {
+		Object parent = scalar(conn, "SELECT p.relname::text FROM pg_inherits i"
+			+ " JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent WHERE c.relname = ?", table);
+		return parent == null ? table : (String) parent;
+	}
+
+	private static Object scalar(Connection conn, String sql, Object... params) throws SQLException {
+		PreparedStatement stmt = conn.prepareStatement(sql);
+		try {
+			DBproject.bind(stmt, params);
+			ResultSet rs = stmt.executeQuery();
+			return rs.next() ? rs.getObject(1) : null;
+		}finally {
+			stmt.close();
+		}
+	}
+}
@@ -0,0 +1,610 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class puts concurrent booking load on the database and then checks
+ * that the data is still consistent.  Each simulated client pins its own
+ * connection and repeats the steps of the menu: mostly option 4, booking an
+ * appointment of a doctor for a patient, and otherwise the listings of
+ * options 5 and 6, with a random think time between steps.  Doctors are
+ * drawn from a Zipf distribution ranked by their number of appointments, so
+ * the busiest doctors take most of the bookings and their appointments
+ * become hot spots.  A booking failing with a serialization failure or a
+ * deadlock is retried, as a client would retry it.
+ *
+ * While the clients run, a monitor samples pg_stat_activity for sessions
+ * waiting on a lock.  Afterwards the Metrics of the run, the failures by
+ * SQLState and an audit of the booking invariants are printed.  Each
+ * invariant is counted before and after the run, so anomalies already in
+ * the data are not blamed on it.  Run it against an otherwise idle
+ * database: the patients' number_of_appts are compared with the bookings
+ * this run confirmed.
+ *
+ */
+
+public class LoadGenerator{
+	//appointments that can still be booked, with their doctor, date and department
+	static final String TARGETS_SQL =
+		"SELECT H.appt_id, H.doctor_id, A.adate, D.name"
+		+ " FROM has_appointment H"
+		+ " JOIN Appointment A ON A.appnt_ID = H.appt_id"
+		+ " JOIN Doctor R ON R.doctor_ID = H.doctor_id"
+		+ " JOIN Department D ON D.dept_ID = R.did"
+		+ " WHERE A.status IN ('AV', 'AC', 'WL')"
+		+ " ORDER BY H.appt_id LIMIT ?";
+
+	static final String PATIENTS_SQL =
+		"SELECT patient_ID, COALESCE(number_of_appts, 0) FROM Patient ORDER BY patient_ID LIMIT ?";
+
+	static final String PATIENT_COUNTS_SQL =
+		"SELECT patient_ID, COALESCE(number_of_appts, 0) FROM Patient WHERE patient_ID = ANY (?::integer[])";
+
+	//confirmed bookings whose patient is neither the holder nor in the queue
+	static final String UNRECORDED_SQL =
+		"SELECT COUNT(*) FROM unnest(?::integer[], ?::integer[]) AS B (appt_id, patient_id)"
+		+ " WHERE NOT EXISTS (SELECT 1 FROM appointment_holder h WHERE h.appt_id = B.appt_id AND h.patient_id = B.patient_id)"
+		+ " AND NOT EXISTS (SELECT 1 FROM waitlist w WHERE w.appt_id = B.appt_id AND w.patient_id = B.patient_id)";
+
+	static final String LOCK_WAITS_SQL =
+		"SELECT COUNT(*) FROM pg_stat_activity"
+		+ " WHERE datname = current_database() AND wait_event_type = 'Lock' AND pid <> pg_backend_pid()";
+
+	static final String DEADLOCKS_SQL =
+		"SELECT deadlocks FROM pg_stat_database WHERE datname = current_database()";
+
+	/**
+	 * An invariant of the bookings, counted as the rows breaking it.
+	 */
+	private static class Audit{
+		final String name;
+		final String sql;
+
+		Audit(String name, String sql) {
+			this.name = name;
+			this.sql = sql;
+		}
+	}//end Audit
+
+	private static final Audit[] AUDITS = {
+		//two booked appointments of a doctor at the same time, see sql/create_slot_ranges.sql
+		new Audit("overlapping bookings of a doctor",
+			"WITH booked AS ("
+			+ " SELECT H.doctor_id, A.appnt_ID, A.slot FROM has_appointment H JOIN Appointment A ON A.appnt_ID = H.appt_id"
+			+ " WHERE A.status IN ('AC', 'WL') AND A.slot IS NOT NULL"
+			+ ") SELECT COUNT(*) FROM booked X JOIN booked Y"
+			+ " ON Y.doctor_id = X.doctor_id AND Y.appnt_ID > X.appnt_ID AND Y.slot && X.slot"),
+		new Audit("available but held",
+			"SELECT COUNT(*) FROM appointment_holder h JOIN Appointment A ON A.appnt_ID = h.appt_id WHERE A.status = 'AV'"),
+		new Audit("available with a queue",
+			"SELECT COUNT(*) FROM waitlist w JOIN Appointment A ON A.appnt_ID = w.appt_id WHERE A.status = 'AV'"),
+		new Audit("taken without a holder",
+			"SELECT COUNT(*) FROM Appointment A WHERE A.status IN ('AC', 'WL')"
+			+ " AND NOT EXISTS (SELECT 1 FROM appointment_holder h WHERE h.appt_id = A.appnt_ID)"
+			+ " AND NOT EXISTS (SELECT 1 FROM waitlist_vacancy v WHERE v.appt_id = A.appnt_ID)"),
+		new Audit("waitlisted with an empty queue",
+			"SELECT COUNT(*) FROM Appointment A WHERE A.status = 'WL'"
+			+ " AND NOT EXISTS (SELECT 1 FROM waitlist w WHERE w.appt_id = A.appnt_ID)"
+			+ " AND NOT EXISTS (SELECT 1 FROM waitlist_vacancy v WHERE v.appt_id = A.appnt_ID)")
+	};
+
+	private static final Metrics.Operation STEP = Metrics.global().operation("loadtest.step");
+
+	/**
+	 * The bookings one client saw confirmed, appended without boxing.
+	 */
+	private static class Confirmed{
+		int[] appts = new int[1024];
+		int[] patients = new int[1024];
+		int size = 0;
+
+		void add(int appt, int patient) {
+			if (this.size == this.appts.length) {
+				this.appts = Arrays.copyOf(this.appts, this.size * 2);
+				this.patients = Arrays.copyOf(this.patients, this.size * 2);
+			}
+			this.appts[this.size] = appt;
+			this.patients[this.size] = patient;
+			++this.size;
+		}
+	}//end Confirmed
+
+	private final DBproject _esql;
+	private final int _clients;
+	private final long _durationMillis;
+	private final double _thinkMillis;
+	private final double _skew;
+	private final double _listShare;
+	private final int _retries;
+	private final int _isolation;
+	private final long _lockTimeoutMillis;
+	private final long _seed;
+	private final int _maxAppointments;
+	private final int _maxPatients;
+
+	//doctors busiest first; their appointments and the epoch day of each
+	private int[] _doctors;
+	private String[] _departments;
+	private int[][] _appts;
+	private int[][] _days;
+	//patients sorted by ID, their number_of_appts before the run and the bookings confirmed since
+	private int[] _patients;
+	private int[] _countsBefore;
+	private AtomicIntegerArray _booked;
+	private double[] _doctorCdf;
+
+	private final Map<String, AtomicLong> _failures = new ConcurrentHashMap<String, AtomicLong>();
+	private final AtomicLong _bookings = new AtomicLong();
+	private final AtomicLong _held = new AtomicLong();
+	private final AtomicLong _queued = new AtomicLong();
+	private final AtomicLong _refused = new AtomicLong();
+	private final AtomicLong _retried = new AtomicLong();
+	private final AtomicLong _listings = new AtomicLong();
+	private final List<Confirmed> _confirmed = Collections.synchronizedList(new ArrayList<Confirmed>());
+
+	private volatile boolean _monitoring = true;
+	private long _lockSamples = 0;
+	private long _lockWaiting = 0;
+	private long _lockWaitingMax = 0;
+
+	public LoadGenerator(DBproject esql, int clients, long durationMillis, double thinkMillis, double skew, double listShare,
+			int retries, int isolation, long lockTimeoutMillis, long seed, int maxAppointments, int maxPatients) {
+		this._esql = esql;
+		this._clients = clients;
+		this._durationMillis = durationMillis;
+		this._thinkMillis = thinkMillis;
+		this._skew = skew;
+		this._listShare = listShare;
+		this._retries = retries;
+		this._isolation = isolation;
+		this._lockTimeoutMillis = lockTimeoutMillis;
+		this._seed = seed;
+		this._maxAppointments = maxAppointments;
+		this._maxPatients = maxPatients;
+	}
+
+	/**
+	 * Method to create a load generator configured by the dbproject.loadtest.*
+	 * system properties: thinkMs, the mean think time (10); skew, the Zipf
+	 * exponent over doctors, 0 for uniform (1.1); listShare, the share of
+	 * listing steps (0.2); retries of a booking (3); isolation,
+	 * read-committed, repeatable-read or serializable (read-committed);
+	 * lockTimeoutMs, 0 for none (0); seed (1); and the most appointments
+	 * (100000) and patients (10000) drawn from.
+	 *
+	 * @param clients the number of concurrent clients, at most the pool size
+	 * @param seconds how long the clients run
+	 */
+	public static LoadGenerator fromProperties(DBproject esql, int clients, long seconds) {
+		String isolation = System.getProperty("dbproject.loadtest.isolation", "read-committed");
+		int level;
+		if (isolation.equals("read-committed")) {
+			level = Connection.TRANSACTION_READ_COMMITTED;
+		}else if (isolation.equals("repeatable-read")) {
+			level = Connection.TRANSACTION_REPEATABLE_READ;
+		}else if (isolation.equals("serializable")) {
+			level = Connection.TRANSACTION_SERIALIZABLE;
+		}else {
+			throw new RuntimeException("dbproject.loadtest.isolation must be read-committed, repeatable-read or serializable");
+		}
+		return new LoadGenerator(esql, clients, seconds * 1000,
+			Double.parseDouble(System.getProperty("dbproject.loadtest.thinkMs", "10")),
+			Double.parseDouble(System.getProperty("dbproject.loadtest.skew", "1.1")),
+			Double.parseDouble(System.getProperty("dbproject.loadtest.listShare", "0.2")),
+			Integer.getInteger("dbproject.loadtest.retries", 3), level,
+			Long.getLong("dbproject.loadtest.lockTimeoutMs", 0L),
+			Long.getLong("dbproject.loadtest.seed", 1L),
+			Integer.getInteger("dbproject.loadtest.appointments", 100000),
+			Integer.getInteger("dbproject.loadtest.patients", 10000));
+	}
+
+	/**
+	 * Method to run the clients, print what they measured and audit the data.
+	 *
+	 * @return true when the run left no new anomaly in the data
+	 * @throws java.lang.Exception when the setup or the audit failed
+	 */
+	public boolean run() throws Exception {
+		int clients = Math.min(this._clients, this._esql.getPool().getMaxSize());
+		if (clients < this._clients) {
+			System.out.println("Running " + clients + " clients, the pool holds " + clients
+				+ " connections (dbproject.pool.maxSize)");
+		}
+		Connection monitor = this._esql.getPool().openUnpooled();
+		try {
+			prepare();
+			if (this._doctors.length == 0 || this._patients.length == 0) {
+				System.err.println("There are no bookable appointments or no patients to load.");
+				return false;
+			}
+			long[] auditsBefore = audit(monitor);
+			long deadlocksBefore = scalar(monitor, DEADLOCKS_SQL);
+
+			Metrics.global().reset();
+			Thread sampler = startMonitor(monitor);
+			final long deadline = System.nanoTime() + this._durationMillis * 1000000L;
+			SplittableRandom seeds = new SplittableRandom(this._seed);
+			List<Thread> threads = new ArrayList<Thread>();
+			for (int i = 0; i < clients; ++i) {
+				final SplittableRandom rnd = seeds.split();
+				Thread t = new Thread(new Runnable() {
+					public void run() {
+						client(rnd, deadline);
+					}
+				}, "loadtest-client-" + (i + 1));
+				threads.add(t);
+			}
+			long start = System.nanoTime();
+			for (Thread t : threads) {
+				t.start();
+			}
+			for (Thread t : threads) {
+				t.join();
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			this._monitoring = false;
+			sampler.interrupt();
+			sampler.join();
+
+			report(clients, seconds, scalar(monitor, DEADLOCKS_SQL) - deadlocksBefore);
+			return report(auditsBefore, audit(monitor), unrecorded(monitor), drift(monitor));
+		}finally {
+			monitor.close();
+		}
+	}//end run
+
+	/**
+	 * Method to read the appointments and patients the clients draw from.
+	 */
+	private void prepare() throws SQLException {
+		Map<Integer, List<int[]>> byDoctor = new HashMap<Integer, List<int[]>>();
+		Map<Integer, String> departments = new HashMap<Integer, String>();
+		for (List<String> row : this._esql.executeQueryAndReturnResult(TARGETS_SQL, this._maxAppointments)) {
+			Integer doctor = Integer.valueOf(row.get(1));
+			List<int[]> appts = byDoctor.get(doctor);
+			if (appts == null) {
+				appts = new ArrayList<int[]>();
+				byDoctor.put(doctor, appts);
+				departments.put(doctor, row.get(3));
+			}
+			appts.add(new int[] {Integer.parseInt(row.get(0)), (int) LocalDate.parse(row.get(2)).toEpochDay()});
+		}
+		//the busiest doctors take the first ranks of the Zipf distribution
+		List<Map.Entry<Integer, List<int[]>>> ranked = new ArrayList<Map.Entry<Integer, List<int[]>>>(byDoctor.entrySet());
+		Collections.sort(ranked, new Comparator<Map.Entry<Integer, List<int[]>>>() {
+			public int compare(Map.Entry<Integer, List<int[]>> a, Map.Entry<Integer, List<int[]>> b) {
+				int c = Integer.compare(b.getValue().size(), a.getValue().size());
+				return c != 0 ? c : a.getKey().compareTo(b.getKey());
+			}
+		});
+		this._doctors = new int[ranked.size()];
+		this._departments = new String[ranked.size()];
+		this._appts = new int[ranked.size()][];
+		this._days = new int[ranked.size()][];
+		for (int i = 0; i < ranked.size(); ++i) {
+			List<int[]> appts = ranked.get(i).getValue();
+			this._doctors[i] = ranked.get(i).getKey();
+			this._departments[i] = departments.get(this._doctors[i]);
+			this._appts[i] = new int[appts.size()];
+			this._days[i] = new int[appts.size()];
+			for (int j = 0; j < appts.size(); ++j) {
+				this._appts[i][j] = appts.get(j)[0];
+				this._days[i][j] = appts.get(j)[1];
+			}
+		}
+		this._doctorCdf = DataGenerator.zipf(this._doctors.length, this._skew);
+
+		List<List<String>> patients = this._esql.executeQueryAndReturnResult(PATIENTS_SQL, this._maxPatients);
+		this._patients = new int[patients.size()];
+		this._countsBefore = new int[patients.size()];
+		for (int i = 0; i < patients.size(); ++i) {
+			this._patients[i] = Integer.parseInt(patients.get(i).get(0));
+			this._countsBefore[i] = Integer.parseInt(patients.get(i).get(1));
+		}
+		this._booked = new AtomicIntegerArray(this._patients.length);
+		int appts = 0;
+		for (int[] a : this._appts) {
+			appts += a.length;
+		}
+		System.out.println("Booking " + appts + " appointments of " + this._doctors.length + " doctors for "
+			+ this._patients.length + " patients");
+	}//end prepare
+
+	/**
+	 * Method to run one client until the deadline on its own connection.
+	 */
+	private void client(SplittableRandom rnd, long deadline) {
+		Confirmed confirmed = new Confirmed();
+		this._confirmed.add(confirmed);
+		BookingEngine engine = new BookingEngine(this._esql);
+		ConnectionPool.PooledConnection pc = null;
+		int previousIsolation = -1;
+		try {
+			pc = this._esql.pinConnection();
+			Connection conn = pc.getConnection();
+			previousIsolation = conn.getTransactionIsolation();
+			conn.setTransactionIsolation(this._isolation);
+			if (this._lockTimeoutMillis > 0) {
+				execute(conn, "SET lock_timeout = " + this._lockTimeoutMillis);
+			}
+			while (System.nanoTime() < deadline) {
+				long start = System.nanoTime();
+				step(engine, rnd, confirmed);
+				STEP.record(System.nanoTime() - start, 0, 0, 0);
+				if (this._thinkMillis > 0) {
+					//exponential think time, the gaps of independent users
+					Thread.sleep((long) (-this._thinkMillis * Math.log(1 - rnd.nextDouble())));
+				}
+			}//end while
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}catch (SQLException e) {
+			System.err.println(Thread.currentThread().getName() + " stopped: " + e.getMessage());
+		}finally {
+			if (pc != null) {
+				try {
+					if (previousIsolation >= 0) {
+						pc.getConnection().setTransactionIsolation(previousIsolation);
+					}
+					if (this._lockTimeoutMillis > 0) {
+						execute(pc.getConnection(), "RESET lock_timeout");
+					}
+				}catch (SQLException e) {
+					// the connection is checked when it is borrowed again
+				}
+				this._esql.unpinConnection();
+			}
+		}
+	}//end client
+
+	/**
+	 * Method to make one step of a client: a listing or a booking of an
+	 * appointment of a doctor drawn by popularity, for any patient.
+	 */
+	private void step(BookingEngine engine, SplittableRandom rnd, Confirmed confirmed) {
+		int doctor = DataGenerator.sample(this._doctorCdf, rnd);
+		int pick = rnd.nextInt(this._appts[doctor].length);
+		int appt = this._appts[doctor][pick];
+		LocalDate day = LocalDate.ofEpochDay(this._days[doctor][pick]);
+		try {
+			if (rnd.nextDouble() < this._listShare) {
+				this._listings.incrementAndGet();
+				ResultRenderer sink = ResultRenderer.create("tsv", Writer.nullWriter());
+				if (rnd.nextBoolean()) {
+					DBproject.listAppointmentsOfDoctor(this._esql, sink, this._doctors[doctor], day, day.plusDays(30));
+				}else {
+					DBproject.listAvailableOfDepartment(this._esql, sink, this._departments[doctor], day);
+				}
+				return;
+			}
+			int patient = rnd.nextInt(this._patients.length);
+			this._bookings.incrementAndGet();
+			for (int attempt = 0; ; ++attempt) {
+				try {
+					BookingEngine.Result result = engine.book(this._patients[patient], this._doctors[doctor], appt);
+					if (!result.isBooked()) {
+						this._refused.incrementAndGet();
+					}else {
+						(result.newStatus.equals("AC") ? this._held : this._queued).incrementAndGet();
+						this._booked.incrementAndGet(patient);
+						confirmed.add(appt, this._patients[patient]);
+					}
+					return;
+				}catch (SQLException e) {
+					if (attempt >= this._retries || !retryable(e.getSQLState())) {
+						throw e;
+					}
+					failed(e.getSQLState());
+					this._retried.incrementAndGet();
+				}
+			}//end for
+		}catch (SQLException e) {
+			failed(e.getSQLState());
+		}catch (RuntimeException e) {
+			failed("invalid");
+		}
+	}//end step
+
+	private static boolean retryable(String state) {
+		return "40001".equals(state) || "40P01".equals(state);
+	}
+
+	private void failed(String state) {
+		String key = state == null ? "none" : state;
+		AtomicLong count = this._failures.get(key);
+		if (count == null) {
+			AtomicLong created = new AtomicLong();
+			count = this._failures.putIfAbsent(key, created);
+			if (count == null) {
+				count = created;
+			}
+		}
+		count.incrementAndGet();
+	}
+
+	/**
+	 * Method to start sampling the sessions waiting on a lock every 100 ms.
+	 */
+	private Thread startMonitor(final Connection conn) {
+		Thread t = new Thread(new Runnable() {
+			public void run() {
+				while (LoadGenerator.this._monitoring) {
+					try {
+						long waiting = scalar(conn, LOCK_WAITS_SQL);
+						++LoadGenerator.this._lockSamples;
+						LoadGenerator.this._lockWaiting += waiting;
+						LoadGenerator.this._lockWaitingMax = Math.max(LoadGenerator.this._lockWaitingMax, waiting);
+						Thread.sleep(100);
+					}catch (SQLException e) {
+						System.err.println("Lock monitor stopped: " + e.getMessage());
+						return;
+					}catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		}, "loadtest-monitor");
+		t.setDaemon(true);
+		t.start();
+		return t;
+	}//end startMonitor
+
+	/**
+	 * Method to print throughput, latencies, lock waits and failures.
+	 */
+	private void report(int clients, double seconds, long deadlocks) {
+		long steps = STEP.getCount();
+		System.out.print(Metrics.global().getReport());
+		System.out.println(String.format("%d clients, %.1f s, %d steps, %.1f steps/s", clients, seconds, steps, steps / seconds));
+		System.out.println(String.format("bookings: %d tried, %d held, %d queued, %d refused, %d retried, %.1f booked/s",
+			this._bookings.get(), this._held.get(), this._queued.get(), this._refused.get(), this._retried.get(),
+			(this._held.get() + this._queued.get()) / seconds));
+		System.out.println("listings: " + this._listings.get());
+		System.out.println(String.format("sessions waiting on a lock: %.2f on average, %d at most (%d samples)",
+			this._lockSamples == 0 ? 0.0 : (double) this._lockWaiting / this._lockSamples, this._lockWaitingMax,
+			this._lockSamples));
+		System.out.println("deadlocks reported by the server: " + deadlocks);
+		List<String> states = new ArrayList<String>(this._failures.keySet());
+		Collections.sort(states);
+		for (String state : states) {
+			System.out.println(String.format("failed %-6s %-28s %d", state, describe(state), this._failures.get(state).get()));
+		}
+	}//end report
+
+	private static String describe(String state) {
+		if (state.equals("40001")) {
+			return "serialization failure";
+		}else if (state.equals("40P01")) {
+			return "deadlock";
+		}else if (state.equals("55P03")) {
+			return "lock timeout";
+		}else if (state.equals("57014")) {
+			return "statement timeout";
+		}else if (state.equals("23P01")) {
+			return "overlapping booking refused";
+		}else if (state.equals("invalid")) {
+			return "invalid arguments";
+		}
+		return "";
+	}
+
+	/**
+	 * Method to print the audit.
+	 *
+	 * @return true when no invariant is broken more often than before the run
+	 */
+	private boolean report(long[] before, long[] after, long unrecorded, long drift) {
+		System.out.println(String.format("%-36s %10s %10s %10s", "audit", "before", "after", "new"));
+		boolean ok = true;
+		for (int i = 0; i < AUDITS.length; ++i) {
+			System.out.println(String.format("%-36s %10d %10d %10d", AUDITS[i].name, before[i], after[i], after[i] - before[i]));
+			ok &= after[i] <= before[i];
+		}
+		System.out.println(String.format("%-36s %10s %10s %10d", "confirmed bookings not recorded", "", "", unrecorded));
+		System.out.println(String.format("%-36s %10s %10s %10d", "patients with a wrong count", "", "", drift));
+		ok &= unrecorded == 0 && drift == 0;
+		System.out.println(ok ? "No anomalies found." : "The run left anomalies in the data.");
+		return ok;
+	}//end report
+
+	private long[] audit(Connection conn) throws SQLException {
+		long[] counts = new long[AUDITS.length];
+		for (int i = 0; i < AUDITS.length; ++i) {
+			counts[i] = scalar(conn, AUDITS[i].sql);
+		}
+		return counts;
+	}
+
+	/**
+	 * Method to count the confirmed bookings that left no trace: the patient
+	 * is neither the holder of the appointment nor waiting for it.  Nothing
+	 * cancels during the run, so every one of them must still be there.
+	 */
+	private long unrecorded(Connection conn) throws SQLException {
+		int size = 0;
+		for (Confirmed c : this._confirmed) {
+			size += c.size;
+		}
+		int[] appts = new int[size];
+		int[] patients = new int[size];
+		int n = 0;
+		for (Confirmed c : this._confirmed) {
+			System.arraycopy(c.appts, 0, appts, n, c.size);
+			System.arraycopy(c.patients, 0, patients, n, c.size);
+			n += c.size;
+		}
+		return scalar(conn, UNRECORDED_SQL, ReferenceLookup.toArrayLiteral(appts), ReferenceLookup.toArrayLiteral(patients));
+	}//end unrecorded
+
+	/**
+	 * Method to count the patients whose number_of_appts did not grow by
+	 * exactly the bookings confirmed to them, a lost or doubled increment.
+	 */
+	private long drift(Connection conn) throws SQLException {
+		PreparedStatement stmt = conn.prepareStatement(PATIENT_COUNTS_SQL);
+		try {
+			stmt.setString(1, ReferenceLookup.toArrayLiteral(this._patients));
+			ResultSet rs = stmt.executeQuery();
+			long wrong = 0;
+			while (rs.next()) {
+				int i = Arrays.binarySearch(this._patients, rs.getInt(1));
+				if (i >= 0 && rs.getInt(2) != this._countsBefore[i] + this._booked.get(i)) {
+					++wrong;
+				}
+			}
+			rs.close();
+			return wrong;
+		}finally {
+			stmt.close();
+		}
+	}//end drift
+
+	private static long scalar(Connection conn, String sql, Object... params) throws SQLException {
+		PreparedStatement stmt = conn.prepareStatement(sql);
+		try {
+			DBproject.bind(stmt, params);
+			ResultSet rs = stmt.executeQuery();
+			long value = rs.next() ? rs.getLong(1) : 0;
+			rs.close();
+			return value;
+		}finally {
+			stmt.close();
+		}
+	}
+
+	private static void execute(Connection conn, String sql) throws SQLException {
+		Statement stmt = conn.createStatement();
+		try {
+			stmt.execute(sql);
+		}finally {
+			stmt.close();
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.ObjectName;
+
+/**
+ * This class counts, for each database operation, its calls, a latency
+ * histogram, its round trips, the rows it fetched and the bytes it wrote.
+ * Callers look up their Operation once and keep it in a field; recording
+ * then only increments atomic counters and allocates nothing.  The
+ * histogram has eight buckets per power of two, so a percentile is exact
+ * to within 12.5%.  One instance serves the whole process and is
+ * registered with the platform MBean server as dbproject:type=Metrics.
+ *
+ */
+
+public class Metrics implements MetricsMBean{
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = 64 << SUB_BITS;
+	private static final Metrics GLOBAL = new Metrics();
+
+	static {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(GLOBAL, new ObjectName("dbproject:type=Metrics"));
+		}catch (Exception e) {
+			System.err.println("Metrics not registered with JMX: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * The figures of one operation.
+	 */
+	public static class Operation{
+		final String name;
+		private final AtomicLongArray _histogram = new AtomicLongArray(BUCKETS);
+		private final AtomicLong _count = new AtomicLong();
+		private final AtomicLong _totalNanos = new AtomicLong();
+		private final AtomicLong _maxNanos = new AtomicLong();
+		private final AtomicLong _roundTrips = new AtomicLong();
+		private final AtomicLong _rows = new AtomicLong();
+		private final AtomicLong _bytes = new AtomicLong();
+
+		Operation(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Method to record one call.
+		 *
+		 * @param nanos the time it took
+		 * @param roundTrips the round trips to the database it made
+		 * @param rows the rows it fetched or changed
+		 * @param bytes the bytes of output it wrote
+		 */
+		public void record(long nanos, long roundTrips, long rows, long bytes) {
+			this._histogram.incrementAndGet(bucket(nanos));
+			this._count.incrementAndGet();
+			this._totalNanos.addAndGet(nanos);
+			long max = this._maxNanos.get();
+			while (nanos > max && !this._maxNanos.compareAndSet(max, nanos)) {
+				max = this._maxNanos.get();
+			}
+			if (roundTrips != 0) {
+				this._roundTrips.addAndGet(roundTrips);
+			}
+			if (rows != 0) {
+				this._rows.addAndGet(rows);
+			}
+			if (bytes != 0) {
+				this._bytes.addAndGet(bytes);
+			}
+		}//end record
+
+		public long getCount() {
+			return this._count.get();
+		}
+
+		public long getRoundTrips() {
+			return this._roundTrips.get();
+		}
+
+		public long getRows() {
+			return this._rows.get();
+		}
+
+		public long getBytes() {
+			return this._bytes.get();
+		}
+
+		/**
+		 * Method to return the latency below which the given share of calls fell.
+		 *
+		 * @param percentile between 0 and 100
+		 * @return the latency in nanoseconds, 0 when nothing was recorded
+		 */
+		public long percentile(double percentile) {
+			long total = 0;
+			long[] counts = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; ++i) {
+				counts[i] = this._histogram.get(i);
+				total += counts[i];
+			}
+			if (total == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; ++i) {
+				seen += counts[i];
+				if (seen >= rank) {
+					//the middle of the bucket, capped by the largest value seen
+					return Math.min(this._maxNanos.get(), (lowest(i) + lowest(i + 1)) / 2);
+				}
+			}
+			return this._maxNanos.get();
+		}//end percentile
+
+		void reset() {
+			for (int i = 0; i < BUCKETS; ++i) {
+				this._histogram.set(i, 0);
+			}
+			this._count.set(0);
+			this._totalNanos.set(0);
+			this._maxNanos.set(0);
+			this._roundTrips.set(0);
+			this._rows.set(0);
+			this._bytes.set(0);
+		}
+
+		String report() {
+			long count = this._count.get();
+			return String.format("%-28s %9d %10.1f %10.1f %10.1f %10.1f %10.1f %10d %12d %12d",
+				this.name, count, count == 0 ? 0.0 : this._totalNanos.get() / 1e3 / count,
+				percentile(50) / 1e3, percentile(99) / 1e3, percentile(99.9) / 1e3, this._maxNanos.get() / 1e3,
+				this._roundTrips.get(), this._rows.get(), this._bytes.get());
+		}
+	}//end Operation
+
+	/**
+	 * Method to return the bucket of a value: values below 8 have their own
+	 * bucket, larger ones share a bucket with those of the same power of two
+	 * and the same next three bits.
+	 */
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) Math.max(0, value);
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return ((exp - SUB_BITS + 1) << SUB_BITS) + sub;
+	}
+
+	/**
+	 * Method to return the smallest value of a bucket.
+	 */
+	static long lowest(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exp = (bucket >> SUB_BITS) + SUB_BITS - 1;
+		return (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << (exp - SUB_BITS);
+	}
+
+	private final ConcurrentHashMap<String, Operation> _operations = new ConcurrentHashMap<String, Operation>();
+
+	/**
+	 * Method to return the metrics of the process.
+	 */
+	public static Metrics global() {
+		return GLOBAL;
+	}
+
+	/**
+	 * Method to return the figures of an operation, created on first use.
+	 * Look it up once and keep it; the lookup itself is not free.
+	 */
+	public Operation operation(String name) {
+		Operation op = this._operations.get(name);
+		if (op == null) {
+			Operation created = new Operation(name);
+			op = this._operations.putIfAbsent(name, created);
+			if (op == null) {
+				op = created;
+			}
+		}
+		return op;
+	}
+
+	public String[] getOperationNames() {
+		List<String> names = new ArrayList<String>(this._operations.keySet());
+		Collections.sort(names);
+		return names.toArray(new String[names.size()]);
+	}
+
+	/**
+	 * Method to return a table of every operation that was called, with
+	 * latencies in microseconds.
+	 */
+	public String getReport() {
+		StringBuilder sb = new StringBuilder(String.format("%-28s %9s %10s %10s %10s %10s %10s %10s %12s %12s%n",
+			"operation", "calls", "mean us", "p50 us", "p99 us", "p99.9 us", "max us", "trips", "rows", "bytes"));
+		for (String name : getOperationNames()) {
+			Operation op = this._operations.get(name);
+			if (op.getCount() > 0) {
+				sb.append(op.report()).append(String.format("%n"));
+			}
+		}
+		return sb.toString();
+	}
+
+	private Operation existing(String name) {
+		Operation op = this._operations.get(name);
+		if (op == null) {
+			throw new IllegalArgumentException("No operation " + name);
+		}
+		return op;
+	}
+
+	public long count(String operation) {
+		return existing(operation).getCount();
+	}
+
+	public double percentileMicros(String operation, double percentile) {
+		return existing(operation).percentile(percentile) / 1e3;
+	}
+
+	public long roundTrips(String operation) {
+		return existing(operation).getRoundTrips();
+	}
+
+	public long rows(String operation) {
+		return existing(operation).getRows();
+	}
+
+	public long bytes(String operation) {
+		return existing(operation).getBytes();
+	}
+
+	public void reset() {
+		for (Operation op : this._operations.values()) {
+			op.reset();
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+/**
+ * Management interface of Metrics, registered as dbproject:type=Metrics so
+ * that jconsole or any JMX client can read the figures of a running process.
+ *
+ */
+
+public interface MetricsMBean{
+	String[] getOperationNames();
+
+	String getReport();
+
+	long count(String operation);
+
+	double percentileMicros(String operation, double percentile);
+
+	long roundTrips(String operation);
+
+	long rows(String operation);
+
+	long bytes(String operation);
+
+	void reset();
+}
@@ -0,0 +1,208 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class keeps the monthly partitions of the Appointment table made by
+ * sql/partition_appointments.sql.  It creates the partitions of the coming
+ * months before appointments are added to them, moving any rows that
+ * already landed in the default partition, and archives months that are
+ * old enough and hold only past (PA) appointments: such a partition is
+ * detached and moved to the appointment_archive schema, so the queries on
+ * Appointment no longer see it but its rows are kept.
+ *
+ */
+
+public class PartitionMaintenance{
+	private static final Pattern MONTHLY = Pattern.compile("appointment_y(\\d{4})m(\\d{2})");
+	private static final String DEFAULT_PARTITION = "appointment_default";
+	private static final String ARCHIVE_SCHEMA = "appointment_archive";
+
+	//drops the status counts of the archived links, see sql/create_summaries.sql
+	private static final String FORGET_COUNTS_SQL =
+		"WITH uncounted AS ("
+		+ " DELETE FROM has_appointment_status S USING %s P"
+		+ " WHERE S.appt_id = P.appnt_ID RETURNING S.doctor_id, S.status"
+		+ "), delta AS ("
+		+ " SELECT doctor_id,"
+		+ " COUNT(*) FILTER (WHERE status = 'PA') AS pa, COUNT(*) FILTER (WHERE status = 'AC') AS ac,"
+		+ " COUNT(*) FILTER (WHERE status = 'AV') AS av, COUNT(*) FILTER (WHERE status = 'WL') AS wl"
+		+ " FROM uncounted GROUP BY doctor_id"
+		+ ")"
+		+ " UPDATE doctor_status_counts C"
+		+ " SET pa = C.pa - D.pa, ac = C.ac - D.ac, av = C.av - D.av, wl = C.wl - D.wl"
+		+ " FROM delta D WHERE C.doctor_id = D.doctor_id";
+
+	private final ConnectionPool _pool;
+
+	public PartitionMaintenance(ConnectionPool pool) {
+		this._pool = pool;
+	}
+
+	private static String partitionName(LocalDate month) {
+		return String.format("appointment_y%04dm%02d", month.getYear(), month.getMonthValue());
+	}
+
+	/**
+	 * Method to create the missing partitions from the current month to the
+	 * given number of months ahead, and to archive the months before the
+	 * given number of months kept.
+	 *
+	 * @param monthsAhead the number of months after the current one to create
+	 * @param monthsKept the number of past months to keep, negative to archive nothing
+	 * @return false when Appointment is not partitioned
+	 * @throws java.sql.SQLException when a statement failed
+	 */
+	public boolean maintain(int monthsAhead, int monthsKept) throws SQLException {
+		LocalDate thisMonth = LocalDate.now().withDayOfMonth(1);
+		ConnectionPool.PooledConnection pc = this._pool.borrow();
+		try {
+			Connection conn = pc.getConnection();
+			if (!"p".equals(scalar(conn, "SELECT relkind::text FROM pg_class WHERE oid = to_regclass('appointment')"))) {
+				System.err.println("Appointment is not partitioned, run sql/partition_appointments.sql first.");
+				return false;
+			}
+			List<LocalDate> months = partitions(conn);
+			boolean hasDefault = scalar(conn, "SELECT to_regclass('" + DEFAULT_PARTITION + "')::text") != null;
+
+			for (int i = 0; i <= monthsAhead; ++i) {
+				LocalDate month = thisMonth.plusMonths(i);
+				if (!months.contains(month)) {
+					create(conn, month, hasDefault);
+				}
+			}//end for
+
+			if (monthsKept >= 0) {
+				LocalDate cutoff = thisMonth.minusMonths(monthsKept);
+				for (LocalDate month : months) {
+					if (month.isBefore(cutoff)) {
+						archive(conn, month);
+					}
+				}//end for
+			}
+			return true;
+		}finally {
+			this._pool.release(pc);
+		}
+	}//end maintain
+
+	/**
+	 * Method to list the first days of the months that have a partition.
+	 */
+	private static List<LocalDate> partitions(Connection conn) throws SQLException {
+		List<LocalDate> months = new ArrayList<LocalDate>();
+		PreparedStatement stmt = conn.prepareStatement(
+			"SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+			+ " WHERE i.inhparent = 'appointment'::regclass ORDER BY c.relname");
+		try {
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next()) {
+				Matcher m = MONTHLY.matcher(rs.getString(1));
+				if (m.matches()) {
+					months.add(LocalDate.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), 1));
+				}
+			}//end while
+		}finally {
+			stmt.close();
+		}
+		return months;
+	}//end partitions
+
+	/**
+	 * Method to create the partition of a month.  The rows of that month in
+	 * the default partition are moved to a new table first, which is then
+	 * attached, since a partition cannot be created over rows of the default
+	 * one.
+	 */
+	private static void create(Connection conn, LocalDate month, boolean hasDefault) throws SQLException {
+		String name = partitionName(month);
+		String bounds = "FOR VALUES FROM ('" + month + "') TO ('" + month.plusMonths(1) + "')";
+		String range = "adate >= '" + month + "' AND adate < '" + month.plusMonths(1) + "'";
+		conn.setAutoCommit(false);
+		Statement stmt = conn.createStatement();
+		try {
+			long moved = 0;
+			if (hasDefault) {
+				//the slot column of sql/create_slot_ranges.sql must stay generated to be attached
+				boolean generated = conn.getMetaData().getDatabaseMajorVersion() >= 12;
+				stmt.execute("CREATE TABLE " + name + " (LIKE Appointment INCLUDING DEFAULTS INCLUDING CONSTRAINTS"
+					+ (generated ? " INCLUDING GENERATED)" : ")"));
+				moved = stmt.executeUpdate("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION + " WHERE " + range
+					+ " RETURNING appnt_ID, adate, time_slot, status) INSERT INTO " + name
+					+ " (appnt_ID, adate, time_slot, status) SELECT * FROM moved");
+				stmt.execute("ALTER TABLE Appointment ATTACH PARTITION " + name + " " + bounds);
+			}else {
+				stmt.execute("CREATE TABLE " + name + " PARTITION OF Appointment " + bounds);
+			}
+			conn.commit();
+			System.out.println("Created partition " + name + (moved > 0 ? ", moved " + moved + " rows from " + DEFAULT_PARTITION : ""));
+		}catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		}finally {
+			stmt.close();
+			conn.setAutoCommit(true);
+		}
+	}//end create
+
+	/**
+	 * Method to detach the partition of a month and move it to the archive
+	 * schema, when all of its appointments are past.
+	 */
+	private static void archive(Connection conn, LocalDate month) throws SQLException {
+		String name = partitionName(month);
+		if (!"true".equals(scalar(conn, "SELECT (NOT EXISTS (SELECT 1 FROM " + name
+				+ " WHERE status IS DISTINCT FROM 'PA'))::text"))) {
+			System.out.println("Kept partition " + name + ", it still has appointments that are not past");
+			return;
+		}
+		boolean counted = scalar(conn, "SELECT to_regclass('has_appointment_status')::text") != null;
+		conn.setAutoCommit(false);
+		Statement stmt = conn.createStatement();
+		try {
+			stmt.execute("CREATE SCHEMA IF NOT EXISTS " + ARCHIVE_SCHEMA);
+			stmt.execute("ALTER TABLE Appointment DETACH PARTITION " + name);
+			if (counted) {
+				stmt.execute(String.format(FORGET_COUNTS_SQL, name));
+			}
+			stmt.execute("ALTER TABLE " + name + " SET SCHEMA " + ARCHIVE_SCHEMA);
+			conn.commit();
+			System.out.println("Archived partition " + name + " to " + ARCHIVE_SCHEMA);
+		}catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		}finally {
+			stmt.close();
+			conn.setAutoCommit(true);
+		}
+	}//end archive
+
+	private static String scalar(Connection conn, String sql) throws SQLException {
+		Statement stmt = conn.createStatement();
+		try {
+			ResultSet rs = stmt.executeQuery(sql);
+			return rs.next() ? rs.getString(1) : null;
+		}finally {
+			stmt.close();
+		}
+	}
+}
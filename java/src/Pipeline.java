@@ -0,0 +1,137 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class collects parameterized statements that are sent together in
+ * one round trip.  They are joined into a single multi-statement prepared
+ * text, which the driver sends as one message flight ending with a single
+ * sync, so the server runs them in order as one transaction: either every
+ * statement is applied or none is.  On a connection that already has a
+ * transaction open, they join it instead.
+ *
+ *   Pipeline.Result r = new Pipeline()
+ *       .add("INSERT INTO ...", a, b)
+ *       .add("UPDATE ...", c)
+ *       .execute(esql);
+ *
+ */
+
+public class Pipeline{
+	/**
+	 * The outcome of a pipeline: the update count or rows of each statement,
+	 * or the error that rolled all of them back.
+	 */
+	public static class Result{
+		private final int[] _counts;
+		private final List<List<List<String>>> _rows;
+		private final SQLException _error;
+
+		Result(int[] counts, List<List<List<String>>> rows, SQLException error) {
+			this._counts = counts;
+			this._rows = rows;
+			this._error = error;
+		}
+
+		public boolean isOk() {
+			return this._error == null;
+		}
+
+		/**
+		 * Method to return the error that rolled the pipeline back, null when it succeeded.
+		 */
+		public SQLException getError() {
+			return this._error;
+		}
+
+		/**
+		 * Method to return the rows changed by a statement, -1 for a query
+		 * or when the pipeline failed.
+		 */
+		public int getUpdateCount(int statement) {
+			return this._counts[statement];
+		}
+
+		/**
+		 * Method to return the rows of a query statement, null for an update.
+		 */
+		public List<List<String>> getRows(int statement) {
+			return this._rows.get(statement);
+		}
+	}//end Result
+
+	private final List<String> _statements = new ArrayList<String>();
+	private final List<Object> _params = new ArrayList<Object>();
+
+	/**
+	 * Method to add a statement; it must not end with a semicolon.
+	 *
+	 * @param sql the SQL template, using ? for bind values
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return this pipeline
+	 */
+	public Pipeline add(String sql, Object... params) {
+		this._statements.add(sql);
+		for (Object p : params) {
+			this._params.add(p);
+		}
+		return this;
+	}
+
+	public int size() {
+		return this._statements.size();
+	}
+
+	/**
+	 * Method to return the statements as one text; equal pipelines give
+	 * equal texts, so the statement cache reuses their plans.
+	 */
+	String getSql() {
+		StringBuilder sb = new StringBuilder();
+		for (String sql : this._statements) {
+			sb.append(sql).append(";\n");
+		}
+		return sb.toString();
+	}
+
+	Object[] getParams() {
+		return this._params.toArray();
+	}
+
+	static Result failed(int size, SQLException error) {
+		int[] counts = new int[size];
+		List<List<List<String>>> rows = new ArrayList<List<List<String>>>();
+		for (int i = 0; i < size; ++i) {
+			counts[i] = -1;
+			rows.add(null);
+		}
+		return new Result(counts, rows, error);
+	}
+
+	static Result succeeded(int[] counts, List<List<List<String>>> rows) {
+		return new Result(counts, rows, null);
+	}
+
+	/**
+	 * Method to send the statements in one round trip.
+	 *
+	 * @param esql the database to run them on
+	 * @return the outcome of each statement, or the error when they were rolled back
+	 * @throws java.sql.SQLException when no connection could be obtained
+	 */
+	public Result execute(DBproject esql) throws SQLException {
+		return esql.executePipeline(this);
+	}
+}
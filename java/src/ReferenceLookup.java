@@ -0,0 +1,478 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+/**
+ * This class keeps the hospitals, departments and doctors in memory so that
+ * the operations validate their input and find the doctors of a department
+ * without a round trip.  It maps a department name to its dept_IDs (every
+ * hospital has its own department of the same name), a dept_ID to its
+ * doctors, and holds the sorted set of doctor IDs.  The maps are replaced
+ * as a whole on every change, so readers never lock.
+ *
+ * The triggers of sql/create_notify.sql notify reference_change with the
+ * keys of the rows a statement changed.  A listener thread holds its own
+ * connection LISTENing on that channel and reads only those rows again,
+ * so every running client sees the changes of the others.  While no
+ * listener is running, the data is read again once it is older than a
+ * time to live, so a lost listener makes it a little stale instead of
+ * costing every lookup a round trip.
+ *
+ */
+
+public class ReferenceLookup{
+	private static final int[] NONE = new int[0];
+	private static final String CHANNEL = "reference_change";
+
+	/**
+	 * A department row.
+	 */
+	private static class Department{
+		final String name;
+		final int hospitalId;
+
+		Department(String name, int hospitalId) {
+			this.name = name;
+			this.hospitalId = hospitalId;
+		}
+	}
+
+	/**
+	 * An immutable copy of the reference data: the rows of the three tables
+	 * and the maps derived from them.
+	 */
+	private static class Snapshot{
+		final Map<Integer, String> hospitals;
+		final Map<Integer, Department> departments;
+		final Map<Integer, Integer> deptOfDoctor;
+		final Map<String, int[]> deptIdsByName;
+		final Map<Integer, int[]> doctorsByDept;
+		//sorted, searched with binary search
+		final int[] doctorIds;
+
+		//System.nanoTime() when the tables were read
+		final long loadedAt;
+
+		Snapshot(Map<Integer, String> hospitals, Map<Integer, Department> departments, Map<Integer, Integer> deptOfDoctor,
+				long loadedAt) {
+			this.hospitals = hospitals;
+			this.departments = departments;
+			this.deptOfDoctor = deptOfDoctor;
+
+			Map<String, List<Integer>> names = new HashMap<String, List<Integer>>();
+			for (Map.Entry<Integer, Department> e : departments.entrySet()) {
+				add(names, e.getValue().name, e.getKey());
+			}
+			Map<Integer, List<Integer>> doctors = new HashMap<Integer, List<Integer>>();
+			int[] ids = new int[deptOfDoctor.size()];
+			int n = 0;
+			for (Map.Entry<Integer, Integer> e : deptOfDoctor.entrySet()) {
+				ids[n++] = e.getKey();
+				add(doctors, e.getValue(), e.getKey());
+			}
+			Arrays.sort(ids);
+			this.deptIdsByName = freeze(names);
+			this.doctorsByDept = freeze(doctors);
+			this.doctorIds = ids;
+			this.loadedAt = loadedAt;
+		}
+	}//end Snapshot
+
+	private final ConnectionPool _pool;
+	private final long _ttlNanos;
+	private volatile Snapshot _snapshot = null;
+	private Thread _listener = null;
+	private volatile boolean _listening = false;
+	private volatile boolean _stopped = false;
+
+	/**
+	 * @param pool the connections to read the tables with
+	 * @param ttlMillis how long the data is used without a listener before it is read again
+	 */
+	public ReferenceLookup(ConnectionPool pool, long ttlMillis) {
+		this._pool = pool;
+		this._ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+	}
+
+	/**
+	 * Method to read the Hospital, Department and Doctor tables again.
+	 *
+	 * @throws java.sql.SQLException when failed to read the tables
+	 */
+	public synchronized void reload() throws SQLException {
+		Map<Integer, String> hospitals = new HashMap<Integer, String>();
+		Map<Integer, Department> departments = new HashMap<Integer, Department>();
+		Map<Integer, Integer> doctors = new HashMap<Integer, Integer>();
+
+		long start = System.nanoTime();
+		ConnectionPool.PooledConnection pc = this._pool.borrow();
+		try {
+			readHospitals(pc, hospitals, null);
+			readDepartments(pc, departments, null);
+			readDoctors(pc, doctors, null);
+		}finally {
+			this._pool.release(pc);
+		}
+		this._snapshot = new Snapshot(hospitals, departments, doctors, start);
+	}//end reload
+
+	/**
+	 * Method to read again the rows with the given keys; a key whose row is
+	 * gone is dropped.
+	 *
+	 * @throws java.sql.SQLException when failed to read the rows
+	 */
+	private synchronized void refresh(Set<Integer> hospitalIds, Set<Integer> deptIds, Set<Integer> doctorIds) throws SQLException {
+		Snapshot s = this._snapshot;
+		if (s == null) {
+			reload();
+			return;
+		}
+		Map<Integer, String> hospitals = s.hospitals;
+		Map<Integer, Department> departments = s.departments;
+		Map<Integer, Integer> doctors = s.deptOfDoctor;
+
+		ConnectionPool.PooledConnection pc = this._pool.borrow();
+		try {
+			if (!hospitalIds.isEmpty()) {
+				hospitals = new HashMap<Integer, String>(hospitals);
+				hospitals.keySet().removeAll(hospitalIds);
+				readHospitals(pc, hospitals, hospitalIds);
+			}
+			if (!deptIds.isEmpty()) {
+				departments = new HashMap<Integer, Department>(departments);
+				departments.keySet().removeAll(deptIds);
+				readDepartments(pc, departments, deptIds);
+			}
+			if (!doctorIds.isEmpty()) {
+				doctors = new HashMap<Integer, Integer>(doctors);
+				doctors.keySet().removeAll(doctorIds);
+				readDoctors(pc, doctors, doctorIds);
+			}
+		}finally {
+			this._pool.release(pc);
+		}
+		//only the named rows were read, the others are as old as before
+		this._snapshot = new Snapshot(hospitals, departments, doctors, s.loadedAt);
+	}//end refresh
+
+	/**
+	 * Method to prepare the query of a table, of the rows with the given keys only when keys is not null.
+	 */
+	private static ResultSet query(ConnectionPool.PooledConnection pc, String sql, String key, Set<Integer> keys)
+			throws SQLException {
+		if (keys == null) {
+			return pc.getStatementCache().prepare(sql).executeQuery();
+		}
+		PreparedStatement stmt = pc.getStatementCache().prepare(sql + " WHERE " + key + " = ANY(?::integer[])");
+		stmt.setString(1, toArrayLiteral(toArray(new ArrayList<Integer>(keys))));
+		return stmt.executeQuery();
+	}
+
+	private static void readHospitals(ConnectionPool.PooledConnection pc, Map<Integer, String> into, Set<Integer> keys)
+			throws SQLException {
+		ResultSet rs = query(pc, "SELECT hospital_ID, name FROM Hospital", "hospital_ID", keys);
+		while (rs.next()) {
+			into.put(rs.getInt(1), rs.getString(2));
+		}
+		rs.close();
+	}
+
+	private static void readDepartments(ConnectionPool.PooledConnection pc, Map<Integer, Department> into, Set<Integer> keys)
+			throws SQLException {
+		ResultSet rs = query(pc, "SELECT dept_ID, name, hid FROM Department", "dept_ID", keys);
+		while (rs.next()) {
+			into.put(rs.getInt(1), new Department(rs.getString(2), rs.getInt(3)));
+		}
+		rs.close();
+	}
+
+	private static void readDoctors(ConnectionPool.PooledConnection pc, Map<Integer, Integer> into, Set<Integer> keys)
+			throws SQLException {
+		ResultSet rs = query(pc, "SELECT doctor_ID, did FROM Doctor", "doctor_ID", keys);
+		while (rs.next()) {
+			into.put(rs.getInt(1), rs.getInt(2));
+		}
+		rs.close();
+	}
+
+	private static <K> void add(Map<K, List<Integer>> map, K key, int value) {
+		List<Integer> values = map.get(key);
+		if (values == null) {
+			values = new ArrayList<Integer>();
+			map.put(key, values);
+		}
+		values.add(value);
+	}
+
+	private static <K> Map<K, int[]> freeze(Map<K, List<Integer>> map) {
+		Map<K, int[]> frozen = new HashMap<K, int[]>(map.size() * 2);
+		for (Map.Entry<K, List<Integer>> e : map.entrySet()) {
+			frozen.put(e.getKey(), toArray(e.getValue()));
+		}
+		return frozen;
+	}
+
+	private static int[] toArray(List<Integer> values) {
+		int[] a = new int[values.size()];
+		for (int i = 0; i < a.length; ++i) {
+			a[i] = values.get(i);
+		}
+		return a;
+	}
+
+	/**
+	 * Method to start the thread that applies the changes notified by the
+	 * database.  It checks for notifications every pollMillis; the driver
+	 * only reads them from the socket when a statement runs, so each check
+	 * costs one trivial query on the listener's own connection.
+	 *
+	 * @param pollMillis the time between two checks
+	 */
+	public synchronized void listen(final long pollMillis) {
+		if (this._listener != null) {
+			return;
+		}
+		this._listener = new Thread(new Runnable() {
+			public void run() {
+				while (!_stopped) {
+					try {
+						listenUntilFailure(pollMillis);
+					}catch (SQLException e) {
+						System.err.println("Reference data listener failed, retrying: " + e.getMessage());
+					}catch (InterruptedException e) {
+						return;
+					}
+					try {
+						Thread.sleep(Math.max(1000, pollMillis * 10));
+					}catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		}, "reference-listener");
+		this._listener.setDaemon(true);
+		this._listener.start();
+	}//end listen
+
+	private void listenUntilFailure(long pollMillis) throws SQLException, InterruptedException {
+		Connection conn = this._pool.openUnpooled();
+		try {
+			Statement stmt = conn.createStatement();
+			stmt.execute("LISTEN " + CHANNEL);
+			//whatever changed before LISTEN was not notified
+			reload();
+			this._listening = true;
+			PGConnection pg = conn.unwrap(PGConnection.class);
+			while (!this._stopped) {
+				stmt.execute("SELECT 1");
+				PGNotification[] notifications = pg.getNotifications();
+				if (notifications != null) {
+					apply(notifications);
+				}
+				Thread.sleep(pollMillis);
+			}
+		}finally {
+			this._listening = false;
+			try {
+				conn.close();
+			}catch (SQLException e) {
+				// ignored.
+			}
+		}
+	}//end listenUntilFailure
+
+	/**
+	 * Method to read again the rows named by the notifications, or every
+	 * row of a table named with *.
+	 */
+	private void apply(PGNotification[] notifications) throws SQLException {
+		Map<String, Set<Integer>> keys = new HashMap<String, Set<Integer>>();
+		keys.put("hospital", new HashSet<Integer>());
+		keys.put("department", new HashSet<Integer>());
+		keys.put("doctor", new HashSet<Integer>());
+		for (PGNotification n : notifications) {
+			String payload = n.getParameter();
+			int colon = payload.indexOf(':');
+			Set<Integer> set = colon < 0 ? null : keys.get(payload.substring(0, colon));
+			if (set == null) {
+				continue;
+			}
+			try {
+				for (String key : payload.substring(colon + 1).split(",")) {
+					set.add(Integer.valueOf(key));
+				}
+			}catch (NumberFormatException e) {
+				//'*', or keys this version does not understand
+				reload();
+				return;
+			}
+		}
+		refresh(keys.get("hospital"), keys.get("department"), keys.get("doctor"));
+	}//end apply
+
+	/**
+	 * Method to stop the listener thread.
+	 */
+	public void close() {
+		this._stopped = true;
+		Thread listener;
+		synchronized (this) {
+			listener = this._listener;
+		}
+		if (listener != null) {
+			listener.interrupt();
+		}
+	}
+
+	/**
+	 * Method to return the loaded data, loading it on first use.  Without a
+	 * working listener the data may be stale, so the tables are read again
+	 * once it is older than the time to live.
+	 */
+	private Snapshot snapshot() throws SQLException {
+		Snapshot s = this._snapshot;
+		if (expired(s)) {
+			synchronized (this) {
+				if (expired(this._snapshot)) {
+					reload();
+				}
+				s = this._snapshot;
+			}
+		}
+		return s;
+	}
+
+	private boolean expired(Snapshot s) {
+		return s == null || (!this._listening && System.nanoTime() - s.loadedAt > this._ttlNanos);
+	}
+
+	public boolean isDoctor(int doctorId) throws SQLException {
+		return Arrays.binarySearch(snapshot().doctorIds, doctorId) >= 0;
+	}
+
+	public boolean isDepartment(String name) throws SQLException {
+		return snapshot().deptIdsByName.containsKey(name);
+	}
+
+	/**
+	 * Method to return the name of a hospital, null when there is no such hospital.
+	 */
+	public String hospitalName(int hospitalId) throws SQLException {
+		return snapshot().hospitals.get(hospitalId);
+	}
+
+	/**
+	 * Method to return the hospital of a department, -1 when there is no such department.
+	 */
+	public int hospitalOfDepartment(int deptId) throws SQLException {
+		Department d = snapshot().departments.get(deptId);
+		return d == null ? -1 : d.hospitalId;
+	}
+
+	/**
+	 * Method to return the department of a doctor, -1 when there is no such doctor.
+	 */
+	public int departmentOfDoctor(int doctorId) throws SQLException {
+		Integer d = snapshot().deptOfDoctor.get(doctorId);
+		return d == null ? -1 : d;
+	}
+
+	/**
+	 * Method to return the doctors of every department with the given name.
+	 *
+	 * @param name the department name
+	 * @return the doctor IDs, empty when the department is unknown or has no doctors
+	 * @throws java.sql.SQLException when the data could not be loaded
+	 */
+	public int[] doctorsOfDepartment(String name) throws SQLException {
+		Snapshot s = snapshot();
+		int[] depts = s.deptIdsByName.get(name);
+		if (depts == null) {
+			return NONE;
+		}
+		int count = 0;
+		for (int d : depts) {
+			int[] docs = s.doctorsByDept.get(d);
+			count += docs == null ? 0 : docs.length;
+		}
+		int[] all = new int[count];
+		int n = 0;
+		for (int d : depts) {
+			int[] docs = s.doctorsByDept.get(d);
+			if (docs != null) {
+				System.arraycopy(docs, 0, all, n, docs.length);
+				n += docs.length;
+			}
+		}
+		return all;
+	}//end doctorsOfDepartment
+
+	/**
+	 * Method to record a doctor inserted by this process, so it is known
+	 * before its notification arrives.  When the insert is rolled back the
+	 * caller takes it back with recheckDoctors, as no notification is sent.
+	 */
+	public synchronized void addDoctor(int doctorId, int deptId) throws SQLException {
+		Snapshot s = snapshot();
+		if (s.deptOfDoctor.containsKey(doctorId)) {
+			return;
+		}
+		Map<Integer, Integer> doctors = new HashMap<Integer, Integer>(s.deptOfDoctor);
+		doctors.put(doctorId, deptId);
+		this._snapshot = new Snapshot(s.hospitals, s.departments, doctors, s.loadedAt);
+	}//end addDoctor
+
+	/**
+	 * Method to read the given doctors again from the committed tables,
+	 * dropping those that do not exist.
+	 *
+	 * @throws java.sql.SQLException when failed to read the rows
+	 */
+	public void recheckDoctors(Collection<Integer> doctorIds) throws SQLException {
+		if (!doctorIds.isEmpty()) {
+			refresh(new HashSet<Integer>(), new HashSet<Integer>(), new HashSet<Integer>(doctorIds));
+		}
+	}
+
+	/**
+	 * Method to format IDs as a PostgreSQL array literal, bound to a
+	 * parameter cast with ?::integer[].
+	 */
+	public static String toArrayLiteral(int[] ids) {
+		StringBuilder sb = new StringBuilder(ids.length * 6 + 2).append('{');
+		for (int i = 0; i < ids.length; ++i) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(ids[i]);
+		}
+		return sb.append('}').toString();
+	}
+}
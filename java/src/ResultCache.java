@@ -0,0 +1,101 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class caches query results by key.  An entry expires after a fixed
+ * time to live, and every entry is dropped as soon as the owner reports a
+ * write through its write generation counter.  Readers of a valid entry
+ * take no lock, even to count the hit; when entries must be reloaded only
+ * one caller runs the loader and the others wait for its result instead
+ * of querying too.
+ *
+ */
+
+public class ResultCache<K, V>{
+	/**
+	 * Computes the values of one or more keys in a single query.
+	 */
+	public interface Loader<K, V>{
+		Map<K, V> load() throws Exception;
+	}
+
+	private static class Entry<V>{
+		final V value;
+		final long loadedAt;
+		final long generation;
+
+		Entry(V value, long loadedAt, long generation) {
+			this.value = value;
+			this.loadedAt = loadedAt;
+			this.generation = generation;
+		}
+	}//end Entry
+
+	private final Map<K, Entry<V>> _entries = new ConcurrentHashMap<K, Entry<V>>();
+	private final long _ttlMillis;
+	private final AtomicLong _hits = new AtomicLong();
+	private final AtomicLong _loads = new AtomicLong();
+
+	public ResultCache(long ttlMillis) {
+		this._ttlMillis = ttlMillis;
+	}
+
+	private boolean isFresh(Entry<V> e, long generation) {
+		return e != null && e.generation == generation && System.currentTimeMillis() - e.loadedAt < this._ttlMillis;
+	}
+
+	/**
+	 * Method to return the value of a key, reloading the cache when the
+	 * entry is missing, expired or older than the last write.
+	 *
+	 * @param key the key to look up
+	 * @param generation the owner's current write generation
+	 * @param loader computes the values of every key at once
+	 * @return the cached or freshly loaded value, null when the loader has none for the key
+	 * @throws java.lang.Exception when the loader failed
+	 */
+	public V get(K key, long generation, Loader<K, V> loader) throws Exception {
+		Entry<V> e = this._entries.get(key);
+		if (isFresh(e, generation)) {
+			this._hits.incrementAndGet();
+			return e.value;
+		}
+		synchronized (this) {
+			//another caller may have reloaded while this one waited
+			e = this._entries.get(key);
+			if (isFresh(e, generation)) {
+				this._hits.incrementAndGet();
+				return e.value;
+			}
+			this._loads.incrementAndGet();
+			long now = System.currentTimeMillis();
+			this._entries.clear();
+			for (Map.Entry<K, V> loaded : loader.load().entrySet()) {
+				this._entries.put(loaded.getKey(), new Entry<V>(loaded.getValue(), now, generation));
+			}
+			e = this._entries.get(key);
+			return e == null ? null : e.value;
+		}
+	}//end get
+
+	public long getHits() {
+		return this._hits.get();
+	}
+
+	public long getLoads() {
+		return this._loads.get();
+	}
+}
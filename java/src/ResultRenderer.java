@@ -0,0 +1,446 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class writes query results as they are streamed, in one of the
+ * formats below, through a large buffer that is flushed once at the end.
+ * The column names and types are read from the metadata once, with the
+ * first row.  The format of the listings is chosen with the
+ * dbproject.output.format system property.  Each renderer records its
+ * rows and characters written under "render" in Metrics.
+ *
+ *   tsv      tab separated, with a header line (the default)
+ *   csv      RFC 4180 comma separated, with a header line
+ *   json     one JSON object per row
+ *   json-array  a JSON array of those objects, as the HTTP service answers
+ *   aligned  columns padded to the width of the first rows
+ *
+ */
+
+public abstract class ResultRenderer implements RowHandler{
+	private static final int BUFFER_SIZE = 1 << 16;
+	//unbuffered standard out, each renderer adds its own buffer
+	private static final FileOutputStream STDOUT = new FileOutputStream(FileDescriptor.out);
+	private static final Metrics.Operation RENDER = Metrics.global().operation("render");
+
+	/**
+	 * Counts the characters that leave the buffer.
+	 */
+	private static class CountingWriter extends FilterWriter{
+		long count = 0;
+
+		CountingWriter(Writer out) {
+			super(out);
+		}
+
+		public void write(int c) throws IOException {
+			this.out.write(c);
+			++this.count;
+		}
+
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			this.out.write(cbuf, off, len);
+			this.count += len;
+		}
+
+		public void write(String str, int off, int len) throws IOException {
+			this.out.write(str, off, len);
+			this.count += len;
+		}
+	}//end CountingWriter
+
+	protected final Writer _out;
+	private CountingWriter _counter = null;
+	private final long _created = System.nanoTime();
+	protected String[] _columns = null;
+	//whether each column holds numbers, written unquoted in JSON
+	protected boolean[] _numeric = null;
+	private long _rows = 0;
+
+	protected ResultRenderer(Writer out) {
+		this._out = out;
+	}
+
+	/**
+	 * Method to return a renderer of the given format writing to the given writer.
+	 *
+	 * @param format tsv, csv, json or aligned
+	 * @param out the destination, written in large blocks
+	 */
+	public static ResultRenderer create(String format, Writer out) {
+		CountingWriter counter = new CountingWriter(out);
+		Writer buffered = new BufferedWriter(counter, BUFFER_SIZE);
+		ResultRenderer renderer;
+		if (format.equals("tsv")) {
+			renderer = new Tsv(buffered);
+		}else if (format.equals("csv")) {
+			renderer = new Csv(buffered);
+		}else if (format.equals("json")) {
+			renderer = new JsonLines(buffered, false);
+		}else if (format.equals("json-array")) {
+			renderer = new JsonLines(buffered, true);
+		}else if (format.equals("aligned")) {
+			renderer = new Aligned(buffered, Integer.getInteger("dbproject.output.alignRows", 1000));
+		}else {
+			throw new IllegalArgumentException("Unknown output format " + format + ", must be tsv, csv, json, json-array or aligned");
+		}
+		renderer._counter = counter;
+		return renderer;
+	}
+
+	/**
+	 * Method to return a renderer writing to standard out in the format of
+	 * the dbproject.output.format system property.
+	 */
+	public static ResultRenderer toStdout() {
+		return toStdout(System.getProperty("dbproject.output.format", "tsv"));
+	}
+
+	/**
+	 * Method to return a renderer of the given format writing to standard out.
+	 */
+	public static ResultRenderer toStdout(String format) {
+		//prompts and messages written through System.out come first
+		System.out.flush();
+		return create(format, new OutputStreamWriter(STDOUT, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Method to write the current row of a result set, and the header
+	 * before the first one.
+	 */
+	public void handle(ResultSet rs) throws SQLException {
+		if (this._columns == null) {
+			ResultSetMetaData rsmd = rs.getMetaData();
+			String[] columns = new String[rsmd.getColumnCount()];
+			boolean[] numeric = new boolean[columns.length];
+			for (int i = 0; i < columns.length; ++i) {
+				columns[i] = rsmd.getColumnName(i + 1);
+				numeric[i] = isNumeric(rsmd.getColumnType(i + 1));
+			}
+			header(columns, numeric);
+		}
+		String[] values = new String[this._columns.length];
+		for (int i = 0; i < values.length; ++i) {
+			values[i] = rs.getString(i + 1);
+		}
+		row(values);
+	}//end handle
+
+	private static boolean isNumeric(int type) {
+		switch (type) {
+			case Types.TINYINT: case Types.SMALLINT: case Types.INTEGER: case Types.BIGINT:
+			case Types.REAL: case Types.FLOAT: case Types.DOUBLE: case Types.NUMERIC: case Types.DECIMAL:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Method to set the columns of rows that do not come from a result set.
+	 *
+	 * @param columns the column names
+	 * @param numeric whether each column holds numbers
+	 */
+	public void header(String[] columns, boolean[] numeric) throws SQLException {
+		this._columns = columns;
+		this._numeric = numeric;
+		try {
+			writeHeader();
+		}catch (IOException e) {
+			throw new SQLException("Failed to write the result: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Method to write one row, after the header was set.
+	 *
+	 * @param values the values of the columns, null for SQL NULL
+	 */
+	public void row(String[] values) throws SQLException {
+		++this._rows;
+		try {
+			writeRow(values);
+		}catch (IOException e) {
+			throw new SQLException("Failed to write the result: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Method to write what is still held back and flush the buffer.
+	 *
+	 * @return the number of rows written
+	 */
+	public long finish() throws SQLException {
+		try {
+			writeEnd();
+			this._out.flush();
+		}catch (IOException e) {
+			throw new SQLException("Failed to write the result: " + e.getMessage(), e);
+		}
+		RENDER.record(System.nanoTime() - this._created, 0, this._rows, this._counter.count);
+		return this._rows;
+	}
+
+	protected abstract void writeHeader() throws IOException;
+
+	protected abstract void writeRow(String[] values) throws IOException;
+
+	protected void writeEnd() throws IOException {
+	}
+
+	/**
+	 * Tab separated values; tabs and line breaks inside a value are escaped
+	 * as \t, \n and \r so that every row stays on one line.
+	 */
+	private static class Tsv extends ResultRenderer{
+		Tsv(Writer out) {
+			super(out);
+		}
+
+		protected void writeHeader() throws IOException {
+			writeLine(this._columns);
+		}
+
+		protected void writeRow(String[] values) throws IOException {
+			writeLine(values);
+		}
+
+		private void writeLine(String[] values) throws IOException {
+			for (int i = 0; i < values.length; ++i) {
+				if (i > 0) {
+					this._out.write('\t');
+				}
+				String v = values[i] == null ? "null" : values[i];
+				for (int j = 0; j < v.length(); ++j) {
+					char c = v.charAt(j);
+					if (c == '\t') {
+						this._out.write("\\t");
+					}else if (c == '\n') {
+						this._out.write("\\n");
+					}else if (c == '\r') {
+						this._out.write("\\r");
+					}else if (c == '\\') {
+						this._out.write("\\\\");
+					}else {
+						this._out.write(c);
+					}
+				}//end for
+			}//end for
+			this._out.write('\n');
+		}
+	}//end Tsv
+
+	/**
+	 * Comma separated values as in RFC 4180: a value holding a comma, a
+	 * quote or a line break is quoted, quotes doubled, lines end with CRLF.
+	 * NULL is written as an empty field.
+	 */
+	private static class Csv extends ResultRenderer{
+		Csv(Writer out) {
+			super(out);
+		}
+
+		protected void writeHeader() throws IOException {
+			writeLine(this._columns);
+		}
+
+		protected void writeRow(String[] values) throws IOException {
+			writeLine(values);
+		}
+
+		private void writeLine(String[] values) throws IOException {
+			for (int i = 0; i < values.length; ++i) {
+				if (i > 0) {
+					this._out.write(',');
+				}
+				String v = values[i];
+				if (v == null) {
+					continue;
+				}
+				boolean quote = false;
+				for (int j = 0; j < v.length() && !quote; ++j) {
+					char c = v.charAt(j);
+					quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+				}
+				if (quote) {
+					this._out.write('"');
+					this._out.write(v.replace("\"", "\"\""));
+					this._out.write('"');
+				}else {
+					this._out.write(v);
+				}
+			}//end for
+			this._out.write("\r\n");
+		}
+	}//end Csv
+
+	/**
+	 * One JSON object per line, keyed by column name, or a JSON array of
+	 * them.  Numbers are written as numbers, everything else as strings,
+	 * NULL as null.
+	 */
+	private static class JsonLines extends ResultRenderer{
+		private final boolean _array;
+		private String[] _keys;
+		private boolean _first = true;
+
+		JsonLines(Writer out, boolean array) {
+			super(out);
+			this._array = array;
+		}
+
+		protected void writeHeader() throws IOException {
+			//the quoted keys are built once
+			this._keys = new String[this._columns.length];
+			for (int i = 0; i < this._keys.length; ++i) {
+				StringBuilder sb = new StringBuilder();
+				quote(sb, this._columns[i]);
+				this._keys[i] = sb.append(':').toString();
+			}
+		}
+
+		protected void writeRow(String[] values) throws IOException {
+			StringBuilder sb = new StringBuilder(64 * values.length);
+			if (this._array) {
+				sb.append(this._first ? "[" : ",");
+			}
+			this._first = false;
+			sb.append('{');
+			for (int i = 0; i < values.length; ++i) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append(this._keys[i]);
+				if (values[i] == null) {
+					sb.append("null");
+				}else if (this._numeric[i]) {
+					sb.append(values[i]);
+				}else {
+					quote(sb, values[i]);
+				}
+			}//end for
+			this._out.append(sb.append("}\n"));
+		}
+
+		protected void writeEnd() throws IOException {
+			if (this._array) {
+				this._out.write(this._first ? "[]\n" : "]\n");
+			}
+		}
+
+		private static void quote(StringBuilder sb, String v) {
+			sb.append('"');
+			for (int i = 0; i < v.length(); ++i) {
+				char c = v.charAt(i);
+				if (c == '"' || c == '\\') {
+					sb.append('\\').append(c);
+				}else if (c == '\n') {
+					sb.append("\\n");
+				}else if (c == '\r') {
+					sb.append("\\r");
+				}else if (c == '\t') {
+					sb.append("\\t");
+				}else if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				}else {
+					sb.append(c);
+				}
+			}//end for
+			sb.append('"');
+		}
+	}//end JsonLines
+
+	/**
+	 * Columns padded with spaces.  The widths come from the header and the
+	 * first rows, which are held back until enough of them arrived; later
+	 * rows are streamed with the same widths and longer values push the
+	 * following columns to the right.
+	 */
+	private static class Aligned extends ResultRenderer{
+		private final int _sampleRows;
+		private List<String[]> _held = new ArrayList<String[]>();
+		private int[] _widths = null;
+
+		Aligned(Writer out, int sampleRows) {
+			super(out);
+			this._sampleRows = Math.max(1, sampleRows);
+		}
+
+		protected void writeHeader() throws IOException {
+			this._held.add(this._columns);
+		}
+
+		protected void writeRow(String[] values) throws IOException {
+			if (this._widths != null) {
+				writeLine(values);
+				return;
+			}
+			this._held.add(values);
+			if (this._held.size() > this._sampleRows) {
+				release();
+			}
+		}
+
+		protected void writeEnd() throws IOException {
+			if (this._widths == null && this._columns != null) {
+				release();
+			}
+		}
+
+		private void release() throws IOException {
+			this._widths = new int[this._columns.length];
+			for (String[] values : this._held) {
+				for (int i = 0; i < values.length; ++i) {
+					this._widths[i] = Math.max(this._widths[i], text(values[i]).length());
+				}
+			}
+			for (String[] values : this._held) {
+				writeLine(values);
+			}
+			this._held = null;
+		}
+
+		private static String text(String v) {
+			return v == null ? "null" : v;
+		}
+
+		private void writeLine(String[] values) throws IOException {
+			for (int i = 0; i < values.length; ++i) {
+				String v = text(values[i]);
+				this._out.write(v);
+				if (i < values.length - 1) {
+					for (int pad = v.length(); pad < this._widths[i] + 2; ++pad) {
+						this._out.write(' ');
+					}
+				}
+			}//end for
+			this._out.write('\n');
+		}
+	}//end Aligned
+}
@@ -0,0 +1,25 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Callback that receives the rows of a streamed query one at a time.  The
+ * result set is positioned on the current row; implementations read its
+ * columns but must not move the cursor or keep a reference to it.
+ *
+ */
+
+public interface RowHandler{
+	void handle(ResultSet row) throws SQLException;
+}
@@ -0,0 +1,304 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class runs the menu operations read from a script, one per line,
+ * without prompts.  A line holds the operation followed by its arguments
+ * as key=value pairs; a value with spaces is written in double quotes.
+ * Empty lines and lines starting with # are skipped.
+ *
+ *   add-doctor id=1 name="Ann Lee" specialty=Allergist dept=3
+ *   add-patient id=7 name="Bo Park" gender=F age=40 address="1 Main St" appts=0
+ *   add-appointment id=12 date=2021-03-04 slot=10:00-11:00 status=AV doc=1
+ *   book pid=7 doc=1 appt=12
+ *   cancel pid=7 appt=12
+ *   waitlist appt=12
+ *   appointments doc=1 from=2021-03-01 to=2021-03-31
+ *   available dept=Cardiology date=2021-03-04
+ *   open-slots dept=Cardiology date=2021-03-04 n=10
+ *   free dept=Cardiology from=2021-03-04T08:00 to=2021-03-04T12:00
+ *   status-counts
+ *   patients status=AC
+ *   stats
+ *   commit
+ *
+ * The id of add-doctor, add-patient and add-appointment may be left out,
+ * the operation then takes a generated one and prints it.
+ * Every operation runs on the same connection.  When a transaction size is
+ * given, the operations are committed in groups of that many, each one
+ * behind a savepoint so that a failed operation is rolled back alone.
+ *
+ */
+
+public class ScriptRunner{
+	private final DBproject _esql;
+	private final int _perTransaction;
+	private final boolean _stopOnError;
+	private long _commands = 0;
+	private long _failed = 0;
+
+	/**
+	 * @param esql the connected database
+	 * @param perTransaction the number of operations per transaction, 0 to commit each one
+	 * @param stopOnError whether to stop at the first failed operation
+	 */
+	public ScriptRunner(DBproject esql, int perTransaction, boolean stopOnError) {
+		this._esql = esql;
+		this._perTransaction = Math.max(0, perTransaction);
+		this._stopOnError = stopOnError;
+	}
+
+	/**
+	 * Method to run every operation of a script.
+	 *
+	 * @param reader the script
+	 * @return true when no operation failed
+	 * @throws java.io.IOException when the script could not be read
+	 * @throws java.sql.SQLException when the connection failed
+	 */
+	public boolean run(BufferedReader reader) throws IOException, SQLException {
+		long start = System.nanoTime();
+		Connection conn = this._esql.pinConnection().getConnection();
+		try {
+			conn.setAutoCommit(this._perTransaction == 0);
+			long inTransaction = 0;
+			long lineNo = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				++lineNo;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				if (line.equals("commit")) {
+					if (!conn.getAutoCommit()) {
+						conn.commit();
+						this._esql.committed();
+					}
+					inTransaction = 0;
+					continue;
+				}
+
+				++this._commands;
+				boolean ok = this._perTransaction == 0 ? execute(lineNo, line) : executeInSavepoint(conn, lineNo, line);
+				if (!ok && this._stopOnError) {
+					break;
+				}
+				if (this._perTransaction > 0 && ++inTransaction >= this._perTransaction) {
+					conn.commit();
+					this._esql.committed();
+					inTransaction = 0;
+				}
+			}//end while
+			if (!conn.getAutoCommit()) {
+				conn.commit();
+				this._esql.committed();
+			}
+		}finally {
+			try {
+				//drops what a failed commit left behind before the connection is shared again
+				if (!conn.getAutoCommit()) {
+					conn.rollback();
+					conn.setAutoCommit(true);
+					this._esql.rolledBack(0);
+				}
+			}finally {
+				this._esql.unpinConnection();
+			}
+		}
+		double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+		System.out.println(String.format("Ran %,d operations in %.2f s (%,.0f per second), %,d failed",
+			this._commands, seconds, this._commands / seconds, this._failed));
+		return this._failed == 0;
+	}//end run
+
+	private boolean executeInSavepoint(Connection conn, long lineNo, String line) throws SQLException {
+		Savepoint sp = conn.setSavepoint();
+		int mark = this._esql.transactionMark();
+		if (execute(lineNo, line)) {
+			conn.releaseSavepoint(sp);
+			return true;
+		}
+		conn.rollback(sp);
+		this._esql.rolledBack(mark);
+		return false;
+	}
+
+	/**
+	 * Method to run one operation and report its failure.
+	 *
+	 * @return false when the operation failed
+	 */
+	private boolean execute(long lineNo, String line) {
+		String op = line.split("\\s", 2)[0];
+		try {
+			Map<String, String> args = arguments(tokenize(line));
+			boolean generatedId = !args.containsKey("id");
+			if (op.equals("add-doctor")) {
+				DBproject.addDoctor(this._esql, idArg(args, this._esql.getDoctorIds()), arg(args, "name"), arg(args, "specialty"),
+					intArg(args, "dept"));
+			}else if (op.equals("add-patient")) {
+				DBproject.addPatient(this._esql, idArg(args, this._esql.getPatientIds()), arg(args, "name"), arg(args, "gender"),
+					intArg(args, "age"), arg(args, "address"), intArg(args, "appts"));
+			}else if (op.equals("add-appointment")) {
+				if (!DBproject.addAppointment(this._esql, idArg(args, this._esql.getAppointmentIds()), dateArg(args, "date"),
+						arg(args, "slot"), arg(args, "status"), optionalIntArg(args, "doc"))) {
+					throw new RuntimeException("Appointment " + arg(args, "id") + " already exists.");
+				}
+			}else if (op.equals("book")) {
+				BookingEngine.Result result = new BookingEngine(this._esql)
+					.book(intArg(args, "pid"), intArg(args, "doc"), intArg(args, "appt"));
+				System.out.println(result);
+			}else if (op.equals("cancel")) {
+				System.out.println(new BookingEngine(this._esql).cancel(intArg(args, "pid"), intArg(args, "appt")));
+			}else if (op.equals("waitlist")) {
+				this._esql.getWaitlist().list(ResultRenderer.toStdout(), intArg(args, "appt"));
+			}else if (op.equals("appointments")) {
+				DBproject.listAppointmentsOfDoctor(this._esql, intArg(args, "doc"), dateArg(args, "from"), dateArg(args, "to"));
+			}else if (op.equals("available")) {
+				DBproject.listAvailableOfDepartment(this._esql, arg(args, "dept"), dateArg(args, "date"));
+			}else if (op.equals("open-slots")) {
+				Integer limit = optionalIntArg(args, "n");
+				DBproject.listOpenSlots(this._esql, ResultRenderer.toStdout(), arg(args, "dept"), dateArg(args, "date"),
+					limit == null ? 10 : limit);
+			}else if (op.equals("free")) {
+				DBproject.listFreeBetween(this._esql, ResultRenderer.toStdout(), arg(args, "dept"), dateTimeArg(args, "from"),
+					dateTimeArg(args, "to"));
+			}else if (op.equals("status-counts")) {
+				DBproject.listStatusCounts(this._esql);
+			}else if (op.equals("patients")) {
+				DBproject.listPatientsPerDoctor(this._esql, arg(args, "status"));
+			}else if (op.equals("stats")) {
+				DBproject.showStats(this._esql);
+			}else {
+				throw new RuntimeException("Unknown operation " + op);
+			}
+			if (generatedId && op.startsWith("add-")) {
+				System.out.println(op.substring(4) + " " + args.get("id") + " added");
+			}
+			return true;
+		}catch (Exception e) {
+			++this._failed;
+			System.err.println("line " + lineNo + ": " + op + " failed! " + e.getMessage());
+			return false;
+		}
+	}//end execute
+
+	/**
+	 * Method to split a line on spaces, keeping double quoted text together.
+	 */
+	static List<String> tokenize(String line) {
+		List<String> tokens = new ArrayList<String>();
+		StringBuilder token = new StringBuilder();
+		boolean quoted = false;
+		boolean any = false;
+		for (int i = 0; i < line.length(); ++i) {
+			char c = line.charAt(i);
+			if (c == '"') {
+				quoted = !quoted;
+				any = true;
+			}else if (Character.isWhitespace(c) && !quoted) {
+				if (any) {
+					tokens.add(token.toString());
+					token.setLength(0);
+					any = false;
+				}
+			}else {
+				token.append(c);
+				any = true;
+			}
+		}//end for
+		if (quoted) {
+			throw new RuntimeException("Unterminated quote");
+		}
+		if (any) {
+			tokens.add(token.toString());
+		}
+		return tokens;
+	}//end tokenize
+
+	static Map<String, String> arguments(List<String> tokens) {
+		Map<String, String> args = new HashMap<String, String>();
+		for (int i = 1; i < tokens.size(); ++i) {
+			String token = tokens.get(i);
+			int eq = token.indexOf('=');
+			if (eq <= 0) {
+				throw new RuntimeException("Expected key=value but found " + token);
+			}
+			args.put(token.substring(0, eq), token.substring(eq + 1));
+		}
+		return args;
+	}
+
+	static String arg(Map<String, String> args, String key) {
+		String value = args.get(key);
+		if (value == null) {
+			throw new RuntimeException("Missing argument " + key + "=");
+		}
+		return value;
+	}
+
+	static int intArg(Map<String, String> args, String key) {
+		try {
+			return Integer.parseInt(arg(args, key));
+		}catch (NumberFormatException e) {
+			throw new RuntimeException(key + " must be a number");
+		}
+	}
+
+	/**
+	 * Method to return the id= argument; when it is left out a generated ID
+	 * is taken and stored as the argument.
+	 */
+	static int idArg(Map<String, String> args, IdAllocator ids) throws SQLException {
+		if (!args.containsKey("id")) {
+			args.put("id", Integer.toString(ids.next()));
+		}
+		return intArg(args, "id");
+	}
+
+	/**
+	 * Method to return a number argument that may be left out, null when it is.
+	 */
+	static Integer optionalIntArg(Map<String, String> args, String key) {
+		return args.containsKey(key) ? Integer.valueOf(intArg(args, key)) : null;
+	}
+
+	static LocalDate dateArg(Map<String, String> args, String key) {
+		String value = arg(args, key);
+		if (!DBproject.validateDate(value)) {
+			throw new RuntimeException(key + " must be a date in YYYY-MM-DD format");
+		}
+		return LocalDate.parse(value);
+	}
+
+	static LocalDateTime dateTimeArg(Map<String, String> args, String key) {
+		try {
+			return LocalDateTime.parse(arg(args, key));
+		}catch (DateTimeParseException e) {
+			throw new RuntimeException(key + " must be a date and time in YYYY-MM-DDTHH:MM format");
+		}
+	}
+}
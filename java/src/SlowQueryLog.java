@@ -0,0 +1,227 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class writes the statements that took longer than a threshold to a
+ * log file, with their bind values, duration and row count.  A sampled
+ * share of the slow queries is run again under EXPLAIN (ANALYZE, BUFFERS)
+ * by a background thread, inside a transaction that is rolled back.  The
+ * entry is written at once and the plan later, as an entry of its own that
+ * names the time of the first, so a plan dropped because the thread is
+ * busy never takes the entry with it.  Only SELECT statements are
+ * explained, since ANALYZE executes the statement.  When the file reaches
+ * its maximum size it is renamed to file.1 (file.1 to file.2 and so on)
+ * and a new one is started.
+ *
+ * Settings:
+ *   dbproject.slowlog.thresholdMs   log statements at least this slow, off when negative (default)
+ *   dbproject.slowlog.file          the log file (slow-queries.log)
+ *   dbproject.slowlog.maxBytes      size at which the file is rotated (10 MB)
+ *   dbproject.slowlog.files         rotated files kept (5)
+ *   dbproject.slowlog.explainSample share of slow queries explained, 0 to 1 (0)
+ *
+ */
+
+public class SlowQueryLog{
+	private final ConnectionPool _pool;
+	private final long _thresholdNanos;
+	private final File _file;
+	private final long _maxBytes;
+	private final int _files;
+	private final double _explainSample;
+	//explains one query at a time and drops new ones while busy
+	private final ThreadPoolExecutor _explainer;
+	private Writer _out = null;
+	private long _size = 0;
+	//set by close, later entries are dropped
+	private boolean _closed = false;
+
+	public SlowQueryLog(ConnectionPool pool, long thresholdMillis, File file, long maxBytes, int files, double explainSample) {
+		this._pool = pool;
+		this._thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+		this._file = file;
+		this._maxBytes = maxBytes;
+		this._files = Math.max(1, files);
+		this._explainSample = explainSample;
+		this._explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(16),
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "slow-query-explain");
+					t.setDaemon(true);
+					return t;
+				}
+			}, new ThreadPoolExecutor.DiscardPolicy());
+	}
+
+	/**
+	 * Method to build the log from the dbproject.slowlog.* system properties.
+	 *
+	 * @return the log, null when no threshold is set
+	 */
+	public static SlowQueryLog fromProperties(ConnectionPool pool) {
+		long threshold = Long.getLong("dbproject.slowlog.thresholdMs", -1L);
+		if (threshold < 0) {
+			return null;
+		}
+		return new SlowQueryLog(pool, threshold, new File(System.getProperty("dbproject.slowlog.file", "slow-queries.log")),
+			Long.getLong("dbproject.slowlog.maxBytes", 10L << 20), Integer.getInteger("dbproject.slowlog.files", 5),
+			Double.parseDouble(System.getProperty("dbproject.slowlog.explainSample", "0")));
+	}
+
+	/**
+	 * Method to log a statement when it took at least the threshold.
+	 *
+	 * @param sql the statement
+	 * @param params its bind values
+	 * @param nanos the time it took
+	 * @param rows the rows it returned or changed
+	 */
+	public void offer(final String sql, final Object[] params, long nanos, long rows) {
+		if (nanos < this._thresholdNanos) {
+			return;
+		}
+		final LocalDateTime logged = LocalDateTime.now();
+		write(String.format("%s %.1f ms rows=%d params=%s%n    %s%n", logged, nanos / 1e6, rows,
+			Arrays.deepToString(params), sql.replace('\n', ' ')));
+		if (this._explainSample > 0 && isSelect(sql) && ThreadLocalRandom.current().nextDouble() < this._explainSample) {
+			//dropped while the queue is full
+			this._explainer.execute(new Runnable() {
+				public void run() {
+					String plan = explain(sql, params);
+					write(String.format("%s plan of the statement logged at %s%n", LocalDateTime.now(), logged) + plan);
+				}
+			});
+		}
+	}//end offer
+
+	private static boolean isSelect(String sql) {
+		String s = sql.trim();
+		return s.regionMatches(true, 0, "SELECT", 0, 6);
+	}
+
+	/**
+	 * Method to run a query again under EXPLAIN (ANALYZE, BUFFERS).
+	 *
+	 * @return the plan, each line indented, or the reason it could not be made
+	 */
+	private String explain(String sql, Object[] params) {
+		StringBuilder plan = new StringBuilder();
+		try {
+			ConnectionPool.PooledConnection pc = this._pool.borrow();
+			try {
+				Connection conn = pc.getConnection();
+				conn.setAutoCommit(false);
+				PreparedStatement stmt = conn.prepareStatement("EXPLAIN (ANALYZE, BUFFERS) " + sql);
+				try {
+					DBproject.bind(stmt, params);
+					ResultSet rs = stmt.executeQuery();
+					while (rs.next()) {
+						plan.append("      ").append(rs.getString(1)).append(String.format("%n"));
+					}
+				}finally {
+					stmt.close();
+					conn.rollback();
+					conn.setAutoCommit(true);
+				}
+			}finally {
+				this._pool.release(pc);
+			}
+		}catch (SQLException e) {
+			plan.append("      EXPLAIN failed: ").append(e.getMessage()).append(String.format("%n"));
+		}
+		return plan.toString();
+	}//end explain
+
+	private synchronized void write(String entry) {
+		if (this._closed) {
+			return;
+		}
+		try {
+			byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+			if (this._out == null) {
+				this._size = this._file.length();
+				this._out = open();
+			}
+			if (this._size > 0 && this._size + bytes.length > this._maxBytes) {
+				rotate();
+			}
+			this._out.write(entry);
+			this._out.flush();
+			this._size += bytes.length;
+		}catch (IOException e) {
+			System.err.println("Slow query not logged: " + e.getMessage());
+		}
+	}//end write
+
+	private Writer open() throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this._file, true), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Method to shift the older files up by one and start a new file.
+	 */
+	private void rotate() throws IOException {
+		this._out.close();
+		String path = this._file.getPath();
+		new File(path + "." + this._files).delete();
+		for (int i = this._files - 1; i >= 1; --i) {
+			new File(path + "." + i).renameTo(new File(path + "." + (i + 1)));
+		}
+		this._file.renameTo(new File(path + ".1"));
+		this._out = open();
+		this._size = 0;
+	}
+
+	/**
+	 * Method to wait briefly for pending plans and close the file.  The wait
+	 * does not hold the lock, so the plans being explained can still be
+	 * written.
+	 */
+	public void close() {
+		this._explainer.shutdown();
+		try {
+			this._explainer.awaitTermination(5, TimeUnit.SECONDS);
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			this._closed = true;
+			try {
+				if (this._out != null) {
+					this._out.close();
+					this._out = null;
+				}
+			}catch (IOException e) {
+				// ignored.
+			}
+		}
+	}//end close
+}
@@ -0,0 +1,112 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps a bounded, least-recently-used cache of PreparedStatement
+ * objects for a single physical connection.  Statements are keyed by their
+ * SQL template, so repeated calls with the same text reuse the same
+ * statement and, once the driver's prepare threshold is reached, the same
+ * server-side plan.
+ *
+ */
+
+public class StatementCache{
+	//connection that owns every cached statement
+	private final Connection _connection;
+	private final int _capacity;
+	//access-ordered map, the eldest entry is the least recently used one
+	private final LinkedHashMap<String, PreparedStatement> _statements;
+	private long _hits = 0;
+	private long _misses = 0;
+	private long _evictions = 0;
+
+	public StatementCache(Connection connection, int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The statement cache capacity must be positive.");
+		}
+		this._connection = connection;
+		this._capacity = capacity;
+		this._statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+	}
+
+	/**
+	 * Method to return the cached statement for a SQL template, preparing
+	 * it on a miss.  When the cache is full the least recently used
+	 * statement is closed and dropped.
+	 *
+	 * @param sql the SQL template, using ? for bind values
+	 * @return a prepared statement owned by this cache, callers must not close it
+	 * @throws java.sql.SQLException when the statement could not be prepared
+	 */
+	public synchronized PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement stmt = this._statements.get(sql);
+		if (stmt != null && !stmt.isClosed()) {
+			this._hits++;
+			return stmt;
+		}//end if
+
+		this._misses++;
+		stmt = this._connection.prepareStatement(sql);
+		this._statements.put(sql, stmt);
+
+		//evicts the least recently used statements beyond the capacity
+		Iterator<Map.Entry<String, PreparedStatement>> it = this._statements.entrySet().iterator();
+		while (this._statements.size() > this._capacity && it.hasNext()) {
+			PreparedStatement eldest = it.next().getValue();
+			it.remove();
+			this._evictions++;
+			try {
+				eldest.close();
+			}catch (SQLException e) {
+				// ignored.
+			}
+		}//end while
+		return stmt;
+	}//end prepare
+
+	public synchronized long getHits() {
+		return this._hits;
+	}
+
+	public synchronized long getMisses() {
+		return this._misses;
+	}
+
+	public synchronized long getEvictions() {
+		return this._evictions;
+	}
+
+	public synchronized int size() {
+		return this._statements.size();
+	}
+
+	/**
+	 * Method to close every cached statement.
+	 */
+	public synchronized void close() {
+		for (PreparedStatement stmt : this._statements.values()) {
+			try {
+				stmt.close();
+			}catch (SQLException e) {
+				// ignored.
+			}
+		}//end for
+		this._statements.clear();
+	}//end close
+}
@@ -0,0 +1,108 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+/**
+ * This class converts the time_slot text of Appointment and
+ * request_maintenance, such as 8:00-10:30, to minutes of the day and back.
+ * A slot is packed in one int, start minute in the high half and end
+ * minute in the low half, so slots are kept in primitive arrays without
+ * objects.
+ *
+ */
+
+public final class TimeSlots{
+	private TimeSlots() {
+	}
+
+	/**
+	 * Method to parse a slot written H:MM-HH:MM, hours 0 to 24.
+	 *
+	 * @param slot the text of the slot
+	 * @return the packed slot, -1 when the text is not a valid slot
+	 */
+	public static int parse(String slot) {
+		if (slot == null) {
+			return -1;
+		}
+		int dash = slot.indexOf('-');
+		if (dash < 0) {
+			return -1;
+		}
+		int start = minute(slot, 0, dash);
+		int end = minute(slot, dash + 1, slot.length());
+		if (start < 0 || end < 0 || end <= start) {
+			return -1;
+		}
+		return start << 16 | end;
+	}//end parse
+
+	/**
+	 * Method to parse H:MM or HH:MM between from and to, without allocating.
+	 *
+	 * @return the minute of the day, -1 when the text is not a time
+	 */
+	private static int minute(String s, int from, int to) {
+		int colon = s.indexOf(':', from);
+		if (colon < from + 1 || colon > from + 2 || to - colon != 3) {
+			return -1;
+		}
+		int hours = 0;
+		for (int i = from; i < colon; ++i) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			hours = hours * 10 + (c - '0');
+		}
+		char m1 = s.charAt(colon + 1);
+		char m2 = s.charAt(colon + 2);
+		if (m1 < '0' || m1 > '5' || m2 < '0' || m2 > '9') {
+			return -1;
+		}
+		int minutes = hours * 60 + (m1 - '0') * 10 + (m2 - '0');
+		return minutes > 24 * 60 ? -1 : minutes;
+	}//end minute
+
+	public static int start(int slot) {
+		return slot >>> 16;
+	}
+
+	public static int end(int slot) {
+		return slot & 0xFFFF;
+	}
+
+	public static int pack(int start, int end) {
+		return start << 16 | end;
+	}
+
+	/**
+	 * Method to tell whether two slots share at least one minute.
+	 */
+	public static boolean overlaps(int a, int b) {
+		return start(a) < end(b) && start(b) < end(a);
+	}
+
+	/**
+	 * Method to write a minute of the day as H:MM.
+	 */
+	public static String time(int minute) {
+		int m = minute % 60;
+		return (minute / 60) + (m < 10 ? ":0" : ":") + m;
+	}
+
+	/**
+	 * Method to write a packed slot as H:MM-H:MM.
+	 */
+	public static String format(int slot) {
+		return time(start(slot)) + "-" + time(end(slot));
+	}
+}
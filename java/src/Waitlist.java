@@ -0,0 +1,268 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class fills the appointments given up by their holder with the
+ * patient who has waited longest for them.  Cancellations record each such
+ * appointment in waitlist_vacancy (see BookingEngine.cancel); a promotion
+ * takes the oldest vacancy with FOR UPDATE SKIP LOCKED, so any number of
+ * workers, in this process or others, each take a different vacancy
+ * without waiting on one another.  A promotion is one statement and one
+ * round trip: it makes the head of the queue the holder, sets the status
+ * to WL while others still wait or AC otherwise, and removes the vacancy.
+ *
+ * Idle workers sleep until a cancellation of this process signals a
+ * vacancy, and otherwise check the table at growing intervals, so that
+ * the vacancies recorded by other processes are still filled without
+ * polling an empty table all the time.
+ *
+ */
+
+public class Waitlist{
+	/*
+	 * vacancy  claims the oldest vacancy no other worker holds
+	 * target   locks its appointment row, as bookings and cancellations do
+	 * head     the first patient in the queue
+	 * dequeued removes the patient from the queue
+	 * held     makes the patient the holder
+	 * moved    WL while others still wait, AC, or AV when the queue emptied meanwhile
+	 * done     removes the vacancy
+	 */
+	static final String PROMOTE_SQL =
+		"WITH vacancy AS ("
+		+ " SELECT appt_id FROM waitlist_vacancy ORDER BY released_at LIMIT 1 FOR UPDATE SKIP LOCKED"
+		+ "), target AS ("
+		+ " SELECT a.appnt_ID, a.adate FROM Appointment a JOIN vacancy v ON a.appnt_ID = v.appt_id FOR UPDATE OF a"
+		+ "), head AS ("
+		+ " SELECT w.entry_id, w.appt_id, w.patient_id, w.doctor_id"
+		+ " FROM waitlist w JOIN target t ON w.appt_id = t.appnt_ID"
+		+ " ORDER BY w.entry_id LIMIT 1 FOR UPDATE OF w"
+		+ "), dequeued AS ("
+		+ " DELETE FROM waitlist w USING head h WHERE w.entry_id = h.entry_id"
+		+ " RETURNING w.appt_id, w.patient_id, w.doctor_id"
+		+ "), held AS ("
+		+ " INSERT INTO appointment_holder (appt_id, patient_id, doctor_id)"
+		+ " SELECT appt_id, patient_id, doctor_id FROM dequeued"
+		+ " ON CONFLICT (appt_id) DO UPDATE SET patient_id = EXCLUDED.patient_id, doctor_id = EXCLUDED.doctor_id,"
+		+ " booked_at = EXCLUDED.booked_at"
+		+ "), moved AS ("
+		+ " UPDATE Appointment a"
+		+ " SET status = CASE WHEN EXISTS (SELECT 1 FROM waitlist w JOIN head h ON w.appt_id = h.appt_id"
+		+ " WHERE w.entry_id <> h.entry_id) THEN 'WL'"
+		+ " WHEN EXISTS (SELECT 1 FROM head) THEN 'AC' ELSE 'AV' END"
+		+ " FROM target t WHERE a.appnt_ID = t.appnt_ID"
+		+ " RETURNING a.status"
+		+ "), done AS ("
+		+ " DELETE FROM waitlist_vacancy v USING vacancy x WHERE v.appt_id = x.appt_id"
+		+ ")"
+		+ " SELECT (SELECT appt_id FROM vacancy), (SELECT patient_id FROM head), (SELECT status FROM moved),"
+		+ " (SELECT adate FROM target)";
+
+	static final String LIST_SQL =
+		"SELECT ROW_NUMBER() OVER (ORDER BY entry_id) AS position, patient_id, doctor_id, enqueued_at"
+		+ " FROM waitlist WHERE appt_id = ? ORDER BY entry_id";
+
+	/**
+	 * Outcome of a promotion.
+	 */
+	public static class Promotion{
+		public final int apptId;
+		//the promoted patient, null when nobody was waiting any more
+		public final Integer patientId;
+		public final String newStatus;
+
+		Promotion(int apptId, Integer patientId, String newStatus) {
+			this.apptId = apptId;
+			this.patientId = patientId;
+			this.newStatus = newStatus;
+		}
+
+		public String toString() {
+			if (this.patientId == null) {
+				return "Appointment " + this.apptId + " is available again, nobody was waiting.";
+			}
+			return "Patient " + this.patientId + " now holds appointment " + this.apptId + " (" + this.newStatus + ")";
+		}
+	}//end Promotion
+
+	private static final Metrics.Operation PROMOTE = Metrics.global().operation("op.promote");
+	private static final Object[] NO_PARAMS = new Object[0];
+
+	private final DBproject _esql;
+	private final List<Thread> _workers = new ArrayList<Thread>();
+	private volatile boolean _stopped = false;
+	private volatile boolean _running = false;
+	private final ReentrantLock _lock = new ReentrantLock();
+	private final Condition _vacancy = _lock.newCondition();
+	//vacancies signalled that no worker has looked for yet
+	private int _signalled = 0;
+
+	public Waitlist(DBproject esql) {
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to fill the oldest vacancy that no other worker is filling.
+	 *
+	 * @return the promotion, null when there was no free vacancy
+	 * @throws java.sql.SQLException when the promotion failed, nothing is changed in that case
+	 */
+	public Promotion promoteNext() throws SQLException {
+		long start = System.nanoTime();
+		try {
+			List<String> row = this._esql.executeQueryAndReturnResult(PROMOTE_SQL, NO_PARAMS).get(0);
+			if (row.get(0) == null) {
+				return null;
+			}
+			this._esql.noteWrite();
+			if ("AV".equals(row.get(2))) {
+				//nobody was left to promote, the appointment no longer takes a place
+				this._esql.getCapacityIndex().forget(LocalDate.parse(row.get(3)));
+			}
+			return new Promotion(Integer.parseInt(row.get(0)), row.get(1) == null ? null : Integer.valueOf(row.get(1)),
+				row.get(2));
+		}finally {
+			PROMOTE.record(System.nanoTime() - start, 0, 0, 0);
+		}
+	}//end promoteNext
+
+	/**
+	 * Method to list the queue of an appointment, longest waiting first.
+	 *
+	 * @return the number of waiting patients
+	 */
+	public long list(ResultRenderer renderer, int apptId) throws SQLException {
+		return this._esql.executeQueryAndRender(renderer, LIST_SQL, apptId);
+	}
+
+	/**
+	 * Method to wake a worker for a vacancy that was just recorded.  Does
+	 * nothing when no worker runs in this process.
+	 */
+	public void vacancyRecorded() {
+		if (!this._running) {
+			return;
+		}
+		this._lock.lock();
+		try {
+			++this._signalled;
+			this._vacancy.signal();
+		}finally {
+			this._lock.unlock();
+		}
+	}//end vacancyRecorded
+
+	/**
+	 * Method to wait for a signalled vacancy.
+	 *
+	 * @return whether a vacancy was signalled, false when the time ran out
+	 */
+	private boolean awaitVacancy(long millis) throws InterruptedException {
+		this._lock.lock();
+		try {
+			if (this._signalled == 0) {
+				this._vacancy.await(millis, TimeUnit.MILLISECONDS);
+			}
+			if (this._signalled == 0) {
+				return false;
+			}
+			--this._signalled;
+			return true;
+		}finally {
+			this._lock.unlock();
+		}
+	}//end awaitVacancy
+
+	/**
+	 * Method to start promotion workers.  A worker promotes as long as
+	 * vacancies are found and then waits for a signal, checking the table
+	 * again after idleMillis, twice that, and so on up to maxIdleMillis.
+	 *
+	 * @param workers the number of worker threads
+	 * @param idleMillis the first wait when nothing was found
+	 * @param maxIdleMillis the longest wait between two checks
+	 * @param verbose whether to print every promotion
+	 */
+	public synchronized void start(int workers, final long idleMillis, final long maxIdleMillis, final boolean verbose) {
+		this._running = true;
+		for (int i = 0; i < workers; ++i) {
+			Thread t = new Thread(new Runnable() {
+				public void run() {
+					work(idleMillis, Math.max(idleMillis, maxIdleMillis), verbose);
+				}
+			}, "waitlist-worker-" + (this._workers.size() + 1));
+			t.setDaemon(true);
+			this._workers.add(t);
+			t.start();
+		}
+	}//end start
+
+	private void work(long idleMillis, long maxIdleMillis, boolean verbose) {
+		boolean failing = false;
+		long idle = idleMillis;
+		while (!this._stopped) {
+			try {
+				Promotion p = promoteNext();
+				failing = false;
+				if (p != null) {
+					if (verbose) {
+						System.out.println(p);
+					}
+					idle = idleMillis;
+					continue;
+				}
+				idle = awaitVacancy(idle) ? idleMillis : Math.min(idle * 2, maxIdleMillis);
+			}catch (SQLException e) {
+				//reported once per run of failures
+				if (!failing) {
+					System.err.println("Waitlist promotion failed, retrying: " + e.getMessage());
+					failing = true;
+				}
+				try {
+					Thread.sleep(Math.max(1000, idleMillis));
+				}catch (InterruptedException ie) {
+					return;
+				}
+			}catch (InterruptedException e) {
+				return;
+			}
+		}
+	}//end work
+
+	/**
+	 * Method to stop the workers and wait for them to finish their promotion.
+	 */
+	public synchronized void stop() {
+		this._stopped = true;
+		this._running = false;
+		for (Thread t : this._workers) {
+			t.interrupt();
+		}
+		for (Thread t : this._workers) {
+			try {
+				t.join(5000);
+			}catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		this._workers.clear();
+	}//end stop
+}
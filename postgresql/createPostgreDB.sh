@@ -3,10 +3,44 @@ echo "creating db named ... "$USER"_DB"
 createdb -h localhost -p $PGPORT $USER"_DB"
 pg_ctl status
 
-echo "Copying csv files ... "
-sleep 1
-cp ../data/*.csv /tmp/$USER/myDB/data/.
-
 echo "Initializing tables .. "
 sleep 1
-psql -h localhost -p $PGPORT $USER"_DB" < ../sql/create.sql
\ No newline at end of file
+psql -h localhost -p $PGPORT $USER"_DB" < ../sql/create.sql
+
+# LOAD=client streams the CSV files from this machine through the Java
+# bulk loader instead of copying them into the server's data directory.
+if [ "$LOAD" = "client" ]; then
+	echo "Loading csv files from the client ... "
+	(cd ../java && java -cp "lib/*:bin/" DBproject $USER"_DB" $PGPORT $USER load ../data)
+else
+	echo "Copying csv files ... "
+	sleep 1
+	cp ../data/*.csv /tmp/$USER/myDB/data/.
+
+	echo "Loading csv files .. "
+	psql -h localhost -p $PGPORT $USER"_DB" < ../sql/load.sql
+fi
+
+# PARTITION=monthly moves Appointment to monthly partitions of adate
+if [ "$PARTITION" = "monthly" ]; then
+	echo "Partitioning appointments .. "
+	psql -h localhost -p $PGPORT $USER"_DB" < ../sql/partition_appointments.sql
+fi
+
+echo "Creating indexes .. "
+psql -h localhost -p $PGPORT $USER"_DB" < ../sql/create_indexes.sql
+
+echo "Creating waitlist tables .. "
+psql -h localhost -p $PGPORT $USER"_DB" < ../sql/create_waitlist.sql
+
+echo "Creating summary tables .. "
+psql -h localhost -p $PGPORT $USER"_DB" < ../sql/create_summaries.sql
+
+echo "Creating time slot ranges .. "
+psql -h localhost -p $PGPORT $USER"_DB" < ../sql/create_slot_ranges.sql
+
+echo "Creating key sequences .. "
+psql -h localhost -p $PGPORT $USER"_DB" < ../sql/create_sequences.sql
+
+echo "Creating change notifications .. "
+psql -h localhost -p $PGPORT $USER"_DB" < ../sql/create_notify.sql
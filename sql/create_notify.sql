@@ -0,0 +1,102 @@
+-- Notifies the reference_change channel after every statement that changes
+-- Hospital, Department or Doctor, so that the ReferenceLookup of each
+-- running client refreshes the changed rows.  The payload is the table and
+-- the keys of the changed rows, 'doctor:12,40', or 'doctor:*' after a
+-- TRUNCATE or when too many rows changed for the payload.  Requires
+-- PostgreSQL 10 or later (transition tables).
+
+CREATE OR REPLACE FUNCTION notify_reference_change() RETURNS trigger AS $$
+DECLARE
+	keys text;
+BEGIN
+	IF TG_OP = 'TRUNCATE' THEN
+		keys := '*';
+	ELSIF TG_OP = 'INSERT' THEN
+		SELECT CASE WHEN COUNT(DISTINCT k) > 500 THEN '*' ELSE string_agg(DISTINCT k, ',') END INTO keys
+		FROM (SELECT to_jsonb(N) ->> TG_ARGV[0] AS k FROM new_rows N) S;
+	ELSIF TG_OP = 'DELETE' THEN
+		SELECT CASE WHEN COUNT(DISTINCT k) > 500 THEN '*' ELSE string_agg(DISTINCT k, ',') END INTO keys
+		FROM (SELECT to_jsonb(O) ->> TG_ARGV[0] AS k FROM old_rows O) S;
+	ELSE
+		-- an update may change the key itself, so both versions are sent
+		SELECT CASE WHEN COUNT(DISTINCT k) > 500 THEN '*' ELSE string_agg(DISTINCT k, ',') END INTO keys
+		FROM (SELECT to_jsonb(O) ->> TG_ARGV[0] AS k FROM old_rows O
+			UNION ALL
+			SELECT to_jsonb(N) ->> TG_ARGV[0] FROM new_rows N) S;
+	END IF;
+	IF keys IS NOT NULL THEN
+		PERFORM pg_notify('reference_change', lower(TG_TABLE_NAME) || ':' || keys);
+	END IF;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS hospital_notify_insert ON Hospital;
+DROP TRIGGER IF EXISTS hospital_notify_update ON Hospital;
+DROP TRIGGER IF EXISTS hospital_notify_delete ON Hospital;
+DROP TRIGGER IF EXISTS hospital_notify_truncate ON Hospital;
+DROP TRIGGER IF EXISTS department_notify_insert ON Department;
+DROP TRIGGER IF EXISTS department_notify_update ON Department;
+DROP TRIGGER IF EXISTS department_notify_delete ON Department;
+DROP TRIGGER IF EXISTS department_notify_truncate ON Department;
+DROP TRIGGER IF EXISTS doctor_notify_insert ON Doctor;
+DROP TRIGGER IF EXISTS doctor_notify_update ON Doctor;
+DROP TRIGGER IF EXISTS doctor_notify_delete ON Doctor;
+DROP TRIGGER IF EXISTS doctor_notify_truncate ON Doctor;
+
+CREATE TRIGGER hospital_notify_insert
+AFTER INSERT ON Hospital
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change('hospital_id');
+
+CREATE TRIGGER hospital_notify_update
+AFTER UPDATE ON Hospital
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change('hospital_id');
+
+CREATE TRIGGER hospital_notify_delete
+AFTER DELETE ON Hospital
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change('hospital_id');
+
+CREATE TRIGGER hospital_notify_truncate
+AFTER TRUNCATE ON Hospital
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change('hospital_id');
+
+CREATE TRIGGER department_notify_insert
+AFTER INSERT ON Department
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change('dept_id');
+
+CREATE TRIGGER department_notify_update
+AFTER UPDATE ON Department
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change('dept_id');
+
+CREATE TRIGGER department_notify_delete
+AFTER DELETE ON Department
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change('dept_id');
+
+CREATE TRIGGER department_notify_truncate
+AFTER TRUNCATE ON Department
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change('dept_id');
+
+CREATE TRIGGER doctor_notify_insert
+AFTER INSERT ON Doctor
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change('doctor_id');
+
+CREATE TRIGGER doctor_notify_update
+AFTER UPDATE ON Doctor
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change('doctor_id');
+
+CREATE TRIGGER doctor_notify_delete
+AFTER DELETE ON Doctor
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change('doctor_id');
+
+CREATE TRIGGER doctor_notify_truncate
+AFTER TRUNCATE ON Doctor
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change('doctor_id');
@@ -0,0 +1,15 @@
+-- Sequences of the generated primary keys, see IdAllocator.  Each step of
+-- 1000 is a block of keys reserved by one client.  They start after the
+-- largest loaded key, so run this file after the data is loaded.
+
+DROP SEQUENCE IF EXISTS doctor_id_seq;
+DROP SEQUENCE IF EXISTS patient_id_seq;
+DROP SEQUENCE IF EXISTS appointment_id_seq;
+
+CREATE SEQUENCE doctor_id_seq INCREMENT BY 1000 MINVALUE 1 MAXVALUE 2147483647;
+CREATE SEQUENCE patient_id_seq INCREMENT BY 1000 MINVALUE 1 MAXVALUE 2147483647;
+CREATE SEQUENCE appointment_id_seq INCREMENT BY 1000 MINVALUE 1 MAXVALUE 2147483647;
+
+SELECT setval('doctor_id_seq', (SELECT COALESCE(MAX(doctor_ID), 0) + 1 FROM Doctor), false);
+SELECT setval('patient_id_seq', (SELECT COALESCE(MAX(patient_ID), 0) + 1 FROM Patient), false);
+SELECT setval('appointment_id_seq', (SELECT COALESCE(MAX(appnt_ID), 0) + 1 FROM Appointment), false);
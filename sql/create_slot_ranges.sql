@@ -0,0 +1,190 @@
+-- Time slots as ranges, so that overlap checks and the free-between listing
+-- use GiST indexes instead of parsing time_slot text in the client.
+-- appointment_slot() turns adate and a time_slot written H:MM-HH:MM into a
+-- tsrange [start, end); Appointment.slot is generated from them, and
+-- time_slot stays for the existing readers.  Booked (AC or WL) appointments
+-- are copied with their doctor to doctor_booked_slot, whose exclusion
+-- constraint refuses a booking that overlaps another booked appointment of
+-- the same doctor.  It is kept up to date by statement-level triggers, as
+-- the summaries of create_summaries.sql are.
+-- Requires PostgreSQL 12 or later (generated columns) and the btree_gist
+-- extension.  Run it after the data is loaded, and again after
+-- partition_appointments.sql, which recreates Appointment.
+
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+DROP TABLE IF EXISTS doctor_booked_slot CASCADE;
+DROP INDEX IF EXISTS appointment_slot_index;
+ALTER TABLE Appointment DROP COLUMN IF EXISTS slot;
+
+-- NULL when the slot is not H:MM-HH:MM, hours 0 to 24, ending after it starts
+CREATE OR REPLACE FUNCTION appointment_slot(day DATE, time_slot TEXT) RETURNS tsrange AS $$
+DECLARE
+	parts text[];
+	first_minute integer;
+	last_minute integer;
+BEGIN
+	parts := regexp_match(time_slot, '^(\d{1,2}):([0-5]\d)-(\d{1,2}):([0-5]\d)$');
+	IF parts IS NULL THEN
+		RETURN NULL;
+	END IF;
+	first_minute := parts[1]::integer * 60 + parts[2]::integer;
+	last_minute := parts[3]::integer * 60 + parts[4]::integer;
+	IF last_minute > 24 * 60 OR last_minute <= first_minute THEN
+		RETURN NULL;
+	END IF;
+	RETURN tsrange(day + first_minute * interval '1 minute', day + last_minute * interval '1 minute');
+END;
+$$ LANGUAGE plpgsql IMMUTABLE;
+
+ALTER TABLE Appointment ADD COLUMN slot tsrange GENERATED ALWAYS AS (appointment_slot(adate, time_slot)) STORED;
+
+-- appointments within a time range
+CREATE INDEX appointment_slot_index
+ON Appointment
+USING GIST (slot);
+
+-- the booked appointments of each doctor; the exclusion constraint is also
+-- the index of "is the doctor busy at that time"
+CREATE TABLE doctor_booked_slot
+(
+	appt_id INTEGER NOT NULL,
+	doctor_id INTEGER NOT NULL,
+	slot tsrange NOT NULL,
+	PRIMARY KEY (appt_id,doctor_id),
+	CONSTRAINT doctor_booked_slot_no_overlap EXCLUDE USING GIST (doctor_id WITH =, slot WITH &&)
+);
+
+-- Appointment, or its appointment_id key table when it is partitioned
+DO $$
+BEGIN
+	EXECUTE 'ALTER TABLE doctor_booked_slot ADD FOREIGN KEY (appt_id) REFERENCES '
+		|| CASE WHEN to_regclass('appointment_id') IS NULL THEN 'Appointment (appnt_ID)' ELSE 'appointment_id (appnt_ID)' END;
+END;
+$$;
+
+-- As with the status counts, a link and a status change made by the same
+-- statement (as MakeAppointment does) may reach either trigger first; the
+-- second one finds the row already there.  Only the primary key is the
+-- arbiter of ON CONFLICT, so an overlap is still an error.
+
+CREATE OR REPLACE FUNCTION doctor_booked_slot_links_added() RETURNS trigger AS $$
+BEGIN
+	INSERT INTO doctor_booked_slot (appt_id, doctor_id, slot)
+	SELECT N.appt_id, N.doctor_id, A.slot
+	FROM added N JOIN Appointment A ON A.appnt_ID = N.appt_id
+	WHERE A.status IN ('AC', 'WL') AND A.slot IS NOT NULL
+	ON CONFLICT (appt_id, doctor_id) DO NOTHING;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION doctor_booked_slot_links_removed() RETURNS trigger AS $$
+BEGIN
+	DELETE FROM doctor_booked_slot B
+	USING removed R
+	WHERE B.appt_id = R.appt_id AND B.doctor_id = R.doctor_id;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- AC <-> WL keeps the row; an appointment that becomes booked, or whose
+-- date or slot moves while booked, is checked against the doctor's others
+CREATE OR REPLACE FUNCTION doctor_booked_slot_appointments_changed() RETURNS trigger AS $$
+BEGIN
+	DELETE FROM doctor_booked_slot B
+	USING old_rows O JOIN new_rows N ON N.appnt_ID = O.appnt_ID
+	WHERE B.appt_id = N.appnt_ID
+	AND (NOT COALESCE(N.status IN ('AC', 'WL'), false) OR N.slot IS DISTINCT FROM O.slot);
+
+	INSERT INTO doctor_booked_slot (appt_id, doctor_id, slot)
+	SELECT H.appt_id, H.doctor_id, N.slot
+	FROM old_rows O JOIN new_rows N ON N.appnt_ID = O.appnt_ID
+	JOIN has_appointment H ON H.appt_id = N.appnt_ID
+	WHERE N.status IN ('AC', 'WL') AND N.slot IS NOT NULL
+	AND (NOT COALESCE(O.status IN ('AC', 'WL'), false) OR O.slot IS DISTINCT FROM N.slot)
+	ON CONFLICT (appt_id, doctor_id) DO NOTHING;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION doctor_booked_slot_appointments_removed() RETURNS trigger AS $$
+BEGIN
+	DELETE FROM doctor_booked_slot B
+	USING old_rows O
+	WHERE B.appt_id = O.appnt_ID;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION doctor_booked_slot_truncated() RETURNS trigger AS $$
+BEGIN
+	TRUNCATE doctor_booked_slot;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- copies every booked appointment again.  Overlaps already in the data
+-- cannot be refused any more: the booking with the lowest ID is kept, the
+-- others stay booked but unchecked until they are cancelled or moved
+CREATE OR REPLACE FUNCTION doctor_booked_slot_rebuild() RETURNS void AS $$
+DECLARE
+	booked bigint;
+	kept bigint;
+BEGIN
+	TRUNCATE doctor_booked_slot;
+	SELECT COUNT(*) INTO booked
+	FROM has_appointment H JOIN Appointment A ON A.appnt_ID = H.appt_id
+	WHERE A.status IN ('AC', 'WL') AND A.slot IS NOT NULL;
+	INSERT INTO doctor_booked_slot (appt_id, doctor_id, slot)
+	SELECT H.appt_id, H.doctor_id, A.slot
+	FROM has_appointment H JOIN Appointment A ON A.appnt_ID = H.appt_id
+	WHERE A.status IN ('AC', 'WL') AND A.slot IS NOT NULL
+	ORDER BY H.appt_id, H.doctor_id
+	ON CONFLICT DO NOTHING;
+	GET DIAGNOSTICS kept = ROW_COUNT;
+	IF kept < booked THEN
+		RAISE WARNING '% booked appointments overlap an earlier booking of their doctor and are not checked', booked - kept;
+	END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS doctor_booked_slot_insert ON has_appointment;
+DROP TRIGGER IF EXISTS doctor_booked_slot_delete ON has_appointment;
+DROP TRIGGER IF EXISTS doctor_booked_slot_truncate ON has_appointment;
+DROP TRIGGER IF EXISTS doctor_booked_slot_update ON Appointment;
+DROP TRIGGER IF EXISTS doctor_booked_slot_delete ON Appointment;
+DROP TRIGGER IF EXISTS doctor_booked_slot_truncate ON Appointment;
+
+CREATE TRIGGER doctor_booked_slot_insert
+AFTER INSERT ON has_appointment
+REFERENCING NEW TABLE AS added
+FOR EACH STATEMENT EXECUTE PROCEDURE doctor_booked_slot_links_added();
+
+CREATE TRIGGER doctor_booked_slot_delete
+AFTER DELETE ON has_appointment
+REFERENCING OLD TABLE AS removed
+FOR EACH STATEMENT EXECUTE PROCEDURE doctor_booked_slot_links_removed();
+
+CREATE TRIGGER doctor_booked_slot_truncate
+AFTER TRUNCATE ON has_appointment
+FOR EACH STATEMENT EXECUTE PROCEDURE doctor_booked_slot_truncated();
+
+CREATE TRIGGER doctor_booked_slot_update
+AFTER UPDATE ON Appointment
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE doctor_booked_slot_appointments_changed();
+
+CREATE TRIGGER doctor_booked_slot_delete
+AFTER DELETE ON Appointment
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE doctor_booked_slot_appointments_removed();
+
+CREATE TRIGGER doctor_booked_slot_truncate
+AFTER TRUNCATE ON Appointment
+FOR EACH STATEMENT EXECUTE PROCEDURE doctor_booked_slot_truncated();
+
+SELECT doctor_booked_slot_rebuild();
+
+ANALYZE Appointment;
+ANALYZE doctor_booked_slot;
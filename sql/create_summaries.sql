@@ -0,0 +1,158 @@
+-- Per-doctor appointment counts by status for menu option 7, kept up to
+-- date by statement-level triggers so the listing never aggregates the
+-- appointment tables. Run after the data is loaded; it rebuilds the counts.
+-- Requires PostgreSQL 10 or later (transition tables).
+
+DROP TABLE IF EXISTS doctor_status_counts CASCADE;
+DROP TABLE IF EXISTS has_appointment_status CASCADE;
+
+-- status each has_appointment link was last counted under
+CREATE TABLE has_appointment_status
+(
+	appt_id INTEGER NOT NULL,
+	doctor_id INTEGER NOT NULL,
+	status _STATUS,
+	PRIMARY KEY (appt_id,doctor_id)
+);
+
+CREATE TABLE doctor_status_counts
+(
+	doctor_id INTEGER NOT NULL,
+	pa INTEGER NOT NULL DEFAULT 0,
+	ac INTEGER NOT NULL DEFAULT 0,
+	av INTEGER NOT NULL DEFAULT 0,
+	wl INTEGER NOT NULL DEFAULT 0,
+	PRIMARY KEY (doctor_id)
+);
+
+-- A link is counted under the status the appointment has when its trigger
+-- runs. Appointment status changes only move links still counted under the
+-- old status, so a link and a status change made by the same statement (as
+-- MakeAppointment does) are counted once whichever trigger fires first.
+
+CREATE OR REPLACE FUNCTION doctor_status_counts_links_added() RETURNS trigger AS $$
+BEGIN
+	WITH counted AS (
+		INSERT INTO has_appointment_status (appt_id, doctor_id, status)
+		SELECT N.appt_id, N.doctor_id, A.status
+		FROM added N JOIN Appointment A ON A.appnt_ID = N.appt_id
+		ON CONFLICT (appt_id, doctor_id) DO NOTHING
+		RETURNING doctor_id, status
+	)
+	INSERT INTO doctor_status_counts AS C (doctor_id, pa, ac, av, wl)
+	SELECT doctor_id,
+		COUNT(*) FILTER (WHERE status = 'PA'),
+		COUNT(*) FILTER (WHERE status = 'AC'),
+		COUNT(*) FILTER (WHERE status = 'AV'),
+		COUNT(*) FILTER (WHERE status = 'WL')
+	FROM counted
+	GROUP BY doctor_id
+	ON CONFLICT (doctor_id) DO UPDATE
+	SET pa = C.pa + EXCLUDED.pa, ac = C.ac + EXCLUDED.ac, av = C.av + EXCLUDED.av, wl = C.wl + EXCLUDED.wl;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION doctor_status_counts_links_removed() RETURNS trigger AS $$
+BEGIN
+	WITH uncounted AS (
+		DELETE FROM has_appointment_status S
+		USING removed R
+		WHERE S.appt_id = R.appt_id AND S.doctor_id = R.doctor_id
+		RETURNING S.doctor_id, S.status
+	), delta AS (
+		SELECT doctor_id,
+			COUNT(*) FILTER (WHERE status = 'PA') AS pa,
+			COUNT(*) FILTER (WHERE status = 'AC') AS ac,
+			COUNT(*) FILTER (WHERE status = 'AV') AS av,
+			COUNT(*) FILTER (WHERE status = 'WL') AS wl
+		FROM uncounted
+		GROUP BY doctor_id
+	)
+	UPDATE doctor_status_counts C
+	SET pa = C.pa - D.pa, ac = C.ac - D.ac, av = C.av - D.av, wl = C.wl - D.wl
+	FROM delta D
+	WHERE C.doctor_id = D.doctor_id;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION doctor_status_counts_status_changed() RETURNS trigger AS $$
+BEGIN
+	WITH changed AS (
+		SELECT O.appnt_ID, O.status AS old_status, N.status AS new_status
+		FROM old_rows O JOIN new_rows N ON N.appnt_ID = O.appnt_ID
+		WHERE O.status IS DISTINCT FROM N.status
+	), moved AS (
+		UPDATE has_appointment_status S
+		SET status = X.new_status
+		FROM changed X
+		WHERE S.appt_id = X.appnt_ID AND S.status IS NOT DISTINCT FROM X.old_status
+		RETURNING S.doctor_id, X.old_status, X.new_status
+	), delta AS (
+		SELECT doctor_id,
+			COUNT(*) FILTER (WHERE new_status = 'PA') - COUNT(*) FILTER (WHERE old_status = 'PA') AS pa,
+			COUNT(*) FILTER (WHERE new_status = 'AC') - COUNT(*) FILTER (WHERE old_status = 'AC') AS ac,
+			COUNT(*) FILTER (WHERE new_status = 'AV') - COUNT(*) FILTER (WHERE old_status = 'AV') AS av,
+			COUNT(*) FILTER (WHERE new_status = 'WL') - COUNT(*) FILTER (WHERE old_status = 'WL') AS wl
+		FROM moved
+		GROUP BY doctor_id
+	)
+	UPDATE doctor_status_counts C
+	SET pa = C.pa + D.pa, ac = C.ac + D.ac, av = C.av + D.av, wl = C.wl + D.wl
+	FROM delta D
+	WHERE C.doctor_id = D.doctor_id;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION doctor_status_counts_truncated() RETURNS trigger AS $$
+BEGIN
+	TRUNCATE has_appointment_status, doctor_status_counts;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- recounts everything from has_appointment and Appointment
+CREATE OR REPLACE FUNCTION doctor_status_counts_rebuild() RETURNS void AS $$
+BEGIN
+	TRUNCATE has_appointment_status, doctor_status_counts;
+	INSERT INTO has_appointment_status (appt_id, doctor_id, status)
+	SELECT H.appt_id, H.doctor_id, A.status
+	FROM has_appointment H JOIN Appointment A ON A.appnt_ID = H.appt_id;
+	INSERT INTO doctor_status_counts (doctor_id, pa, ac, av, wl)
+	SELECT doctor_id,
+		COUNT(*) FILTER (WHERE status = 'PA'),
+		COUNT(*) FILTER (WHERE status = 'AC'),
+		COUNT(*) FILTER (WHERE status = 'AV'),
+		COUNT(*) FILTER (WHERE status = 'WL')
+	FROM has_appointment_status
+	GROUP BY doctor_id;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS doctor_status_counts_insert ON has_appointment;
+DROP TRIGGER IF EXISTS doctor_status_counts_delete ON has_appointment;
+DROP TRIGGER IF EXISTS doctor_status_counts_truncate ON has_appointment;
+DROP TRIGGER IF EXISTS doctor_status_counts_update ON Appointment;
+
+CREATE TRIGGER doctor_status_counts_insert
+AFTER INSERT ON has_appointment
+REFERENCING NEW TABLE AS added
+FOR EACH STATEMENT EXECUTE PROCEDURE doctor_status_counts_links_added();
+
+CREATE TRIGGER doctor_status_counts_delete
+AFTER DELETE ON has_appointment
+REFERENCING OLD TABLE AS removed
+FOR EACH STATEMENT EXECUTE PROCEDURE doctor_status_counts_links_removed();
+
+CREATE TRIGGER doctor_status_counts_truncate
+AFTER TRUNCATE ON has_appointment
+FOR EACH STATEMENT EXECUTE PROCEDURE doctor_status_counts_truncated();
+
+CREATE TRIGGER doctor_status_counts_update
+AFTER UPDATE ON Appointment
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE doctor_status_counts_status_changed();
+
+SELECT doctor_status_counts_rebuild();
\ No newline at end of file
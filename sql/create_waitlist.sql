@@ -0,0 +1,63 @@
+-- Bookings and waitlists of appointments, see BookingEngine and Waitlist.
+-- Booking an AV appointment makes the patient its holder; booking one that
+-- is already taken queues the patient behind the others.  When the holder
+-- cancels and patients are waiting, the appointment is recorded in
+-- waitlist_vacancy, and a promotion worker makes the head of the queue the
+-- new holder.  appt_id references Appointment, or the appointment_id key
+-- table once partition_appointments.sql has made Appointment partitioned.
+
+DROP TABLE IF EXISTS waitlist_vacancy CASCADE;
+DROP TABLE IF EXISTS waitlist CASCADE;
+DROP TABLE IF EXISTS appointment_holder CASCADE;
+
+CREATE TABLE appointment_holder
+(
+	appt_id INTEGER NOT NULL,
+	patient_id INTEGER NOT NULL,
+	doctor_id INTEGER NOT NULL,
+	booked_at TIMESTAMPTZ NOT NULL DEFAULT clock_timestamp(),
+	PRIMARY KEY (appt_id),
+	FOREIGN KEY (patient_id) REFERENCES Patient(patient_ID),
+	FOREIGN KEY (doctor_id) REFERENCES Doctor(doctor_ID)
+);
+
+-- entry_id orders each queue, first come first served
+CREATE TABLE waitlist
+(
+	entry_id BIGSERIAL NOT NULL,
+	appt_id INTEGER NOT NULL,
+	patient_id INTEGER NOT NULL,
+	doctor_id INTEGER NOT NULL,
+	enqueued_at TIMESTAMPTZ NOT NULL DEFAULT clock_timestamp(),
+	PRIMARY KEY (entry_id),
+	UNIQUE (appt_id, patient_id),
+	FOREIGN KEY (patient_id) REFERENCES Patient(patient_ID),
+	FOREIGN KEY (doctor_id) REFERENCES Doctor(doctor_ID)
+);
+
+-- the head of the queue of an appointment
+CREATE INDEX waitlist_appt_id_entry_id_index
+ON waitlist
+USING BTREE (appt_id, entry_id);
+
+-- appointments released by their holder with patients still waiting
+CREATE TABLE waitlist_vacancy
+(
+	appt_id INTEGER NOT NULL,
+	released_at TIMESTAMPTZ NOT NULL DEFAULT clock_timestamp(),
+	PRIMARY KEY (appt_id)
+);
+
+CREATE INDEX waitlist_vacancy_released_at_index
+ON waitlist_vacancy
+USING BTREE (released_at);
+
+DO $$
+DECLARE
+	keys text := CASE WHEN to_regclass('appointment_id') IS NULL THEN 'Appointment (appnt_ID)' ELSE 'appointment_id (appnt_ID)' END;
+BEGIN
+	EXECUTE 'ALTER TABLE appointment_holder ADD FOREIGN KEY (appt_id) REFERENCES ' || keys;
+	EXECUTE 'ALTER TABLE waitlist ADD FOREIGN KEY (appt_id) REFERENCES ' || keys;
+	EXECUTE 'ALTER TABLE waitlist_vacancy ADD FOREIGN KEY (appt_id) REFERENCES ' || keys;
+END;
+$$;
@@ -0,0 +1,151 @@
+-- Moves Appointment to a table range partitioned by month of adate, so the
+-- date range of menu option 5 only reads the months it asks for and past
+-- months can be detached once they hold nothing but PA appointments.
+-- Requires PostgreSQL 11 or later. Run it once after the data is loaded,
+-- then run create_indexes.sql, create_summaries.sql and
+-- create_slot_ranges.sql again: dropping the old table drops its indexes,
+-- its slot column and the triggers on it.
+--
+-- A primary key of a partitioned table must contain the partition key, so
+-- it becomes (appnt_ID, adate). appnt_ID alone stays unique through the
+-- appointment_id table, which holds one row per appointment and is kept in
+-- step by statement-level triggers on Appointment: a second appointment
+-- with an existing ID fails on its primary key, whichever client inserts
+-- it. The foreign keys to Appointment(appnt_ID), which are dropped with
+-- the old table, are recreated against appointment_id. Archived
+-- partitions keep their IDs there, so the references to them stay valid.
+-- A TRUNCATE of Appointment also empties the tables referencing it, as
+-- TRUNCATE ... CASCADE would.
+--
+-- Partitions are named appointment_yYYYYmMM. Rows outside every partition
+-- land in appointment_default. Create the coming months ahead of time and
+-- archive old ones with:
+--   java -cp lib/*:bin/ DBproject <dbname> <port> <user> partitions [<months-ahead>] [--archive <months-kept>]
+
+BEGIN;
+
+ALTER TABLE Appointment RENAME TO appointment_unpartitioned;
+ALTER TABLE appointment_unpartitioned RENAME CONSTRAINT appointment_pkey TO appointment_unpartitioned_pkey;
+
+CREATE TABLE Appointment
+(
+	appnt_ID INTEGER NOT NULL,
+	adate DATE NOT NULL,
+	time_slot VARCHAR(11),
+	status _STATUS,
+	PRIMARY KEY (appnt_ID, adate)
+) PARTITION BY RANGE (adate);
+
+CREATE TABLE appointment_default PARTITION OF Appointment DEFAULT;
+
+DROP TABLE IF EXISTS appointment_id CASCADE;
+
+CREATE TABLE appointment_id
+(
+	appnt_ID INTEGER NOT NULL,
+	PRIMARY KEY (appnt_ID)
+);
+
+CREATE OR REPLACE FUNCTION appointment_id_added() RETURNS trigger AS $$
+BEGIN
+	INSERT INTO appointment_id (appnt_ID) SELECT appnt_ID FROM new_rows;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION appointment_id_removed() RETURNS trigger AS $$
+BEGIN
+	DELETE FROM appointment_id I USING old_rows O WHERE I.appnt_ID = O.appnt_ID;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- only IDs that changed are touched, so an update of other columns never
+-- trips the foreign keys
+CREATE OR REPLACE FUNCTION appointment_id_changed() RETURNS trigger AS $$
+BEGIN
+	DELETE FROM appointment_id I
+	USING (SELECT appnt_ID FROM old_rows EXCEPT SELECT appnt_ID FROM new_rows) O
+	WHERE I.appnt_ID = O.appnt_ID;
+	INSERT INTO appointment_id (appnt_ID)
+	SELECT appnt_ID FROM new_rows EXCEPT SELECT appnt_ID FROM old_rows;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION appointment_id_truncated() RETURNS trigger AS $$
+BEGIN
+	TRUNCATE appointment_id CASCADE;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- statement-level triggers of the partitioned table only fire for changes
+-- made through Appointment, so rows moved between partitions by
+-- PartitionMaintenance keep their IDs
+CREATE TRIGGER appointment_id_insert
+AFTER INSERT ON Appointment
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE appointment_id_added();
+
+CREATE TRIGGER appointment_id_update
+AFTER UPDATE ON Appointment
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE appointment_id_changed();
+
+CREATE TRIGGER appointment_id_delete
+AFTER DELETE ON Appointment
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE appointment_id_removed();
+
+CREATE TRIGGER appointment_id_truncate
+AFTER TRUNCATE ON Appointment
+FOR EACH STATEMENT EXECUTE PROCEDURE appointment_id_truncated();
+
+-- one partition per month of the loaded data and the three months after it
+DO $$
+DECLARE
+	first_month DATE;
+	last_month DATE;
+	m DATE;
+BEGIN
+	SELECT date_trunc('month', COALESCE(MIN(adate), current_date))::date,
+		(date_trunc('month', GREATEST(COALESCE(MAX(adate), current_date), current_date)) + interval '3 months')::date
+	INTO first_month, last_month
+	FROM appointment_unpartitioned;
+
+	m := first_month;
+	WHILE m <= last_month LOOP
+		EXECUTE format('CREATE TABLE %I PARTITION OF Appointment FOR VALUES FROM (%L) TO (%L)',
+			'appointment_y' || to_char(m, 'YYYY') || 'm' || to_char(m, 'MM'), m, (m + interval '1 month')::date);
+		m := (m + interval '1 month')::date;
+	END LOOP;
+END;
+$$;
+
+INSERT INTO Appointment (appnt_ID, adate, time_slot, status)
+SELECT appnt_ID, adate, time_slot, status
+FROM appointment_unpartitioned;
+
+DROP TABLE appointment_unpartitioned CASCADE;
+
+-- the references of create.sql, and those of create_waitlist.sql and
+-- create_slot_ranges.sql when they were run before
+DO $$
+DECLARE
+	ref RECORD;
+BEGIN
+	FOR ref IN SELECT * FROM (VALUES ('searches', 'aid'), ('schedules', 'appt_id'), ('has_appointment', 'appt_id'),
+		('appointment_holder', 'appt_id'), ('waitlist', 'appt_id'), ('waitlist_vacancy', 'appt_id'),
+		('doctor_booked_slot', 'appt_id')) AS R (tab, col)
+	LOOP
+		IF to_regclass(ref.tab) IS NOT NULL THEN
+			EXECUTE format('ALTER TABLE %I ADD FOREIGN KEY (%I) REFERENCES appointment_id (appnt_ID)', ref.tab, ref.col);
+		END IF;
+	END LOOP;
+END;
+$$;
+
+COMMIT;
+
+ANALYZE Appointment;